@@ -0,0 +1,111 @@
+package banking.bench;
+
+import banking.AccountCache;
+import banking.AccountCacheStats;
+import banking.AccountValidator;
+import banking.BankAccount;
+import banking.DiskAccountStore;
+import banking.metrics.HistogramSnapshot;
+import banking.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Поиск и пополнение счетов хранилища на диске через кэш разного размера при перекошенной
+ * нагрузке: HOT_SHARE обращений приходится на HOT_ACCOUNTS_PERCENT процентов счетов.
+ * Запуск: java banking.bench.AccountCacheBenchmark [счетов] [потоков] [длительность, мс]
+ */
+public class AccountCacheBenchmark {
+    private static final int[] CACHE_SIZES = {100, 1_000, 10_000};
+    private static final int HOT_ACCOUNTS_PERCENT = 1;
+    private static final double HOT_SHARE = 0.95;
+    private static final String BIK = "044525225";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int accountCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        long durationMillis = args.length > 2 ? Long.parseLong(args[2]) : 2_000;
+
+        Path file = Files.createTempFile("accounts", ".store");
+        Files.delete(file);
+        String[] numbers = new String[accountCount];
+        try (AccountCache cache = new AccountCache(DiskAccountStore.open(file), 1)) {
+            for (int i = 0; i < accountCount; i++) {
+                numbers[i] = AccountValidator.withAccountKey(String.format("%020d", i), BIK);
+                cache.add(new BankAccount(numbers[i], BIK, "770101001", null, null, "Бенчмарк " + i, 0));
+            }
+        }
+
+        System.out.printf("Счетов: %d, потоков: %d, длительность замера: %d мс%n",
+                accountCount, threads, durationMillis);
+        System.out.printf("%10s %12s %10s %10s %10s%n", "кэш", "операций/с", "p50, мкс", "p99, мкс", "попаданий");
+        try {
+            for (int cacheSize : CACHE_SIZES) {
+                try (AccountCache cache = new AccountCache(DiskAccountStore.open(file), cacheSize)) {
+                    run(cache, numbers, 1, durationMillis / 4, null); // Прогрев
+                    LatencyHistogram latencies = new LatencyHistogram();
+                    AccountCacheStats before = cache.getStats();
+                    double opsPerSecond = run(cache, numbers, threads, durationMillis, latencies);
+                    AccountCacheStats after = cache.getStats();
+                    HistogramSnapshot snapshot = latencies.snapshot();
+                    long hits = after.getHits() - before.getHits();
+                    long requests = hits + after.getMisses() - before.getMisses();
+                    System.out.printf("%10d %12.0f %10.1f %10.1f %9.1f%%%n", cacheSize, opsPerSecond,
+                            snapshot.getValueAtPercentile(50) / 1e3, snapshot.getValueAtPercentile(99) / 1e3,
+                            requests == 0 ? 0 : hits * 100.0 / requests);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static double run(AccountCache cache, String[] numbers, int threads, long durationMillis,
+                              LatencyHistogram latencies) throws InterruptedException {
+        int hotCount = Math.max(1, numbers.length * HOT_ACCOUNTS_PERCENT / 100);
+        LongAdder completed = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + durationMillis * 1_000_000L;
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 256; i++) {
+                        String number = numbers[random.nextDouble() < HOT_SHARE
+                                ? random.nextInt(hotCount) : random.nextInt(numbers.length)];
+                        long startNanos = System.nanoTime();
+                        cache.get(number).deposit(100);
+                        if (latencies != null) {
+                            latencies.record(System.nanoTime() - startNanos);
+                        }
+                    }
+                    completed.add(256);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return completed.sum() / ((System.nanoTime() - startNanos) / 1e9);
+    }
+}
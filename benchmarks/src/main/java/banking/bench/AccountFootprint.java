@@ -0,0 +1,102 @@
+package banking.bench;
+
+import banking.AccountValidator;
+import banking.BankAccount;
+import banking.metrics.Metrics;
+
+import java.time.LocalDate;
+
+/**
+ * Память на счет: объекты BankAccount (с историей из операции открытия) против
+ * CompactAccountStore. Замер - занятая куча после сборки мусора до и после заполнения;
+ * реквизиты каждого счета - отдельные строки, как после чтения из файла.
+ * Запуск: java -Xmx4g banking.bench.AccountFootprint [счетов] [прогноз для счетов]
+ */
+public class AccountFootprint {
+    private static final String[] BIKS = {"044525225", "044525593", "044030653", "046577674"};
+    private static final String[] CORRESPONDENT_ACCOUNTS = {
+            "30101810400000000225", "30101810200000000593", "30101810500000000653", "30101810500000000674"};
+    private static final String KPP = "770101001";
+    private static final String INN = "7707083893";
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long projected = args.length > 1 ? Long.parseLong(args[1]) : 10_000_000;
+        Metrics.setEnabled(false);
+
+        long before = usedMemory();
+        BankAccount[] accounts = new BankAccount[count];
+        for (int i = 0; i < count; i++) {
+            accounts[i] = new BankAccount(number(i), copy(BIKS[i % BIKS.length]), copy(KPP),
+                    copy(CORRESPONDENT_ACCOUNTS[i % BIKS.length]), inn(i), "Владелец " + i, i * 100L);
+        }
+        double objectBytes = (double) (usedMemory() - before) / count;
+
+        before = usedMemory();
+        LocalDate openDate = LocalDate.now();
+        CompactAccountStore store = new CompactAccountStore(count);
+        for (int i = 0; i < count; i++) {
+            store.add(accounts[i].getAccountNumber(), copy(BIKS[i % BIKS.length]), copy(KPP),
+                    copy(CORRESPONDENT_ACCOUNTS[i % BIKS.length]), accounts[i].getInn(),
+                    accounts[i].getOwnerName(), accounts[i].getBalance(), openDate);
+        }
+        // Имена владельцев общие с BankAccount - их размер добавляется отдельно
+        double ownerBytes = ownerNameBytes(accounts);
+        double compactBytes = (double) (usedMemory() - before) / count + ownerBytes;
+
+        System.out.printf("Счетов: %d (в хранилище %d)%n", count, store.size());
+        System.out.printf("%-28s %14s %22s%n", "представление", "байт на счет",
+                String.format("МБ на %d счетов", projected));
+        print("BankAccount", objectBytes, projected);
+        print("CompactAccountStore", compactBytes, projected);
+        System.out.printf("Из них имя владельца: %.1f байт на счет%n", ownerBytes);
+    }
+
+    private static void print(String name, double bytesPerAccount, long projected) {
+        System.out.printf("%-28s %14.1f %22.0f%n", name, bytesPerAccount,
+                bytesPerAccount * projected / (1024 * 1024));
+    }
+
+    private static String number(int i) {
+        return AccountValidator.withAccountKey(String.format("40702810%012d", i), BIKS[i % BIKS.length]);
+    }
+
+    private static String inn(int i) {
+        return i % 3 == 0 ? null : copy(INN);
+    }
+
+    private static String copy(String value) {
+        return new String(value.toCharArray());
+    }
+
+    /**
+     * Оценка размера строки имени при сжатых строках (Latin-1 или UTF-16)
+     */
+    private static double ownerNameBytes(BankAccount[] accounts) {
+        long total = 0;
+        for (BankAccount account : accounts) {
+            String name = account.getOwnerName();
+            boolean latin1 = name.chars().allMatch(c -> c < 256);
+            long data = 16 + align((long) name.length() * (latin1 ? 1 : 2)); // Массив byte[]
+            total += 24 + align(data);                                       // Объект String
+        }
+        return (double) total / accounts.length;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,242 @@
+package banking.bench;
+
+import banking.AccountValidator;
+import banking.BankAccount;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Компактное хранилище реквизитов и балансов большого числа счетов в параллельных массивах.
+ * Номер счета хранится в 9 байтах (первые 2 цифры + остальные 18 цифр числом),
+ * БИК и КПП (9 цифр) - числами int, ИНН - числом long с признаком длины,
+ * корреспондентский счет - номером в словаре общих значений, дата открытия - днем эпохи.
+ * Поиск по номеру - открытая адресация по упакованному номеру, без объектов на счет.
+ * <p>
+ * Хранилище не потокобезопасно: заполнение и изменение балансов - из одного потока
+ * (или под внешней синхронизацией)
+ * <p>
+ * Используется только замером памяти AccountFootprint, поэтому лежит в модуле benchmarks
+ * и в приложение не входит
+ */
+public final class CompactAccountStore {
+    private static final int LOW_DIGITS = 18;
+    private static final long NO_INN = -1;
+    private static final int NO_VALUE = -1;
+
+    private int size;
+    private byte[] numberHigh;                  // Первые 2 цифры номера
+    private long[] numberLow;                   // Последние 18 цифр номера
+    private int[] biks;
+    private int[] kpps;
+    private int[] correspondentIds;             // Номер в correspondentAccounts или NO_VALUE
+    private long[] inns;                        // ИНН * 2 + (1 для 12 цифр) или NO_INN
+    private String[] ownerNames;
+    private long[] balances;                    // В копейках
+    private int[] openEpochDays;
+
+    private final Map<String, Integer> correspondentIdsByValue = new HashMap<>();
+    private final List<String> correspondentAccounts = new ArrayList<>();
+
+    private int[] slots;                        // Индекс счета + 1, 0 - свободно
+    private int slotMask;
+
+    public CompactAccountStore(int expectedAccounts) {
+        int capacity = Math.max(16, expectedAccounts);
+        numberHigh = new byte[capacity];
+        numberLow = new long[capacity];
+        biks = new int[capacity];
+        kpps = new int[capacity];
+        correspondentIds = new int[capacity];
+        inns = new long[capacity];
+        ownerNames = new String[capacity];
+        balances = new long[capacity];
+        openEpochDays = new int[capacity];
+        slots = new int[tableSize(capacity)];
+        slotMask = slots.length - 1;
+    }
+
+    /**
+     * Добавление счета; реквизиты проверяются по формату (см. AccountValidator.validateFormat)
+     *
+     * @return индекс счета в хранилище
+     * @throws IllegalArgumentException если реквизиты некорректны или номер уже есть
+     */
+    public int add(String accountNumber, String bik, String kpp, String correspondentAccount,
+                   String inn, String ownerName, long balance, LocalDate openDate) {
+        AccountValidator.validateFormat(accountNumber, bik, kpp, correspondentAccount, inn);
+        if (indexOf(accountNumber) >= 0) {
+            throw new IllegalArgumentException("Счет с номером " + accountNumber + " уже существует");
+        }
+        if (size == balances.length) {
+            grow();
+        }
+        int index = size++;
+        numberHigh[index] = (byte) AccountValidator.parseDigits(accountNumber, 0, 2);
+        numberLow[index] = AccountValidator.parseDigits(accountNumber, 2, AccountValidator.ACCOUNT_NUMBER_LENGTH);
+        biks[index] = (int) AccountValidator.parseDigits(bik, 0, bik.length());
+        kpps[index] = (int) AccountValidator.parseDigits(kpp, 0, kpp.length());
+        correspondentIds[index] = correspondentAccount == null ? NO_VALUE
+                : correspondentIdsByValue.computeIfAbsent(correspondentAccount, value -> {
+                    correspondentAccounts.add(value);
+                    return correspondentAccounts.size() - 1;
+                });
+        inns[index] = inn == null ? NO_INN
+                : AccountValidator.parseDigits(inn, 0, inn.length()) * 2
+                        + (inn.length() == AccountValidator.PERSONAL_INN_LENGTH ? 1 : 0);
+        ownerNames[index] = ownerName;
+        balances[index] = balance;
+        openEpochDays[index] = (int) openDate.toEpochDay();
+        insertSlot(index);
+        return index;
+    }
+
+    /**
+     * Копия реквизитов, баланса и даты открытия существующего счета
+     */
+    public int add(BankAccount account) {
+        return add(account.getAccountNumber(), account.getBik(), account.getKpp(),
+                account.getCorrespondentAccount(), account.getInn(), account.getOwnerName(),
+                account.getBalance(), LocalDate.parse(account.getOpenDate()));
+    }
+
+    /**
+     * Индекс счета по номеру или -1
+     */
+    public int indexOf(String accountNumber) {
+        if (accountNumber == null || !AccountValidator.isDigits(accountNumber, AccountValidator.ACCOUNT_NUMBER_LENGTH)) {
+            return -1;
+        }
+        byte high = (byte) AccountValidator.parseDigits(accountNumber, 0, 2);
+        long low = AccountValidator.parseDigits(accountNumber, 2, AccountValidator.ACCOUNT_NUMBER_LENGTH);
+        for (int slot = slotOf(high, low); slots[slot] != 0; slot = (slot + 1) & slotMask) {
+            int index = slots[slot] - 1;
+            if (numberLow[index] == low && numberHigh[index] == high) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getAccountNumber(int index) {
+        checkIndex(index);
+        char[] digits = new char[AccountValidator.ACCOUNT_NUMBER_LENGTH];
+        AccountValidator.writeDigits(digits, 0, 2, numberHigh[index]);
+        AccountValidator.writeDigits(digits, 2, LOW_DIGITS, numberLow[index]);
+        return new String(digits);
+    }
+
+    public String getBik(int index) {
+        checkIndex(index);
+        return formatDigits(biks[index], AccountValidator.BIK_LENGTH);
+    }
+
+    public String getKpp(int index) {
+        checkIndex(index);
+        return formatDigits(kpps[index], AccountValidator.KPP_LENGTH);
+    }
+
+    public String getCorrespondentAccount(int index) {
+        checkIndex(index);
+        int id = correspondentIds[index];
+        return id == NO_VALUE ? null : correspondentAccounts.get(id);
+    }
+
+    public String getInn(int index) {
+        checkIndex(index);
+        long packed = inns[index];
+        if (packed == NO_INN) {
+            return null;
+        }
+        int length = (packed & 1) == 1 ? AccountValidator.PERSONAL_INN_LENGTH : AccountValidator.LEGAL_INN_LENGTH;
+        return formatDigits(packed >>> 1, length);
+    }
+
+    public String getOwnerName(int index) {
+        checkIndex(index);
+        return ownerNames[index];
+    }
+
+    /**
+     * Баланс в копейках
+     */
+    public long getBalance(int index) {
+        checkIndex(index);
+        return balances[index];
+    }
+
+    public void setBalance(int index, long balance) {
+        checkIndex(index);
+        balances[index] = balance;
+    }
+
+    public LocalDate getOpenDate(int index) {
+        checkIndex(index);
+        return LocalDate.ofEpochDay(openEpochDays[index]);
+    }
+
+    /**
+     * Число разных корреспондентских счетов в словаре
+     */
+    public int getCorrespondentAccountCount() {
+        return correspondentAccounts.size();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Нет счета с индексом " + index);
+        }
+    }
+
+    private void grow() {
+        int capacity = balances.length * 2;
+        numberHigh = Arrays.copyOf(numberHigh, capacity);
+        numberLow = Arrays.copyOf(numberLow, capacity);
+        biks = Arrays.copyOf(biks, capacity);
+        kpps = Arrays.copyOf(kpps, capacity);
+        correspondentIds = Arrays.copyOf(correspondentIds, capacity);
+        inns = Arrays.copyOf(inns, capacity);
+        ownerNames = Arrays.copyOf(ownerNames, capacity);
+        balances = Arrays.copyOf(balances, capacity);
+        openEpochDays = Arrays.copyOf(openEpochDays, capacity);
+        slots = new int[tableSize(capacity)];
+        slotMask = slots.length - 1;
+        for (int index = 0; index < size; index++) {
+            insertSlot(index);
+        }
+    }
+
+    private void insertSlot(int index) {
+        int slot = slotOf(numberHigh[index], numberLow[index]);
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & slotMask;
+        }
+        slots[slot] = index + 1;
+    }
+
+    private int slotOf(byte high, long low) {
+        long hash = (low ^ (long) high << 59) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & slotMask;
+    }
+
+    /**
+     * Размер таблицы - степень двойки, заполненная не более чем наполовину
+     */
+    private static int tableSize(int capacity) {
+        return Integer.highestOneBit(capacity * 2 - 1) << 1;
+    }
+
+    private static String formatDigits(long value, int length) {
+        char[] digits = new char[length];
+        AccountValidator.writeDigits(digits, 0, length, value);
+        return new String(digits);
+    }
+}
@@ -0,0 +1,164 @@
+package banking.bench;
+
+import banking.AccountValidator;
+import banking.metrics.HistogramSnapshot;
+import banking.metrics.LatencyHistogram;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Нагрузочный клиент сервера запросов (java Main serve): открывает счета, затем каждое
+ * соединение в замкнутом цикле отправляет запрос и ждет ответа. Смесь запросов:
+ * 40% DEPOSIT, 30% WITHDRAW, 20% BALANCE, 10% HISTORY по 10 записей.
+ * Первая четверть времени - прогрев, в результат не входит.
+ * Запуск: java banking.bench.LoadGenerator [порт] [соединений] [длительность, мс] [счетов]
+ */
+public class LoadGenerator {
+    private static final String BIK = "044525225";
+    private static final String INITIAL_BALANCE = "1000000.00";
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        long durationMillis = args.length > 2 ? Long.parseLong(args[2]) : 10_000;
+        int accountCount = args.length > 3 ? Integer.parseInt(args[3]) : 1_000;
+
+        List<String> accounts = openAccounts(port, accountCount);
+        System.out.printf("Соединений: %d, счетов: %d, длительность: %d мс%n",
+                connections, accountCount, durationMillis);
+
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder completed = new LongAdder();
+        LongAdder errors = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] window = new long[2]; // Начало и конец замера, задаются после старта
+        List<Thread> clients = new ArrayList<>(connections);
+
+        for (int c = 0; c < connections; c++) {
+            Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setTcpNoDelay(true);
+            Thread client = new Thread(() -> {
+                try (socket) {
+                    start.await();
+                    run(socket, accounts, window, latency, completed, errors);
+                } catch (IOException e) {
+                    System.err.println("Соединение разорвано: " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "load-client-" + c);
+            clients.add(client);
+            client.start();
+        }
+
+        long now = System.nanoTime();
+        window[0] = now + durationMillis * 250_000L;  // Прогрев - четверть длительности
+        window[1] = now + durationMillis * 1_000_000L;
+        start.countDown();
+        for (Thread client : clients) {
+            client.join();
+        }
+
+        HistogramSnapshot snapshot = latency.snapshot();
+        double seconds = (window[1] - window[0]) / 1e9;
+        System.out.printf("Запросов: %d (%.0f в секунду), ошибок и отказов: %d%n",
+                completed.sum(), completed.sum() / seconds, errors.sum());
+        System.out.printf("Задержка, мкс: p50 %.1f | p99 %.1f | p99.9 %.1f | max %.1f%n",
+                snapshot.getValueAtPercentile(50) / 1e3, snapshot.getValueAtPercentile(99) / 1e3,
+                snapshot.getValueAtPercentile(99.9) / 1e3, snapshot.getMax() / 1e3);
+    }
+
+    /**
+     * Открытие счетов со случайным префиксом номера, чтобы повторные запуски
+     * против одного сервера не пересекались
+     */
+    private static List<String> openAccounts(int port, int count) throws IOException {
+        long prefix = ThreadLocalRandom.current().nextLong(100_000_000L);
+        List<String> accounts = new ArrayList<>(count);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            BufferedReader in = reader(socket);
+            Writer out = writer(socket);
+            for (int i = 0; i < count; i++) {
+                String number = AccountValidator.withAccountKey(
+                        String.format("%08d0%011d", prefix, i), BIK);
+                out.write("OPEN;" + number + ";" + INITIAL_BALANCE + ";" + BIK +
+                        ";770101001;;;Нагрузка " + i + "\n");
+                out.flush();
+                String response = in.readLine();
+                if (response == null || !response.startsWith("OK")) {
+                    throw new IOException("Не удалось открыть счет " + number + ": " + response);
+                }
+                accounts.add(number);
+            }
+        }
+        return accounts;
+    }
+
+    private static void run(Socket socket, List<String> accounts, long[] window,
+                            LatencyHistogram latency, LongAdder completed, LongAdder errors)
+            throws IOException {
+        BufferedReader in = reader(socket);
+        Writer out = writer(socket);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder request = new StringBuilder(64);
+        long measureFrom = window[0];
+        long deadline = window[1];
+
+        long startNanos;
+        while ((startNanos = System.nanoTime()) < deadline) {
+            String account = accounts.get(random.nextInt(accounts.size()));
+            int kind = random.nextInt(10);
+            request.setLength(0);
+            if (kind < 4) {
+                request.append("DEPOSIT;").append(account).append(";10.00");
+            } else if (kind < 7) {
+                request.append("WITHDRAW;").append(account).append(";5.00");
+            } else if (kind < 9) {
+                request.append("BALANCE;").append(account);
+            } else {
+                request.append("HISTORY;").append(account).append(";0;10");
+            }
+            out.append(request).append('\n');
+            out.flush();
+
+            String response = in.readLine();
+            if (response == null) {
+                throw new IOException("Сервер закрыл соединение");
+            }
+            if (kind == 9 && response.startsWith("OK;")) {
+                int lines = Integer.parseInt(response.substring(3));
+                for (int i = 0; i < lines; i++) {
+                    in.readLine();
+                }
+            }
+            if (startNanos >= measureFrom) {
+                latency.record(System.nanoTime() - startNanos);
+                completed.increment();
+                if (!response.startsWith("OK")) {
+                    errors.increment();
+                }
+            }
+        }
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static Writer writer(Socket socket) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,113 @@
+package banking.bench;
+
+import banking.Money;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+/**
+ * Сравнение представлений денежных сумм: long в копейках (Money), double и BigDecimal.
+ * Замеряется накопление баланса (пополнение/списание) и разбор строк.
+ * Запуск: java banking.bench.MoneyBenchmark [число операций]
+ */
+public class MoneyBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+
+        Random random = new Random(42);
+        long[] kopecks = new long[operations];
+        double[] doubles = new double[operations];
+        BigDecimal[] decimals = new BigDecimal[operations];
+        String[] texts = new String[Math.min(operations, 1_000_000)];
+        for (int i = 0; i < operations; i++) {
+            long amount = 1 + random.nextInt(1_000_000);
+            if (random.nextBoolean()) {
+                amount = -amount; // Списание
+            }
+            kopecks[i] = amount;
+            doubles[i] = amount / 100.0;
+            decimals[i] = BigDecimal.valueOf(amount, 2);
+            if (i < texts.length) {
+                texts[i] = Money.format(amount);
+            }
+        }
+
+        System.out.printf("Операций: %d%n", operations);
+        long exact = 0;
+        double drifted = 0;
+        BigDecimal decimal = BigDecimal.ZERO;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            exact = sumMoney(kopecks);
+            long moneyNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            drifted = sumDouble(doubles);
+            long doubleNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            decimal = sumBigDecimal(decimals);
+            long decimalNanos = System.nanoTime() - start;
+
+            System.out.printf("Раунд %d: long %.2f нс/оп | double %.2f нс/оп | BigDecimal %.2f нс/оп%n",
+                    round + 1, (double) moneyNanos / operations, (double) doubleNanos / operations,
+                    (double) decimalNanos / operations);
+        }
+        System.out.printf("Итог: long %s | double %s | BigDecimal %s%n",
+                Money.format(exact), BigDecimal.valueOf(drifted).toPlainString(), decimal.toPlainString());
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            long parsedMoney = 0;
+            for (String text : texts) {
+                parsedMoney += Money.parse(text);
+            }
+            long moneyNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            double parsedDouble = 0;
+            for (String text : texts) {
+                parsedDouble += Double.parseDouble(text);
+            }
+            long doubleNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            BigDecimal parsedDecimal = BigDecimal.ZERO;
+            for (String text : texts) {
+                parsedDecimal = parsedDecimal.add(new BigDecimal(text));
+            }
+            long decimalNanos = System.nanoTime() - start;
+
+            System.out.printf("Разбор, раунд %d: Money.parse %.2f нс | Double.parseDouble %.2f нс | " +
+                            "new BigDecimal %.2f нс (контроль: %d %.0f %s)%n",
+                    round + 1, (double) moneyNanos / texts.length, (double) doubleNanos / texts.length,
+                    (double) decimalNanos / texts.length, parsedMoney, parsedDouble, parsedDecimal);
+        }
+    }
+
+    private static long sumMoney(long[] amounts) {
+        long balance = 0;
+        for (long amount : amounts) {
+            balance = Money.add(balance, amount);
+        }
+        return balance;
+    }
+
+    private static double sumDouble(double[] amounts) {
+        double balance = 0;
+        for (double amount : amounts) {
+            balance += amount;
+        }
+        return balance;
+    }
+
+    private static BigDecimal sumBigDecimal(BigDecimal[] amounts) {
+        BigDecimal balance = BigDecimal.ZERO;
+        for (BigDecimal amount : amounts) {
+            balance = balance.add(amount);
+        }
+        return balance;
+    }
+}
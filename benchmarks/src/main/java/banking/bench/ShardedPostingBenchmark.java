@@ -0,0 +1,124 @@
+package banking.bench;
+
+import banking.AccountValidator;
+import banking.BankAccount;
+import banking.ShardedPostingEngine;
+import banking.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Пополнения и снятия: потоки, блокирующие счета (BankAccount.deposit/withdraw),
+ * против разделов с единственным исполнителем (ShardedPostingEngine).
+ * Для исполнителя время включает проведение всех отправленных операций.
+ * Запуск: java banking.bench.ShardedPostingBenchmark [потоков] [разделов] [длительность, мс]
+ */
+public class ShardedPostingBenchmark {
+    private static final int[] ACCOUNT_COUNTS = {16, 1_024, 65_536};
+    private static final long INITIAL_BALANCE = 100_000_000; // 1 млн руб. в копейках
+    private static final int RING_CAPACITY = 1 << 14;
+
+    public static void main(String[] args) throws InterruptedException {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : cpus;
+        int shards = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(1, cpus / 2);
+        long durationMillis = args.length > 2 ? Long.parseLong(args[2]) : 2_000;
+        Metrics.setEnabled(false); // Сравниваются сами схемы проведения
+
+        System.out.printf("Потоков: %d, разделов: %d, длительность замера: %d мс%n",
+                threads, shards, durationMillis);
+        System.out.printf("%10s %20s %20s%n", "счетов", "блокировки, оп/с", "разделы, оп/с");
+        for (int accountCount : ACCOUNT_COUNTS) {
+            runLocked(accountCount, threads, durationMillis / 4); // Прогрев
+            double locked = runLocked(accountCount, threads, durationMillis);
+            runSharded(accountCount, threads, shards, durationMillis / 4);
+            double sharded = runSharded(accountCount, threads, shards, durationMillis);
+            System.out.printf("%10d %20.0f %20.0f%n", accountCount, locked, sharded);
+        }
+    }
+
+    private static double runLocked(int accountCount, int threads, long durationMillis)
+            throws InterruptedException {
+        List<BankAccount> accounts = createAccounts(accountCount);
+        LongAdder completed = new LongAdder();
+        long elapsed = runProducers(threads, durationMillis, random -> {
+            BankAccount account = accounts.get(random.nextInt(accountCount));
+            if (random.nextBoolean()) {
+                account.deposit(100);
+            } else {
+                account.withdraw(100);
+            }
+            completed.increment();
+        });
+        return completed.sum() * 1e9 / elapsed;
+    }
+
+    private static double runSharded(int accountCount, int threads, int shards, long durationMillis)
+            throws InterruptedException {
+        List<BankAccount> accounts = createAccounts(accountCount);
+        ShardedPostingEngine engine = new ShardedPostingEngine(shards, RING_CAPACITY);
+        long startNanos = System.nanoTime();
+        runProducers(threads, durationMillis, random -> {
+            BankAccount account = accounts.get(random.nextInt(accountCount));
+            if (random.nextBoolean()) {
+                engine.deposit(account, 100, null);
+            } else {
+                engine.withdraw(account, 100, null);
+            }
+        });
+        engine.close(); // Дожидаемся проведения всех отправленных операций
+        return engine.getProcessed() * 1e9 / (System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Запуск потоков, вызывающих step до истечения времени, возвращает время в наносекундах
+     */
+    private static long runProducers(int threads, long durationMillis, Step step)
+            throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + durationMillis * 1_000_000L;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 256; i++) {
+                        step.run(random);
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return System.nanoTime() - startNanos;
+    }
+
+    private static List<BankAccount> createAccounts(int accountCount) {
+        List<BankAccount> accounts = new ArrayList<>(accountCount);
+        for (int i = 0; i < accountCount; i++) {
+            String number = AccountValidator.withAccountKey(String.format("%020d", i), "044525225");
+            accounts.add(new BankAccount(number, "044525225", "770101001",
+                    null, null, "Бенчмарк " + i, INITIAL_BALANCE));
+        }
+        return accounts;
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void run(ThreadLocalRandom random);
+    }
+}
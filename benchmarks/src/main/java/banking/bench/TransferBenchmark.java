@@ -0,0 +1,96 @@
+package banking.bench;
+
+import banking.AccountValidator;
+import banking.BankAccount;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Пропускная способность переводов при разном уровне конкуренции: чем меньше счетов,
+ * тем чаще потоки переводят между одними и теми же счетами.
+ * Запуск: java banking.bench.TransferBenchmark [потоков] [длительность, мс]
+ */
+public class TransferBenchmark {
+    private static final int[] ACCOUNT_COUNTS = {2, 16, 1_024, 65_536};
+    private static final long INITIAL_BALANCE = 100_000_000; // 1 млн руб. в копейках
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        long durationMillis = args.length > 1 ? Long.parseLong(args[1]) : 2_000;
+
+        System.out.printf("Потоков: %d, длительность замера: %d мс%n", threads, durationMillis);
+        System.out.printf("%10s %15s %15s%n", "счетов", "переводов/с", "отказов/с");
+        for (int accountCount : ACCOUNT_COUNTS) {
+            run(accountCount, 1, durationMillis / 4); // Прогрев
+            run(accountCount, threads, durationMillis);
+        }
+    }
+
+    private static void run(int accountCount, int threads, long durationMillis)
+            throws InterruptedException {
+        List<BankAccount> accounts = new ArrayList<>(accountCount);
+        for (int i = 0; i < accountCount; i++) {
+            String number = AccountValidator.withAccountKey(String.format("%020d", i), "044525225");
+            accounts.add(new BankAccount(number, "044525225", "770101001",
+                    null, null, "Бенчмарк " + i, INITIAL_BALANCE));
+        }
+
+        LongAdder completed = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + durationMillis * 1_000_000L;
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 256; i++) {
+                        int from = random.nextInt(accountCount);
+                        int to = random.nextInt(accountCount - 1);
+                        if (to >= from) {
+                            to++;
+                        }
+                        if (BankAccount.transfer(accounts.get(from), accounts.get(to), 100)) {
+                            completed.increment();
+                        } else {
+                            rejected.increment();
+                        }
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+        long total = 0;
+        for (BankAccount account : accounts) {
+            total += account.getBalance();
+        }
+        if (total != INITIAL_BALANCE * accountCount) {
+            throw new IllegalStateException("Нарушен баланс системы: " + total);
+        }
+
+        if (threads > 1) {
+            System.out.printf("%10d %15.0f %15.0f%n", accountCount,
+                    completed.sum() / seconds, rejected.sum() / seconds);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package banking.jmh;
+
+import banking.AccountRegistry;
+import banking.BankAccount;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции со счетами в реестре: пополнение, снятие, перевод и открытие счета
+ * (конструктор с полной проверкой реквизитов). Варианты *Concurrent - из 4 потоков
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class AccountOperationsBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    public int accounts;
+
+    private List<BankAccount> accountList;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AccountRegistry registry = BankFixture.registry(accounts);
+        accountList = new ArrayList<>(registry.getAll());
+    }
+
+    private BankAccount randomAccount() {
+        return accountList.get(ThreadLocalRandom.current().nextInt(accounts));
+    }
+
+    @Benchmark
+    public void deposit() {
+        randomAccount().deposit(100);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void depositConcurrent() {
+        deposit();
+    }
+
+    @Benchmark
+    public boolean withdraw() {
+        return randomAccount().withdraw(100);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean withdrawConcurrent() {
+        return withdraw();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean transferConcurrent() {
+        BankAccount from = randomAccount();
+        BankAccount to = randomAccount();
+        return from == to || BankAccount.transfer(from, to, 100);
+    }
+
+    @Benchmark
+    public BankAccount openAccount() {
+        // Номер из того же диапазона, счет в реестр не добавляется
+        return BankFixture.newAccount(ThreadLocalRandom.current().nextInt(accounts), 0);
+    }
+}
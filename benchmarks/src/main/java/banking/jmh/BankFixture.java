@@ -0,0 +1,66 @@
+package banking.jmh;
+
+import banking.AccountRegistry;
+import banking.AccountValidator;
+import banking.BankAccount;
+
+import java.util.Random;
+
+/**
+ * Генерация реестра счетов с корректными реквизитами для бенчмарков.
+ * Значения БИК, КПП и имен повторяются, чтобы поиск по атрибутам находил группы счетов
+ */
+final class BankFixture {
+    static final String[] BIKS = {"044525225", "044525593", "044525974", "040349001",
+            "046577964", "044030653", "045004641", "042202603"};
+    static final int KPP_VALUES = 1_000;
+    static final int OWNER_NAMES = 10_000;
+    static final long MAX_BALANCE = 10_000_000; // В копейках
+
+    private BankFixture() {
+    }
+
+    static String accountNumber(int index) {
+        return AccountValidator.withAccountKey(String.format("40702810%012d", index), bik(index));
+    }
+
+    static String bik(int index) {
+        return BIKS[index % BIKS.length];
+    }
+
+    static String kpp(int index) {
+        return String.format("77%02d%05d", index % 100, index % KPP_VALUES);
+    }
+
+    static String ownerName(int index) {
+        return "Владелец " + (index % OWNER_NAMES);
+    }
+
+    /**
+     * ИНН организации с корректным контрольным разрядом
+     */
+    static String inn(int index) {
+        String prefix = String.format("77%07d", index % 10_000_000);
+        for (int digit = 0; digit <= 9; digit++) {
+            String inn = prefix + digit;
+            if (AccountValidator.isValidInn(inn)) {
+                return inn;
+            }
+        }
+        throw new IllegalStateException("Контрольный разряд ИНН не найден");
+    }
+
+    static BankAccount newAccount(int index, long balance) {
+        return new BankAccount(accountNumber(index), bik(index), kpp(index), null, inn(index),
+                ownerName(index), balance);
+    }
+
+    static AccountRegistry registry(int accounts) {
+        AccountRegistry registry = AccountRegistry.concurrent();
+        Random random = new Random(42);
+        for (int i = 0; i < accounts; i++) {
+            registry.register(newAccount(i, random.nextLong(MAX_BALANCE)));
+        }
+        return registry;
+    }
+}
@@ -0,0 +1,90 @@
+package banking.jmh;
+
+import banking.BankAccount;
+import banking.Transaction;
+import banking.TransactionType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение истории счета с transactions записями: последняя страница, выборка
+ * по типу за период, сумма за период и полная копия истории
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class HistoryBenchmark {
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"1000", "100000", "10000000"})
+    public int transactions;
+
+    private BankAccount account;
+    private LocalDateTime from;
+    private LocalDateTime to;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        from = LocalDateTime.now();
+        account = BankFixture.newAccount(0, 0);
+        for (int i = 1; i < transactions; i++) {
+            if (i % 3 == 0) {
+                account.withdraw(50);
+            } else {
+                account.deposit(100);
+            }
+        }
+        to = LocalDateTime.now().plusSeconds(1);
+    }
+
+    @Benchmark
+    public List<Transaction> lastPage() {
+        return account.getTransactions(Math.max(0, transactions - PAGE_SIZE), PAGE_SIZE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<Transaction> lastPageConcurrent() {
+        return lastPage();
+    }
+
+    @Benchmark
+    public List<Transaction> randomPage() {
+        return account.getTransactions(ThreadLocalRandom.current().nextInt(transactions), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Transaction> withdrawalsInPeriod() {
+        return account.getTransactions(TransactionType.WITHDRAWAL, from, to,
+                ThreadLocalRandom.current().nextInt(transactions / 3), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public long depositSumInPeriod() {
+        return account.sumTransactions(TransactionType.DEPOSIT, from, to);
+    }
+
+    @Benchmark
+    public List<Transaction> fullHistory() {
+        return account.getTransactions();
+    }
+}
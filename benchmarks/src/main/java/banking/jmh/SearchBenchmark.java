@@ -0,0 +1,137 @@
+package banking.jmh;
+
+import banking.AccountRegistry;
+import banking.BankAccount;
+import banking.BankAccountSearch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Поиск счетов: по номеру, по каждому атрибуту, комплексный поиск и перебор
+ * по произвольному условию (последовательный и fork-join).
+ * Варианты *Concurrent выполняются из 4 потоков над общим реестром
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    public int accounts;
+
+    private AccountRegistry registry;
+    private String[] numbers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        registry = BankFixture.registry(accounts);
+        numbers = new String[Math.min(accounts, 65_536)];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = BankFixture.accountNumber(ThreadLocalRandom.current().nextInt(accounts));
+        }
+    }
+
+    private int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(accounts);
+    }
+
+    @Benchmark
+    public BankAccount findByNumber() {
+        return registry.findByNumber(numbers[ThreadLocalRandom.current().nextInt(numbers.length)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public BankAccount findByNumberConcurrent() {
+        return findByNumber();
+    }
+
+    @Benchmark
+    public List<BankAccount> searchByAccountNumber() {
+        return BankAccountSearch.searchByAccountNumber(registry,
+                numbers[ThreadLocalRandom.current().nextInt(numbers.length)]);
+    }
+
+    @Benchmark
+    public List<BankAccount> searchByBik() {
+        return BankAccountSearch.searchByBik(registry, BankFixture.bik(randomIndex()));
+    }
+
+    @Benchmark
+    public List<BankAccount> searchByKpp() {
+        return BankAccountSearch.searchByKpp(registry, BankFixture.kpp(randomIndex()));
+    }
+
+    @Benchmark
+    public List<BankAccount> searchByInn() {
+        return BankAccountSearch.searchByInn(registry, BankFixture.inn(randomIndex()));
+    }
+
+    @Benchmark
+    public List<BankAccount> searchByOwnerName() {
+        return BankAccountSearch.searchByOwnerName(registry, "ладелец " + randomIndex() % BankFixture.OWNER_NAMES);
+    }
+
+    @Benchmark
+    public List<BankAccount> searchByBalanceRange() {
+        long min = ThreadLocalRandom.current().nextLong(BankFixture.MAX_BALANCE);
+        return BankAccountSearch.searchByBalanceRange(registry, min, min + 1_000);
+    }
+
+    @Benchmark
+    public List<BankAccount> searchRichest() {
+        return BankAccountSearch.searchRichest(registry, 10);
+    }
+
+    @Benchmark
+    public List<BankAccount> advancedSearch() {
+        int index = randomIndex();
+        return BankAccountSearch.advancedSearch(registry, "40702810", BankFixture.bik(index),
+                null, "ладелец " + index % BankFixture.OWNER_NAMES);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<BankAccount> advancedSearchConcurrent() {
+        return advancedSearch();
+    }
+
+    private static final Predicate<BankAccount> COMPLIANCE_CHECK =
+            account -> account.getBalance() > BankFixture.MAX_BALANCE / 2 && account.getOwnerName().endsWith("7");
+
+    @Benchmark
+    public List<BankAccount> scanSequential() {
+        return BankAccountSearch.search(registry.getAll(), COMPLIANCE_CHECK);
+    }
+
+    @Benchmark
+    public List<BankAccount> scanParallel() {
+        return BankAccountSearch.parallelSearch(registry.getAll(), COMPLIANCE_CHECK,
+                BankAccountSearch.DEFAULT_PARALLEL_THRESHOLD, BankAccountSearch.NO_LIMIT);
+    }
+
+    @Benchmark
+    public List<BankAccount> scanParallelFirst100() {
+        return BankAccountSearch.parallelSearch(registry.getAll(), COMPLIANCE_CHECK,
+                BankAccountSearch.DEFAULT_PARALLEL_THRESHOLD, 100);
+    }
+}
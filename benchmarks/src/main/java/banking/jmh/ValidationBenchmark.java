@@ -0,0 +1,60 @@
+package banking.jmh;
+
+import banking.AccountValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка реквизитов: прежние регулярные выражения против AccountValidator
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+    private static final int RECORDS = 4_096;
+
+    private String[][] requisites;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        requisites = new String[RECORDS][];
+        for (int i = 0; i < RECORDS; i++) {
+            requisites[i] = new String[]{BankFixture.accountNumber(i), BankFixture.bik(i),
+                    BankFixture.kpp(i), "30101810400000000225", BankFixture.inn(i)};
+        }
+    }
+
+    private String[] next() {
+        return requisites[ThreadLocalRandom.current().nextInt(RECORDS)];
+    }
+
+    @Benchmark
+    public boolean regex() {
+        String[] r = next();
+        return r[0].matches("\\d{" + AccountValidator.ACCOUNT_NUMBER_LENGTH + "}")
+                && r[1].matches("\\d{" + AccountValidator.BIK_LENGTH + "}")
+                && r[2].matches("\\d{" + AccountValidator.KPP_LENGTH + "}")
+                && r[3].matches("\\d{" + AccountValidator.CORR_ACCOUNT_LENGTH + "}");
+    }
+
+    @Benchmark
+    public String validator() {
+        String[] r = next();
+        return AccountValidator.check(r[0], r[1], r[2], r[3], r[4]);
+    }
+}
@@ -1,11 +1,194 @@
+import banking.AccountCache;
+import banking.AccountExporter;
+import banking.AccountImporter;
+import banking.AccountRegistry;
 import banking.BankSystem;
+import banking.DiskAccountStore;
+import banking.Journal;
+import banking.SnapshotManager;
+import banking.TransactionArchive;
+import banking.batch.BatchPostingEngine;
+import banking.batch.BatchReport;
+import banking.server.RequestServer;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.Arrays;
 
 /**
- * Главный класс для запуска банковской системы
+ * Главный класс для запуска банковской системы.
+ * Без аргументов запускается консольное меню, пакетный режим:
+ * java Main batch входной_файл.csv префикс_отчета [число_разделов]
+ * Режим сервера запросов на локальном порту (протокол - в banking.server.RequestHandler):
+ * java Main serve [порт]
+ * Массовая загрузка и выгрузка счетов (.csv или двоичный формат, см. banking.AccountFileFormat):
+ * java Main import файл_счетов [число_потоков]
+ * java Main export файл_счетов
+ * <p>
+ * Опции перед режимом:
+ * --data каталог        хранить состояние в журнале каталога и восстанавливать его при запуске,
+ *                       старая история счетов уходит в архив каталог/archive
+ * --fsync-ms N          максимальная задержка fsync журнала (по умолчанию 10 мс)
+ * --fsync-records N     fsync после N записей, не дожидаясь задержки (по умолчанию 1000)
+ * --snapshot-sec N      период снимков состояния и сжатия журнала (по умолчанию 300 с)
+ * --store файл          хранить счета в файле на диске, держа в памяти только кэш (требует --data:
+ *                       изменения счетов хранилища проходят через журнал)
+ * --cache-size N        число счетов хранилища в памяти (по умолчанию 10000)
  */
 public class Main {
-    public static void main(String[] args) {
-        BankSystem bankSystem = new BankSystem();
-        bankSystem.start();
+    private static final long DEFAULT_FSYNC_MILLIS = 10;
+    private static final int DEFAULT_FSYNC_RECORDS = 1_000;
+    private static final long DEFAULT_SNAPSHOT_SECONDS = 300;
+    private static final int DEFAULT_SERVER_PORT = 7070;
+    private static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        Path dataDirectory = null;
+        long fsyncMillis = DEFAULT_FSYNC_MILLIS;
+        int fsyncRecords = DEFAULT_FSYNC_RECORDS;
+        long snapshotSeconds = DEFAULT_SNAPSHOT_SECONDS;
+        Path storeFile = null;
+        int cacheSize = DEFAULT_CACHE_SIZE;
+
+        int argIndex = 0;
+        while (argIndex + 1 < args.length && args[argIndex].startsWith("--")) {
+            String value = args[argIndex + 1];
+            switch (args[argIndex]) {
+                case "--data" -> dataDirectory = Path.of(value);
+                case "--fsync-ms" -> fsyncMillis = Long.parseLong(value);
+                case "--fsync-records" -> fsyncRecords = Integer.parseInt(value);
+                case "--snapshot-sec" -> snapshotSeconds = Long.parseLong(value);
+                case "--store" -> storeFile = Path.of(value);
+                case "--cache-size" -> cacheSize = Integer.parseInt(value);
+                default -> {
+                    System.out.println("Неизвестная опция: " + args[argIndex]);
+                    return;
+                }
+            }
+            argIndex += 2;
+        }
+        if (storeFile != null && dataDirectory == null) {
+            System.out.println("Опция --store требует --data: без журнала изменения счетов хранилища " +
+                    "теряются при сбое");
+            return;
+        }
+        String[] modeArgs = Arrays.copyOfRange(args, argIndex, args.length);
+        boolean batchMode = modeArgs.length > 0 && modeArgs[0].equals("batch");
+        boolean serverMode = modeArgs.length > 0 && modeArgs[0].equals("serve");
+        boolean importMode = modeArgs.length > 0 && modeArgs[0].equals("import");
+        boolean exportMode = modeArgs.length > 0 && modeArgs[0].equals("export");
+
+        // Пакетный режим, сервер и фоновые снимки обращаются к реестру из нескольких потоков
+        AccountRegistry registry = batchMode || serverMode || dataDirectory != null
+                ? AccountRegistry.concurrent() : new AccountRegistry();
+        AccountCache cache = null;
+        if (storeFile != null) {
+            // До открытия журнала: воспроизведение находит счета хранилища
+            cache = new AccountCache(DiskAccountStore.open(storeFile), cacheSize);
+            registry.setStore(cache);
+        }
+        TransactionArchive archive = null;
+        Journal journal = null;
+        SnapshotManager snapshots = null;
+        if (dataDirectory != null) {
+            archive = TransactionArchive.open(dataDirectory.resolve("archive"));
+            registry.setArchive(archive);
+            journal = Journal.open(dataDirectory, registry, fsyncMillis, fsyncRecords);
+            System.out.println(journal.getReplayReport());
+            snapshots = new SnapshotManager(dataDirectory, registry, journal);
+            snapshots.schedule(snapshotSeconds);
+            Journal openedJournal = journal;
+            SnapshotManager openedSnapshots = snapshots;
+            TransactionArchive openedArchive = archive;
+            AccountCache openedCache = cache;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                openedSnapshots.close();
+                if (openedCache != null) {
+                    closeQuietly(openedCache); // Ждет fsync журнала, поэтому закрывается раньше него
+                }
+                closeQuietly(openedJournal);
+                closeQuietly(openedArchive);
+            }));
+        }
+
+        try {
+            if (batchMode) {
+                runBatch(modeArgs, registry);
+            } else if (serverMode) {
+                runServer(modeArgs, registry, journal);
+            } else if (importMode) {
+                runImport(modeArgs, registry);
+            } else if (exportMode) {
+                runExport(modeArgs, registry);
+            } else {
+                BankSystem bankSystem = new BankSystem(registry);
+                bankSystem.start();
+            }
+        } finally {
+            if (snapshots != null) {
+                snapshots.close();
+            }
+            if (cache != null) {
+                cache.close();
+            }
+            if (journal != null) {
+                journal.close();
+            }
+            if (archive != null) {
+                archive.close();
+            }
+        }
+    }
+
+    private static void runBatch(String[] args, AccountRegistry registry) throws Exception {
+        if (args.length < 3) {
+            System.out.println("Использование: java Main [--data каталог] batch входной_файл.csv " +
+                    "префикс_отчета [число_разделов]");
+            return;
+        }
+        int partitions = args.length > 3 ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+
+        BatchPostingEngine engine = new BatchPostingEngine(registry, partitions);
+        BatchReport report = engine.run(Path.of(args[1]),
+                Path.of(args[2] + ".results.csv"), Path.of(args[2] + ".rejections.csv"));
+        System.out.println(report);
+    }
+
+    private static void runServer(String[] args, AccountRegistry registry, Journal journal) throws Exception {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SERVER_PORT;
+        try (RequestServer server = new RequestServer(registry, port, journal)) {
+            System.out.println("Сервер запросов слушает порт " + server.getPort());
+            server.serve(); // До завершения процесса
+        }
+    }
+
+    private static void runImport(String[] args, AccountRegistry registry) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Использование: java Main [--data каталог] import файл_счетов [число_потоков]");
+            return;
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+
+        AccountImporter importer = new AccountImporter(registry, threads);
+        System.out.println(importer.importAccounts(Path.of(args[1]), Path.of(args[1] + ".rejections.csv")));
+    }
+
+    private static void runExport(String[] args, AccountRegistry registry) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Использование: java Main [--data каталог] export файл_счетов");
+            return;
+        }
+        System.out.println(AccountExporter.export(registry.allAccounts(), Path.of(args[1])));
+    }
+
+    private static void closeQuietly(Closeable resource) {
+        try {
+            resource.close();
+        } catch (Exception e) {
+            System.err.println("Ошибка при закрытии " + resource.getClass().getSimpleName() +
+                    ": " + e.getMessage());
+        }
     }
 }
@@ -0,0 +1,192 @@
+package banking;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сводные показатели реестра, обновляемые при каждом открытии счета и изменении баланса:
+ * общий баланс и число счетов, суммы и число счетов по БИК и по ИНН, дневные объемы
+ * и число операций по типам. Счетчики - LongAdder, поэтому обновление из разных потоков
+ * не конкурирует за одну ячейку, а чтение не зависит от числа счетов и транзакций.
+ * <p>
+ * Показатели согласованы по каждому счетчику отдельно, но не между собой (общий баланс
+ * и сумма по БИК читаются в разные моменты). Балансы восстанавливаются вместе со счетами
+ * из снимка, журнала и хранилища, дневные объемы - только по операциям с момента запуска:
+ * пока реестр восстанавливается (setRecovering), открытия счетов в объемы не попадают.
+ * Объемы хранятся DAILY_RETENTION_DAYS дней
+ */
+public class AccountAggregates implements AccountListener {
+    static final int DAILY_RETENTION_DAYS = 31;
+
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private final LongAdder totalBalance = new LongAdder();
+    private final LongAdder accountCount = new LongAdder();
+    private final Map<String, Totals> totalsByBik = new ConcurrentHashMap<>();
+    private final Map<String, Totals> totalsByInn = new ConcurrentHashMap<>();
+    private final Map<LocalDate, DailyVolumes> volumesByDay = new ConcurrentHashMap<>();
+    private volatile boolean recovering;
+
+    AccountAggregates() {
+    }
+
+    /**
+     * Режим восстановления (загрузка снимка и воспроизведение журнала): счета учитываются
+     * в балансах, но их открытие - не операция этого запуска и в дневные объемы не входит
+     */
+    void setRecovering(boolean recovering) {
+        this.recovering = recovering;
+    }
+
+    @Override
+    public void onAccountOpened(BankAccount account) {
+        restore(account);
+        if (recovering) {
+            return;
+        }
+        Transaction opening = account.getOpeningTransaction();
+        if (opening != null && opening.getType() == TransactionType.OPEN_ACCOUNT) {
+            addVolume(opening);
+        }
+    }
+
+    /**
+     * Учет уже существующего счета (из хранилища или при восстановлении) - только баланс и число счетов
+     */
+    void restore(BankAccount account) {
+        long balance = account.getBalance();
+        totalBalance.add(balance);
+        accountCount.increment();
+        totalsFor(totalsByBik, account.getBik()).open(balance);
+        if (account.getInn() != null) {
+            totalsFor(totalsByInn, account.getInn()).open(balance);
+        }
+    }
+
+    @Override
+    public void onBalanceChanged(BankAccount account, long oldBalance, long newBalance) {
+        long delta = newBalance - oldBalance;
+        totalBalance.add(delta);
+        totalsFor(totalsByBik, account.getBik()).balance.add(delta);
+        if (account.getInn() != null) {
+            totalsFor(totalsByInn, account.getInn()).balance.add(delta);
+        }
+    }
+
+    @Override
+    public void onTransaction(BankAccount account, Transaction transaction) {
+        addVolume(transaction);
+    }
+
+    @Override
+    public void onTransfer(BankAccount from, BankAccount to, Transaction debit, Transaction credit) {
+        addVolume(debit);
+        addVolume(credit);
+    }
+
+    /**
+     * Сумма балансов всех счетов в копейках
+     */
+    public long getTotalBalance() {
+        return totalBalance.sum();
+    }
+
+    public long getAccountCount() {
+        return accountCount.sum();
+    }
+
+    /**
+     * Сумма балансов счетов с заданным БИК в копейках
+     */
+    public long getBikBalance(String bik) {
+        Totals totals = bik == null ? null : totalsByBik.get(bik);
+        return totals == null ? 0 : totals.balance.sum();
+    }
+
+    public long getBikAccountCount(String bik) {
+        Totals totals = bik == null ? null : totalsByBik.get(bik);
+        return totals == null ? 0 : totals.accounts.sum();
+    }
+
+    /**
+     * Сумма балансов счетов владельца с заданным ИНН в копейках
+     */
+    public long getInnBalance(String inn) {
+        Totals totals = inn == null ? null : totalsByInn.get(inn);
+        return totals == null ? 0 : totals.balance.sum();
+    }
+
+    public long getInnAccountCount(String inn) {
+        Totals totals = inn == null ? null : totalsByInn.get(inn);
+        return totals == null ? 0 : totals.accounts.sum();
+    }
+
+    /**
+     * Сумма операций типа за день в копейках
+     */
+    public long getDailyVolume(LocalDate day, TransactionType type) {
+        DailyVolumes volumes = volumesByDay.get(day);
+        return volumes == null ? 0 : volumes.amounts[type.ordinal()].sum();
+    }
+
+    /**
+     * Число операций типа за день
+     */
+    public long getDailyCount(LocalDate day, TransactionType type) {
+        DailyVolumes volumes = volumesByDay.get(day);
+        return volumes == null ? 0 : volumes.counts[type.ordinal()].sum();
+    }
+
+    private static Totals totalsFor(Map<String, Totals> totals, String key) {
+        Totals existing = totals.get(key); // Обычно значение уже есть - чтение без блокировки
+        return existing != null ? existing : totals.computeIfAbsent(key, k -> new Totals());
+    }
+
+    private void addVolume(Transaction transaction) {
+        LocalDate day = transaction.getTimestamp().toLocalDate();
+        DailyVolumes volumes = volumesByDay.get(day);
+        if (volumes == null) {
+            // Новый день - удаляем дни старше срока хранения
+            LocalDate oldest = LocalDate.now().minusDays(DAILY_RETENTION_DAYS);
+            if (day.isBefore(oldest)) {
+                return;
+            }
+            volumesByDay.keySet().removeIf(stored -> stored.isBefore(oldest));
+            volumes = volumesByDay.computeIfAbsent(day, d -> new DailyVolumes());
+        }
+        int type = transaction.getType().ordinal();
+        volumes.amounts[type].add(transaction.getAmount());
+        volumes.counts[type].increment();
+    }
+
+    /**
+     * Сумма балансов и число счетов одного значения реквизита
+     */
+    private static class Totals {
+        final LongAdder balance = new LongAdder();
+        final LongAdder accounts = new LongAdder();
+
+        void open(long openingBalance) {
+            balance.add(openingBalance);
+            accounts.increment();
+        }
+    }
+
+    /**
+     * Объемы и число операций за день по типам (индекс - ordinal типа)
+     */
+    private static class DailyVolumes {
+        final LongAdder[] amounts = newAdders();
+        final LongAdder[] counts = newAdders();
+
+        private static LongAdder[] newAdders() {
+            LongAdder[] adders = new LongAdder[TYPES.length];
+            for (int i = 0; i < adders.length; i++) {
+                adders[i] = new LongAdder();
+            }
+            return adders;
+        }
+    }
+}
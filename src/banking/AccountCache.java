@@ -0,0 +1,655 @@
+package banking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Ограниченный кэш счетов поверх DiskAccountStore: в памяти не больше capacity счетов.
+ * Кэш разделен на сегменты по хешу номера счета; у каждого сегмента своя блокировка и свой
+ * список LRU (capacity делится между сегментами), поэтому вытесняется давно не использованный
+ * счет своего сегмента, а обращения к разным сегментам не ждут друг друга. Счет читается
+ * из хранилища при первом обращении, баланс и LSN пишутся обратно при вытеснении или сбросе,
+ * если изменились (write-back). Чтение и запись файла выполняются вне блокировок сегментов:
+ * одновременные обращения к еще не загруженному счету ждут одно чтение, остальные - нет.
+ * <p>
+ * Вытесненный счет может остаться у вызывающего (например, между поиском и снятием). Пока
+ * объект жив, повторное обращение возвращает тот же объект, поэтому на один номер в памяти
+ * всегда не больше одного счета. Изменение вытесненного счета возвращает его в кэш измененным:
+ * его запишет следующее вытеснение или сброс. Счет, занятый операцией, не вытесняется.
+ * <p>
+ * Хранилище историю операций не записывает: непустая история вытесненного счета остается
+ * в памяти по номеру ячейки и переходит к счету при следующей загрузке, поэтому история
+ * не теряется до перезапуска программы. С архивом (setArchive) в памяти остается только
+ * горячая часть истории, старые записи уходят в TransactionArchive, как у счетов в памяти.
+ * <p>
+ * С журналом (setJournal) состояние счета пишется в хранилище только после того, как журнал
+ * сохранил на диск его последнюю запись: измененный счет не вытесняется до fsync журнала,
+ * а сброс сначала ждет fsync, не держа блокировок. Поэтому после сбоя хранилище не опережает
+ * журнал, а потерянные изменения восстанавливаются его воспроизведением.
+ * <p>
+ * Потокобезопасен; порядок блокировок - блокировка добавления, блокировка счета, блокировка
+ * сегмента (под ней блокировки счетов берутся только через tryLock)
+ */
+public class AccountCache implements AccountListener, Closeable {
+    private static final int MAX_SEGMENTS = 16;        // Сегмент выбирают старшие 4 бита хеша (segmentFor)
+
+    private final DiskAccountStore store;
+    private final int capacity;
+    private final Segment[] segments;
+    // Номера, которые сейчас читаются из хранилища или добавляются: остальные обращения ждут
+    private final Map<String, FutureTask<BankAccount>> loading = new ConcurrentHashMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    // История вытесненных счетов по номеру ячейки (счета без операций сюда не попадают)
+    private final Map<Integer, TransactionHistory> histories = new ConcurrentHashMap<>();
+    private volatile TransactionArchive archive;
+    private volatile AccountListener listener = this;   // Слушатель загружаемых счетов
+    private volatile Journal journal;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder writeBacks = new LongAdder();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public AccountCache(DiskAccountStore store, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер кэша должен быть положительным");
+        }
+        this.store = store;
+        this.capacity = capacity;
+        this.segments = new Segment[Math.min(MAX_SEGMENTS, Integer.highestOneBit(capacity))];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(capacity / segments.length + (i < capacity % segments.length ? 1 : 0));
+        }
+    }
+
+    /**
+     * Счет по номеру (из памяти или из хранилища) или null
+     */
+    public BankAccount get(String accountNumber) {
+        if (accountNumber == null) {
+            return null;
+        }
+        Segment segment = segmentFor(accountNumber);
+        BankAccount account = segment.lookup(accountNumber);
+        if (account == null) {
+            FutureTask<BankAccount> task = new FutureTask<>(() -> load(segment, accountNumber));
+            FutureTask<BankAccount> inFlight = loading.putIfAbsent(accountNumber, task);
+            if (inFlight == null) {
+                return runClaimed(accountNumber, task);
+            }
+            account = await(inFlight); // Счет уже читает другой поток
+            if (account == null) {
+                return null;
+            }
+        }
+        hits.increment();
+        evictOverflow(segment); // Возвращенный в кэш вытесненный счет мог превысить емкость сегмента
+        return account;
+    }
+
+    /**
+     * Запись нового счета в хранилище; счет остается в памяти. Под блокировками добавления
+     * и счета слушатель получает onAccountOpened раньше, чем счет станет доступен через get,
+     * поэтому открытие счета предшествует любой операции с ним
+     *
+     * @return false, если счет с таким номером уже есть в хранилище
+     */
+    public boolean add(BankAccount account) {
+        String accountNumber = account.getAccountNumber();
+        Segment segment = segmentFor(accountNumber);
+        FutureTask<BankAccount> task = new FutureTask<>(() -> append(segment, account));
+        FutureTask<BankAccount> inFlight;
+        while ((inFlight = loading.putIfAbsent(accountNumber, task)) != null) {
+            if (await(inFlight) != null) {
+                return false;
+            }
+        }
+        boolean added = runClaimed(accountNumber, task) == account;
+        evictOverflow(segment);
+        return added;
+    }
+
+    /**
+     * Запись измененных состояний счетов в памяти (в том числе вытесненных, но еще используемых)
+     * и сброс хранилища на диск. После сброса хранилище отражает все записи журнала,
+     * принятые до вызова
+     */
+    public void flush() {
+        awaitDurable();
+        for (Segment segment : segments) {
+            for (Entry entry : segment.entries()) {
+                ReentrantLock accountLock = entry.account().lock();
+                accountLock.lock();
+                try {
+                    writeBack(entry);
+                } finally {
+                    accountLock.unlock();
+                }
+            }
+        }
+        store.flush();
+    }
+
+    /**
+     * Номер ячейки счета в хранилище или -1
+     */
+    public int slotOf(String accountNumber) {
+        return store.find(accountNumber);
+    }
+
+    /**
+     * Счет ячейки хранилища (тот же объект, что возвращает get)
+     */
+    public BankAccount getStored(int slot) {
+        return get(store.accountNumber(slot));
+    }
+
+    /**
+     * Обход всех счетов хранилища в их сохраненном состоянии с номерами ячеек
+     * (вызывается до обращений к счетам)
+     */
+    public void forEachStored(ObjIntConsumer<BankAccount> action) {
+        int count = store.size();
+        for (int slot = 0; slot < count; slot++) {
+            action.accept(store.load(slot), slot);
+        }
+    }
+
+    /**
+     * Поиск перебором хранилища - для условий, которые индексы не сужают. Счета в памяти
+     * проверяются в текущем состоянии, остальные - в сохраненном; файл читается без блокировок
+     * сегментов. Найденные счета возвращаются через get, тем же объектом, что видят операции,
+     * и проверяются повторно
+     */
+    public List<BankAccount> search(Predicate<BankAccount> condition) {
+        Map<String, BankAccount> live = liveAccounts();
+        List<BankAccount> candidates = new ArrayList<>();
+        for (BankAccount account : live.values()) {
+            if (condition.test(account)) {
+                candidates.add(account);
+            }
+        }
+        store.forEach(stored -> {
+            if (!live.containsKey(stored.getAccountNumber()) && condition.test(stored)) {
+                candidates.add(stored);
+            }
+        });
+
+        List<BankAccount> result = new ArrayList<>(candidates.size());
+        for (BankAccount candidate : candidates) {
+            BankAccount current = live.containsKey(candidate.getAccountNumber())
+                    ? candidate : get(candidate.getAccountNumber());
+            if (current != null && condition.test(current)) {
+                result.add(current);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Все счета хранилища в порядке ячеек (для списков и выгрузки): счета, которые были в памяти
+     * при начале обхода, - в текущем состоянии, тем же объектом, что видят операции, остальные -
+     * новым объектом в сохраненном состоянии (в кэш они не попадают). Файл читается по мере
+     * обхода, без блокировок сегментов
+     */
+    public Iterable<BankAccount> accounts() {
+        return () -> new Iterator<>() {
+            private final Map<String, BankAccount> live = liveAccounts();
+            private final int end = store.size();
+            private int slot;
+
+            @Override
+            public boolean hasNext() {
+                return slot < end;
+            }
+
+            @Override
+            public BankAccount next() {
+                if (slot >= end) {
+                    throw new NoSuchElementException();
+                }
+                int current = slot++;
+                BankAccount account = live.get(store.accountNumber(current));
+                return account != null ? account : store.load(current);
+            }
+        };
+    }
+
+    /**
+     * Слушатель изменений счетов, загружаемых из хранилища (реестр, см. AccountRegistry.setStore).
+     * Слушатель должен передавать кэшу onBalanceChanged
+     */
+    void setListener(AccountListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Подключение архива холодной истории для счетов хранилища (до обращений к счетам)
+     */
+    void setArchive(TransactionArchive archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Подключение журнала, записи которого отражаются в LSN счетов (после воспроизведения журнала)
+     */
+    void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    public AccountCacheStats getStats() {
+        int resident = 0;
+        for (Segment segment : segments) {
+            resident += segment.size;
+        }
+        return new AccountCacheStats(hits.sum(), misses.sum(), evictions.sum(), writeBacks.sum(),
+                resident, capacity, store.size());
+    }
+
+    /**
+     * Изменение вытесненного, но еще используемого счета возвращает его в кэш (событие приходит
+     * под блокировкой счета, до записи операции в журнал). Его состояние запишет вытеснение
+     * или сброс - когда журнал сохранит операцию на диск
+     */
+    @Override
+    public void onBalanceChanged(BankAccount account, long oldBalance, long newBalance) {
+        segmentFor(account.getAccountNumber()).reattach(account);
+    }
+
+    /**
+     * Запись измененных состояний и закрытие хранилища; повторный вызов ничего не делает
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        flush();
+        store.close();
+    }
+
+    /**
+     * Счета в памяти по номеру, в том числе вытесненные, но еще используемые
+     */
+    private Map<String, BankAccount> liveAccounts() {
+        Map<String, BankAccount> live = new HashMap<>();
+        for (Segment segment : segments) {
+            for (Entry entry : segment.entries()) {
+                live.put(entry.account().getAccountNumber(), entry.account());
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Сегмент по старшим битам перемешанного хеша: младшие биты хеша выбирают корзину в таблицах
+     * сегмента, и номера одного сегмента не должны совпадать в них
+     */
+    private Segment segmentFor(String accountNumber) {
+        return segments[(accountNumber.hashCode() * 0x9E3779B9) >>> 28 & (segments.length - 1)];
+    }
+
+    /**
+     * Чтение счета из хранилища (номер занят вызывающим в loading, поэтому другой объект
+     * с этим номером появиться не может)
+     */
+    private BankAccount load(Segment segment, String accountNumber) {
+        BankAccount account = segment.lookup(accountNumber); // Мог загрузиться до занятия номера
+        if (account != null) {
+            hits.increment();
+            return account;
+        }
+        int slot = store.find(accountNumber);
+        if (slot < 0) {
+            return null;
+        }
+        misses.increment();
+        account = store.load(slot, historyOf(slot));
+        account.setListener(listener);
+        segment.publish(new Entry(account, new Slot(slot, account.getBalance(), account.getLastLsn())));
+        evictOverflow(segment);
+        return account;
+    }
+
+    /**
+     * Добавление нового счета (номер занят вызывающим в loading). Если счет с таким номером
+     * уже есть в хранилище, ожидающие получают его, а не добавляемый
+     */
+    private BankAccount append(Segment segment, BankAccount account) {
+        appendLock.lock();
+        try {
+            if (store.find(account.getAccountNumber()) < 0) {
+                ReentrantLock accountLock = account.lock();
+                accountLock.lock();
+                try {
+                    listener.beforeChange(account);
+                    int slot = store.add(account);
+                    account.setListener(listener);
+                    if (archive != null) {
+                        account.attachArchive(archive);
+                    }
+                    segment.publish(new Entry(account, new Slot(slot, account.getBalance(), account.getLastLsn())));
+                    listener.onAccountOpened(account);
+                } finally {
+                    accountLock.unlock();
+                }
+                return account;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        return load(segment, account.getAccountNumber());
+    }
+
+    /**
+     * История вытесненного счета ячейки (она переходит к загружаемому объекту) или новая
+     */
+    private TransactionHistory historyOf(int slot) {
+        TransactionHistory history = histories.remove(slot);
+        if (history == null) {
+            history = new TransactionHistory();
+            if (archive != null) {
+                history.attachArchive(archive);
+            }
+        }
+        return history;
+    }
+
+    private BankAccount runClaimed(String accountNumber, FutureTask<BankAccount> task) {
+        try {
+            task.run();
+            return await(task);
+        } finally {
+            loading.remove(accountNumber, task);
+        }
+    }
+
+    private static BankAccount await(FutureTask<BankAccount> task) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true; // Чтение все равно завершится
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException runtime) {
+                        throw runtime;
+                    }
+                    if (e.getCause() instanceof Error error) {
+                        throw error;
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Вытеснение сверх емкости сегмента; состояние вытесненных счетов записывается уже
+     * без блокировки сегмента, их непустая история остается в histories
+     */
+    private void evictOverflow(Segment segment) {
+        if (segment.size <= segment.capacity) {
+            return;
+        }
+        for (Entry victim : segment.evictOverflow()) {
+            ReentrantLock accountLock = victim.account().lock();
+            accountLock.lock();
+            try {
+                writeBack(victim);
+                TransactionHistory history = victim.account().getHistory();
+                if (history.size() > 0) {
+                    histories.put(victim.slot().index, history);
+                }
+            } finally {
+                accountLock.unlock();
+            }
+            evictions.increment();
+        }
+    }
+
+    private boolean isDurable(long lsn) {
+        Journal current = journal;
+        return current == null || lsn <= current.getDurableLsn();
+    }
+
+    /**
+     * Ожидание fsync всех записей журнала (вызывается без блокировок счетов)
+     */
+    private void awaitDurable() {
+        Journal current = journal;
+        if (current != null) {
+            try {
+                current.sync();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Запись баланса и LSN, если они изменились с последней записи и журнал уже сохранил
+     * последнюю операцию счета (под блокировкой счета). Несохраненное изменение остается
+     * в памяти: такой счет снова в кэше, его запишет следующее вытеснение или сброс
+     */
+    private void writeBack(Entry entry) {
+        BankAccount account = entry.account();
+        Slot slot = entry.slot();
+        long balance = account.getBalance();
+        long lastLsn = account.getLastLsn();
+        if ((balance != slot.persistedBalance || lastLsn != slot.persistedLsn) && isDurable(lastLsn)) {
+            store.writeState(slot.index, balance, lastLsn);
+            slot.persistedBalance = balance;
+            slot.persistedLsn = lastLsn;
+            writeBacks.increment();
+        }
+    }
+
+    /**
+     * Сегмент кэша: счета в памяти в порядке обращений (LRU) и вытесненные, но еще используемые
+     * счета. Без файловых операций под своей блокировкой
+     */
+    private final class Segment {
+        final int capacity;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Entry> resident;
+        // Изменяется под блокировкой сегмента, читается без нее (reattach)
+        private final Map<String, DetachedRef> detached = new ConcurrentHashMap<>();
+        private final ReferenceQueue<BankAccount> collected = new ReferenceQueue<>();
+        volatile int size;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.resident = new LinkedHashMap<>(AttributeIndex.hashCapacity(capacity + 1), 0.75f, true);
+        }
+
+        /**
+         * Счет в памяти (вытесненный, но живой, возвращается в кэш) или null
+         */
+        BankAccount lookup(String accountNumber) {
+            lock.lock();
+            try {
+                expungeCollected();
+                Entry entry = resident.get(accountNumber);
+                if (entry != null) {
+                    return entry.account();
+                }
+                DetachedRef ref = detached.remove(accountNumber);
+                BankAccount account = ref == null ? null : ref.get();
+                if (account != null) {
+                    putResident(new Entry(account, ref.slot));
+                }
+                return account;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void publish(Entry entry) {
+            lock.lock();
+            try {
+                putResident(entry);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Возврат вытесненного счета в кэш (под блокировкой счета)
+         */
+        void reattach(BankAccount account) {
+            String accountNumber = account.getAccountNumber();
+            DetachedRef ref = detached.get(accountNumber);
+            if (ref == null || ref.get() != account) {
+                return;
+            }
+            lock.lock();
+            try {
+                if (detached.remove(accountNumber, ref)) {
+                    putResident(new Entry(account, ref.slot));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Вытеснение давно не использованных счетов сверх capacity; занятые операцией и измененные
+         * счета, последняя запись которых еще не сохранена журналом, пропускаются
+         *
+         * @return вытесненные счета, их состояние записывает вызывающий
+         */
+        List<Entry> evictOverflow() {
+            List<Entry> victims = new ArrayList<>();
+            lock.lock();
+            try {
+                Iterator<Entry> eldest = resident.values().iterator();
+                while (resident.size() > capacity && eldest.hasNext()) {
+                    Entry entry = eldest.next();
+                    ReentrantLock accountLock = entry.account().lock();
+                    if (!accountLock.tryLock()) {
+                        continue;
+                    }
+                    try {
+                        if (entry.isDirty() && !isDurable(entry.account().getLastLsn())) {
+                            continue;
+                        }
+                        eldest.remove();
+                        detached.put(entry.account().getAccountNumber(),
+                                new DetachedRef(entry.account(), entry.slot(), collected));
+                        victims.add(entry);
+                    } finally {
+                        accountLock.unlock();
+                    }
+                }
+                size = resident.size();
+            } finally {
+                lock.unlock();
+            }
+            return victims;
+        }
+
+        /**
+         * Счета сегмента в памяти, в том числе вытесненные, но еще используемые
+         */
+        List<Entry> entries() {
+            lock.lock();
+            try {
+                expungeCollected();
+                List<Entry> entries = new ArrayList<>(resident.values());
+                for (DetachedRef ref : detached.values()) {
+                    BankAccount account = ref.get();
+                    if (account != null) {
+                        entries.add(new Entry(account, ref.slot));
+                    }
+                }
+                return entries;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void putResident(Entry entry) {
+            resident.put(entry.account().getAccountNumber(), entry);
+            size = resident.size();
+        }
+
+        /**
+         * Удаление записей о вытесненных счетах, собранных сборщиком мусора
+         */
+        private void expungeCollected() {
+            Reference<? extends BankAccount> reference;
+            while ((reference = collected.poll()) != null) {
+                DetachedRef ref = (DetachedRef) reference;
+                detached.remove(ref.accountNumber, ref);
+            }
+        }
+    }
+
+    /**
+     * Счет в памяти и его ячейка
+     */
+    private record Entry(BankAccount account, Slot slot) {
+        /**
+         * Изменился ли счет с последней записи (под блокировкой счета)
+         */
+        boolean isDirty() {
+            return account.getBalance() != slot.persistedBalance || account.getLastLsn() != slot.persistedLsn;
+        }
+    }
+
+    /**
+     * Ячейка счета и последнее записанное в нее состояние (изменяется под блокировкой счета).
+     * Переходит от счета в кэше к вытесненному и обратно
+     */
+    private static final class Slot {
+        final int index;
+        long persistedBalance;
+        long persistedLsn;
+
+        Slot(int index, long persistedBalance, long persistedLsn) {
+            this.index = index;
+            this.persistedBalance = persistedBalance;
+            this.persistedLsn = persistedLsn;
+        }
+    }
+
+    /**
+     * Слабая ссылка на вытесненный счет
+     */
+    private static final class DetachedRef extends WeakReference<BankAccount> {
+        final String accountNumber;
+        final Slot slot;
+
+        DetachedRef(BankAccount account, Slot slot, ReferenceQueue<BankAccount> queue) {
+            super(account, queue);
+            this.accountNumber = account.getAccountNumber();
+            this.slot = slot;
+        }
+    }
+}
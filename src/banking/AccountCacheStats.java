@@ -0,0 +1,77 @@
+package banking;
+
+/**
+ * Статистика кэша счетов с момента его открытия
+ */
+public class AccountCacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long writeBacks;
+    private final int resident;
+    private final int capacity;
+    private final int stored;
+
+    AccountCacheStats(long hits, long misses, long evictions, long writeBacks,
+                      int resident, int capacity, int stored) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.writeBacks = writeBacks;
+        this.resident = resident;
+        this.capacity = capacity;
+        this.stored = stored;
+    }
+
+    /**
+     * Обращения к счетам, уже находившимся в памяти
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Обращения, потребовавшие чтения счета из хранилища
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Записи измененных балансов в хранилище (при вытеснении, сбросе и после вытеснения)
+     */
+    public long getWriteBacks() {
+        return writeBacks;
+    }
+
+    public int getResident() {
+        return resident;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Счета в хранилище на диске
+     */
+    public int getStored() {
+        return stored;
+    }
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Попаданий: %d | Промахов: %d | Доля попаданий: %.1f%%\n" +
+                        "Вытеснено: %d | Записей балансов: %d | В памяти: %d из %d | В хранилище: %d",
+                hits, misses, getHitRate() * 100, evictions, writeBacks, resident, capacity, stored);
+    }
+}
@@ -0,0 +1,100 @@
+package banking;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Потоковая выгрузка счетов в файл CSV или двоичного формата (см. AccountFileFormat),
+ * симметричная AccountImporter: записи собираются в буфере и передаются в FileChannel
+ * блоками по BUFFER_BYTES. Баланс каждого счета берется на момент записи этого счета
+ */
+public final class AccountExporter {
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final int CSV_PAGE_CHARS = 1 << 16;
+
+    private AccountExporter() {
+    }
+
+    /**
+     * Выгрузка счетов; файл создается или перезаписывается, формат определяется по имени
+     * (см. AccountFileFormat.of)
+     *
+     * @throws IllegalArgumentException если счет нельзя записать в выбранном формате
+     */
+    public static AccountFileReport export(Iterable<BankAccount> accounts, Path output) throws IOException {
+        long startNanos = System.nanoTime();
+        AccountFileFormat format = AccountFileFormat.of(output);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        long exported = 0;
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            if (format == AccountFileFormat.CSV) {
+                exported = writeCsv(accounts, channel, buffer);
+            } else {
+                buffer.putInt(AccountFileFormat.MAGIC).putInt(AccountFileFormat.VERSION);
+                for (BankAccount account : accounts) {
+                    if (buffer.remaining() < AccountFileFormat.LENGTH_BYTES + AccountFileFormat.MAX_RECORD_BYTES) {
+                        drain(channel, buffer);
+                    }
+                    AccountFileFormat.putBinary(buffer, account, account.getBalance());
+                    exported++;
+                }
+            }
+            drain(channel, buffer);
+            return new AccountFileReport(exported, 0, channel.size(), System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Строки собираются страницами и кодируются в UTF-8 прямо в буфер канала
+     */
+    private static long writeCsv(Iterable<BankAccount> accounts, FileChannel channel, ByteBuffer buffer)
+            throws IOException {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        StringBuilder page = new StringBuilder(CSV_PAGE_CHARS + 1024);
+        page.append(AccountFileFormat.CSV_HEADER).append('\n');
+        long exported = 0;
+        for (BankAccount account : accounts) {
+            AccountFileFormat.appendCsv(page, account, account.getBalance()).append('\n');
+            exported++;
+            if (page.length() >= CSV_PAGE_CHARS) {
+                encode(encoder, page, channel, buffer, false);
+            }
+        }
+        encode(encoder, page, channel, buffer, true);
+        return exported;
+    }
+
+    private static void encode(CharsetEncoder encoder, StringBuilder page, FileChannel channel,
+                               ByteBuffer buffer, boolean endOfInput) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(page);
+        CoderResult result;
+        while ((result = encoder.encode(chars, buffer, endOfInput)).isOverflow()) {
+            drain(channel, buffer);
+        }
+        if (result.isError()) {
+            result.throwException();
+        }
+        if (endOfInput) {
+            while (encoder.flush(buffer).isOverflow()) {
+                drain(channel, buffer);
+            }
+        }
+        page.setLength(0); // Страница заканчивается переводом строки - незакодированных символов нет
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
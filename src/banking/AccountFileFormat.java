@@ -0,0 +1,223 @@
+package banking;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * Форматы файлов для массовой загрузки и выгрузки счетов (см. AccountImporter, AccountExporter).
+ * <p>
+ * CSV (UTF-8, разделитель ';', строки с '#' - комментарии, пустые корр. счет и ИНН - нет значения,
+ * баланс в рублях вида 1500.50, дата открытия вида 2024-01-31; владелец - последнее поле
+ * и может содержать ';'):
+ * <pre>
+ * номер счета;БИК;КПП;корр. счет;ИНН;баланс;дата открытия;владелец
+ * </pre>
+ * Двоичный: заголовок (MAGIC, VERSION), затем записи "длина тела (2 байта без знака) + тело":
+ * <pre>
+ * номер счета     1 байт (первые 2 цифры) + 8 байт (последние 18 цифр)
+ * БИК, КПП        по 4 байта (число)
+ * корр. счет      как номер счета, первый байт -1 - нет значения
+ * ИНН             8 байт: ИНН * 2 + (1 для 12 цифр), -1 - нет значения
+ * баланс          8 байт, в копейках
+ * дата открытия   4 байта, дней от 1970-01-01
+ * владелец        2 байта длины без знака (0xFFFF - нет значения) + UTF-8
+ * </pre>
+ */
+public enum AccountFileFormat {
+    CSV,
+    BINARY;
+
+    static final int MAGIC = 0x42414343;        // "BACC"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int LENGTH_BYTES = 2;
+    static final int MAX_RECORD_BYTES = 0xFFFF;
+    static final String CSV_HEADER = "# номер счета;БИК;КПП;корр. счет;ИНН;баланс;дата открытия;владелец";
+    static final char CSV_SEPARATOR = ';';
+    static final int CSV_FIELDS = 8;
+
+    private static final int FIXED_BODY_BYTES = 9 + 4 + 4 + 9 + 8 + 8 + 4 + 2;
+    private static final byte NO_NUMBER = -1;
+    private static final long NO_INN = -1;
+    private static final int NO_OWNER = 0xFFFF;
+
+    /**
+     * Формат по имени файла: .csv - CSV, остальные - двоичный
+     */
+    public static AccountFileFormat of(Path file) {
+        Path name = file.getFileName();
+        return name != null && name.toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : BINARY;
+    }
+
+    /**
+     * Строка CSV для счета (без перевода строки)
+     */
+    static StringBuilder appendCsv(StringBuilder target, BankAccount account, long balance) {
+        target.append(account.getAccountNumber()).append(CSV_SEPARATOR)
+                .append(account.getBik()).append(CSV_SEPARATOR)
+                .append(account.getKpp()).append(CSV_SEPARATOR);
+        appendNullable(target, account.getCorrespondentAccount()).append(CSV_SEPARATOR);
+        appendNullable(target, account.getInn()).append(CSV_SEPARATOR);
+        Money.appendTo(target, balance).append(CSV_SEPARATOR)
+                .append(LocalDate.ofEpochDay(account.getOpenEpochDay())).append(CSV_SEPARATOR);
+        return appendNullable(target, account.getOwnerName());
+    }
+
+    /**
+     * Разбор строки CSV
+     *
+     * @throws IllegalArgumentException если число полей, сумма или дата не соответствуют формату
+     */
+    static Row parseCsv(String line) {
+        String[] fields = new String[CSV_FIELDS];
+        int start = 0;
+        for (int i = 0; i < CSV_FIELDS - 1; i++) {
+            int end = line.indexOf(CSV_SEPARATOR, start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Строка должна содержать " + CSV_FIELDS +
+                        " полей, получено " + (i + 1));
+            }
+            fields[i] = line.substring(start, end).trim();
+            start = end + 1;
+        }
+        LocalDate openDate;
+        try {
+            openDate = LocalDate.parse(fields[6]);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Некорректная дата открытия: " + fields[6]);
+        }
+        // NumberFormatException суммы - тоже IllegalArgumentException
+        return new Row(fields[0], fields[1], fields[2], emptyToNull(fields[3]), emptyToNull(fields[4]),
+                line.substring(start).trim(), Money.parse(fields[5]), openDate.toEpochDay());
+    }
+
+    /**
+     * Запись счета в двоичном формате; в буфере должно быть не меньше MAX_RECORD_BYTES + LENGTH_BYTES
+     *
+     * @throws IllegalArgumentException если имя владельца не помещается в запись
+     */
+    static void putBinary(ByteBuffer target, BankAccount account, long balance) {
+        byte[] owner = account.getOwnerName() == null ? null
+                : account.getOwnerName().getBytes(StandardCharsets.UTF_8);
+        int bodyBytes = FIXED_BODY_BYTES + (owner == null ? 0 : owner.length);
+        if (bodyBytes > MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("Имя владельца счета " + account.getAccountNumber() +
+                    " слишком длинное для двоичного формата");
+        }
+        target.putShort((short) bodyBytes);
+        putNumber(target, account.getAccountNumber());
+        target.putInt((int) AccountValidator.parseDigits(account.getBik(), 0, AccountValidator.BIK_LENGTH));
+        target.putInt((int) AccountValidator.parseDigits(account.getKpp(), 0, AccountValidator.KPP_LENGTH));
+        putNumber(target, account.getCorrespondentAccount());
+        String inn = account.getInn();
+        target.putLong(inn == null ? NO_INN : AccountValidator.parseDigits(inn, 0, inn.length()) * 2
+                + (inn.length() == AccountValidator.PERSONAL_INN_LENGTH ? 1 : 0));
+        target.putLong(balance);
+        target.putInt(account.getOpenEpochDay());
+        if (owner == null) {
+            target.putShort((short) NO_OWNER);
+        } else {
+            target.putShort((short) owner.length);
+            target.put(owner);
+        }
+    }
+
+    /**
+     * Разбор тела двоичной записи
+     *
+     * @throws IllegalArgumentException если тело записи повреждено
+     */
+    static Row getBinary(ByteBuffer body) {
+        try {
+            String accountNumber = getNumber(body);
+            if (accountNumber == null) {
+                throw new IllegalArgumentException("Нет номера счета в записи");
+            }
+            String bik = formatDigits(body.getInt(), AccountValidator.BIK_LENGTH);
+            String kpp = formatDigits(body.getInt(), AccountValidator.KPP_LENGTH);
+            String correspondentAccount = getNumber(body);
+            long packedInn = body.getLong();
+            String inn = packedInn == NO_INN ? null : formatDigits(packedInn >>> 1,
+                    (packedInn & 1) == 1 ? AccountValidator.PERSONAL_INN_LENGTH : AccountValidator.LEGAL_INN_LENGTH);
+            long balance = body.getLong();
+            long openEpochDay = body.getInt();
+            String ownerName = null;
+            int ownerLength = Short.toUnsignedInt(body.getShort());
+            if (ownerLength != NO_OWNER) {
+                byte[] owner = new byte[ownerLength];
+                body.get(owner);
+                ownerName = new String(owner, StandardCharsets.UTF_8);
+            }
+            if (body.hasRemaining()) {
+                throw new IllegalArgumentException("Лишние байты в конце записи");
+            }
+            return new Row(accountNumber, bik, kpp, correspondentAccount, inn, ownerName, balance, openEpochDay);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Запись короче своих полей");
+        }
+    }
+
+    /**
+     * Поля одной записи файла (баланс в копейках, дата открытия - дней от 1970-01-01)
+     */
+    record Row(String accountNumber, String bik, String kpp, String correspondentAccount,
+               String inn, String ownerName, long balance, long openEpochDay) {
+    }
+
+    private static void putNumber(ByteBuffer target, String number) {
+        if (number == null) {
+            target.put(NO_NUMBER).putLong(0);
+            return;
+        }
+        target.put((byte) AccountValidator.parseDigits(number, 0, 2));
+        target.putLong(AccountValidator.parseDigits(number, 2, AccountValidator.ACCOUNT_NUMBER_LENGTH));
+    }
+
+    private static String getNumber(ByteBuffer body) {
+        byte high = body.get();
+        long low = body.getLong();
+        if (high == NO_NUMBER) {
+            return null;
+        }
+        if (high < 0 || !fits(high, 2) || !fits(low, AccountValidator.ACCOUNT_NUMBER_LENGTH - 2)) {
+            throw new IllegalArgumentException("Некорректный номер счета в записи");
+        }
+        char[] digits = new char[AccountValidator.ACCOUNT_NUMBER_LENGTH];
+        AccountValidator.writeDigits(digits, 0, 2, high);
+        AccountValidator.writeDigits(digits, 2, AccountValidator.ACCOUNT_NUMBER_LENGTH - 2, low);
+        return new String(digits);
+    }
+
+    private static String formatDigits(long value, int length) {
+        if (!fits(value, length)) {
+            throw new IllegalArgumentException("Значение реквизита в записи длиннее " + length + " цифр");
+        }
+        char[] digits = new char[length];
+        AccountValidator.writeDigits(digits, 0, length, value);
+        return new String(digits);
+    }
+
+    /**
+     * Неотрицательное value записывается не более чем length цифрами
+     */
+    private static boolean fits(long value, int length) {
+        long limit = 1;
+        for (int i = 0; i < length; i++) {
+            limit *= 10;
+        }
+        return value >= 0 && value < limit;
+    }
+
+    private static StringBuilder appendNullable(StringBuilder target, String value) {
+        return value == null ? target : target.append(value);
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
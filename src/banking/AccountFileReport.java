@@ -0,0 +1,51 @@
+package banking;
+
+/**
+ * Итоги массовой загрузки или выгрузки счетов
+ */
+public class AccountFileReport {
+    private final long accounts;
+    private final long rejected;
+    private final long bytes;
+    private final long elapsedNanos;
+
+    AccountFileReport(long accounts, long rejected, long bytes, long elapsedNanos) {
+        this.accounts = accounts;
+        this.rejected = rejected;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Загруженные (выгруженные) счета
+     */
+    public long getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * Отклоненные записи файла
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getAccountsPerSecond() {
+        return elapsedNanos == 0 ? 0 : accounts * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Счетов: %d | Отклонено: %d | Размер файла: %d байт\n" +
+                        "Время: %.2f с | Скорость: %.0f счетов/с",
+                accounts, rejected, bytes, elapsedNanos / 1e9, getAccountsPerSecond());
+    }
+}
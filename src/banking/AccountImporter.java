@@ -0,0 +1,307 @@
+package banking;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Массовая загрузка счетов из файла CSV или двоичного формата (см. AccountFileFormat).
+ * Файл читается через FileChannel кусками по целым строкам (записям); разбор и полная проверка
+ * реквизитов кусков идут параллельно, а счета каждого куска регистрируются по порядку одной
+ * пачкой (AccountRegistry.registerAll). Число кусков в работе ограничено, так что расход
+ * памяти не зависит от размера файла.
+ * Если файл поврежден на середине, счета из уже обработанных кусков остаются загруженными
+ */
+public class AccountImporter {
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final String DUPLICATE_REASON = "Счет с таким номером уже существует";
+
+    private final AccountRegistry registry;
+    private final int threads;
+
+    private long accounts;
+    private long rejected;
+
+    public AccountImporter(AccountRegistry registry, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Число потоков должно быть положительным");
+        }
+        this.registry = registry;
+        this.threads = threads;
+    }
+
+    /**
+     * Загрузка всех счетов файла; формат определяется по имени (см. AccountFileFormat.of)
+     *
+     * @param input          файл счетов
+     * @param rejectionsFile отчет об отклоненных записях (номер строки или записи, причина, счет)
+     */
+    public AccountFileReport importAccounts(Path input, Path rejectionsFile)
+            throws IOException, InterruptedException {
+        long startNanos = System.nanoTime();
+        AccountFileFormat format = AccountFileFormat.of(input);
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "account-import-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<Chunk>> pending = new ArrayDeque<>();
+        accounts = 0;
+        rejected = 0;
+
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+             BufferedWriter rejections = Files.newBufferedWriter(rejectionsFile, StandardCharsets.UTF_8)) {
+            rejections.write("# запись;причина;номер счета");
+            rejections.newLine();
+
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_BYTES);
+            if (format == AccountFileFormat.BINARY) {
+                readHeader(channel, buffer);
+            }
+            long nextPosition = 1; // Номер первой строки (записи) следующего куска
+            boolean endOfFile = false;
+            while (!endOfFile) {
+                endOfFile = fill(channel, buffer);
+                buffer.flip();
+                int end = format == AccountFileFormat.CSV ? csvChunkEnd(buffer, endOfFile)
+                        : binaryChunkEnd(buffer, endOfFile, nextPosition);
+                int count = format == AccountFileFormat.CSV ? countLines(buffer, end)
+                        : countRecords(buffer, end);
+                byte[] data = Arrays.copyOfRange(buffer.array(), buffer.position(), end);
+                long firstPosition = nextPosition;
+                pending.add(workers.submit(() -> parse(format, data, count, firstPosition)));
+                nextPosition += count;
+                buffer.position(end);
+                buffer.compact();
+
+                while (pending.size() >= threads * 2) {
+                    register(await(pending.poll()), rejections);
+                }
+            }
+            while (!pending.isEmpty()) {
+                register(await(pending.poll()), rejections);
+            }
+            return new AccountFileReport(accounts, rejected, channel.size(),
+                    System.nanoTime() - startNanos);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private static void readHeader(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.limit(AccountFileFormat.HEADER_BYTES);
+        fill(channel, buffer);
+        buffer.flip();
+        if (buffer.remaining() < AccountFileFormat.HEADER_BYTES
+                || buffer.getInt() != AccountFileFormat.MAGIC) {
+            throw new IOException("Файл не является двоичным файлом счетов");
+        }
+        int version = buffer.getInt();
+        if (version != AccountFileFormat.VERSION) {
+            throw new IOException("Неподдерживаемая версия файла счетов: " + version);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Чтение до заполнения буфера, возвращает true, если достигнут конец файла
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Конец последней целой строки в буфере (в конце файла - весь остаток)
+     */
+    private static int csvChunkEnd(ByteBuffer buffer, boolean endOfFile) throws IOException {
+        if (endOfFile) {
+            return buffer.limit();
+        }
+        byte[] bytes = buffer.array();
+        for (int i = buffer.limit() - 1; i >= buffer.position(); i--) {
+            if (bytes[i] == '\n') {
+                return i + 1;
+            }
+        }
+        throw new IOException("Строка файла длиннее " + CHUNK_BYTES + " байт");
+    }
+
+    /**
+     * Конец последней целой записи в буфере
+     */
+    private static int binaryChunkEnd(ByteBuffer buffer, boolean endOfFile, long firstPosition)
+            throws IOException {
+        int end = buffer.position();
+        long position = firstPosition;
+        while (end + AccountFileFormat.LENGTH_BYTES <= buffer.limit()) {
+            int next = end + AccountFileFormat.LENGTH_BYTES + Short.toUnsignedInt(buffer.getShort(end));
+            if (next > buffer.limit()) {
+                break;
+            }
+            end = next;
+            position++;
+        }
+        if (endOfFile && end != buffer.limit()) {
+            throw new IOException("Файл обрывается посреди записи " + position);
+        }
+        return end;
+    }
+
+    private static int countLines(ByteBuffer buffer, int end) {
+        byte[] bytes = buffer.array();
+        int lines = 0;
+        for (int i = buffer.position(); i < end; i++) {
+            if (bytes[i] == '\n') {
+                lines++;
+            }
+        }
+        // Последняя строка файла может быть без перевода строки
+        return end > buffer.position() && bytes[end - 1] != '\n' ? lines + 1 : lines;
+    }
+
+    private static int countRecords(ByteBuffer buffer, int end) {
+        int records = 0;
+        int i = buffer.position();
+        while (i < end) {
+            i += AccountFileFormat.LENGTH_BYTES + Short.toUnsignedInt(buffer.getShort(i));
+            records++;
+        }
+        return records;
+    }
+
+    /**
+     * Разбор и проверка куска (в рабочем потоке)
+     */
+    private static Chunk parse(AccountFileFormat format, byte[] data, int count, long firstPosition) {
+        Chunk chunk = new Chunk(count);
+        long position = firstPosition;
+        if (format == AccountFileFormat.CSV) {
+            int start = 0;
+            while (start < data.length) {
+                int end = start;
+                while (end < data.length && data[end] != '\n') {
+                    end++;
+                }
+                int lineEnd = end > start && data[end - 1] == '\r' ? end - 1 : end;
+                String line = new String(data, start, lineEnd - start, StandardCharsets.UTF_8);
+                if (!line.isBlank() && !line.startsWith("#")) {
+                    try {
+                        chunk.accept(position, AccountFileFormat.parseCsv(line));
+                    } catch (IllegalArgumentException e) {
+                        int separator = line.indexOf(AccountFileFormat.CSV_SEPARATOR);
+                        chunk.reject(position, e.getMessage(), separator < 0 ? "" : line.substring(0, separator));
+                    }
+                }
+                position++;
+                start = end + 1;
+            }
+        } else {
+            ByteBuffer records = ByteBuffer.wrap(data);
+            while (records.hasRemaining()) {
+                int length = Short.toUnsignedInt(records.getShort());
+                ByteBuffer body = records.slice(records.position(), length);
+                records.position(records.position() + length);
+                try {
+                    chunk.accept(position, AccountFileFormat.getBinary(body));
+                } catch (IllegalArgumentException e) {
+                    chunk.reject(position, e.getMessage(), "");
+                }
+                position++;
+            }
+        }
+        return chunk;
+    }
+
+    private static Chunk await(Future<Chunk> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Регистрация проверенных счетов куска одной пачкой (в потоке чтения, по порядку кусков)
+     */
+    private void register(Chunk chunk, BufferedWriter rejections) throws IOException {
+        for (String rejection : chunk.rejections) {
+            rejections.write(rejection);
+            rejections.newLine();
+        }
+        BitSet duplicates = registry.registerAll(chunk.accounts);
+        for (int i = duplicates.nextSetBit(0); i >= 0; i = duplicates.nextSetBit(i + 1)) {
+            rejections.write(chunk.positions[i] + ";" + DUPLICATE_REASON + ";" +
+                    chunk.accounts.get(i).getAccountNumber());
+            rejections.newLine();
+        }
+        int duplicateCount = duplicates.cardinality();
+        accounts += chunk.accounts.size() - duplicateCount;
+        rejected += chunk.rejections.size() + duplicateCount;
+    }
+
+    /**
+     * Проверенные счета куска с номерами их строк (записей) и отклоненные записи
+     */
+    private static class Chunk {
+        final List<BankAccount> accounts;
+        final long[] positions;
+        final List<String> rejections = new ArrayList<>();
+
+        Chunk(int capacity) {
+            this.accounts = new ArrayList<>(capacity);
+            this.positions = new long[capacity];
+        }
+
+        /**
+         * Полная проверка реквизитов, как при открытии счета, и создание счета
+         */
+        void accept(long position, AccountFileFormat.Row row) {
+            String error = AccountValidator.check(row.accountNumber(), row.bik(), row.kpp(),
+                    row.correspondentAccount(), row.inn());
+            if (error == null && row.balance() < 0) {
+                error = "Отрицательный баланс";
+            }
+            if (error != null) {
+                reject(position, error, row.accountNumber());
+                return;
+            }
+            positions[accounts.size()] = position;
+            accounts.add(new BankAccount(row.accountNumber(), row.bik(), row.kpp(),
+                    row.correspondentAccount(), row.inn(), row.ownerName(), row.balance(),
+                    LocalDate.ofEpochDay(row.openEpochDay()).atStartOfDay()));
+        }
+
+        void reject(long position, String reason, String accountNumber) {
+            rejections.add(position + ";" + reason + ";" + accountNumber);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package banking;
+
+/**
+ * Слушатель изменений банковских счетов (используется для поддержки индексов и журнала).
+ * Все методы вызываются под блокировкой изменяемых счетов, поэтому события одного счета
+ * приходят в порядке их применения
+ */
+public interface AccountListener {
+
+    /**
+     * Вызывается перед изменением счета (открытием, операцией или переводом), когда операция
+     * уже проверена. Исключение отменяет операцию до изменения счета
+     */
+    default void beforeChange(BankAccount account) {
+    }
+
+    /**
+     * Вызывается после каждого изменения баланса счета (суммы в копейках)
+     */
+    default void onBalanceChanged(BankAccount account, long oldBalance, long newBalance) {
+    }
+
+    /**
+     * Вызывается при регистрации нового счета в реестре
+     */
+    default void onAccountOpened(BankAccount account) {
+    }
+
+    /**
+     * Вызывается после пополнения или снятия
+     */
+    default void onTransaction(BankAccount account, Transaction transaction) {
+    }
+
+    /**
+     * Вызывается после изменения обоих счетов перевода: один раз у слушателя счета списания
+     * и один раз у слушателя счета зачисления, если это другой слушатель
+     */
+    default void onTransfer(BankAccount from, BankAccount to, Transaction debit, Transaction credit) {
+    }
+}
@@ -0,0 +1,43 @@
+package banking;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Полосатые (striped) блокировки счетов: счет блокирует одну из фиксированного
+ * набора блокировок по хешу номера, глобальной блокировки нет
+ */
+final class AccountLocks {
+    private static final int STRIPE_COUNT = stripeCount();
+    private static final ReentrantLock[] STRIPES = new ReentrantLock[STRIPE_COUNT];
+
+    static {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            STRIPES[i] = new ReentrantLock();
+        }
+    }
+
+    private AccountLocks() {
+    }
+
+    /**
+     * Номер полосы для счета (используется и для упорядочивания блокировок)
+     */
+    static int stripeOf(String accountNumber) {
+        int hash = accountNumber.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPE_COUNT - 1);
+    }
+
+    static ReentrantLock lock(int stripe) {
+        return STRIPES[stripe];
+    }
+
+    static int count() {
+        return STRIPE_COUNT;
+    }
+
+    private static int stripeCount() {
+        // Степень двойки, с запасом относительно числа ядер
+        int target = Runtime.getRuntime().availableProcessors() * 64;
+        return Integer.highestOneBit(Math.max(target, 256) - 1) << 1;
+    }
+}
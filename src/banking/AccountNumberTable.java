@@ -0,0 +1,90 @@
+package banking;
+
+/**
+ * Таблица "номер счета -> число" без объектов на запись: номер хранится упакованным
+ * (первые 2 цифры + последние 18 цифр числом), открытая адресация с линейным пробированием,
+ * заполнение не более чем наполовину. Около 26 байт на номер.
+ * Не потокобезопасна
+ */
+final class AccountNumberTable {
+    private byte[] highs;
+    private long[] lows;
+    private int[] values;                   // Значение + 1, 0 - свободно
+    private int mask;
+    private int size;
+
+    AccountNumberTable(int expectedSize) {
+        allocate(tableSize(Math.max(16, expectedSize)));
+    }
+
+    /**
+     * Значение для номера или -1
+     */
+    int get(String accountNumber) {
+        if (accountNumber == null || !AccountValidator.isDigits(accountNumber, AccountValidator.ACCOUNT_NUMBER_LENGTH)) {
+            return -1;
+        }
+        byte high = (byte) AccountValidator.parseDigits(accountNumber, 0, 2);
+        long low = AccountValidator.parseDigits(accountNumber, 2, AccountValidator.ACCOUNT_NUMBER_LENGTH);
+        for (int slot = slotOf(high, low); values[slot] != 0; slot = (slot + 1) & mask) {
+            if (lows[slot] == low && highs[slot] == high) {
+                return values[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Добавление номера, которого еще нет в таблице (формат номера проверен вызывающим)
+     */
+    void put(String accountNumber, int value) {
+        if (size * 2 >= values.length) {
+            grow();
+        }
+        insert((byte) AccountValidator.parseDigits(accountNumber, 0, 2),
+                AccountValidator.parseDigits(accountNumber, 2, AccountValidator.ACCOUNT_NUMBER_LENGTH), value + 1);
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        byte[] oldHighs = highs;
+        long[] oldLows = lows;
+        int[] oldValues = values;
+        allocate(oldValues.length * 2);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != 0) {
+                insert(oldHighs[i], oldLows[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        highs = new byte[capacity];
+        lows = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private void insert(byte high, long low, int storedValue) {
+        int slot = slotOf(high, low);
+        while (values[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        highs[slot] = high;
+        lows[slot] = low;
+        values[slot] = storedValue;
+    }
+
+    private int slotOf(byte high, long low) {
+        long hash = (low ^ (long) high << 59) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+
+    private static int tableSize(int expectedSize) {
+        return Integer.highestOneBit(expectedSize * 2 - 1) << 1;
+    }
+}
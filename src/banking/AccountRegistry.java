@@ -0,0 +1,550 @@
+package banking;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Реестр банковских счетов с поиском по номеру счета за O(1)
+ * и вторичными индексами по БИК, КПП, ИНН, балансу и подстрокам реквизитов,
+ * сводные показатели - в AccountAggregates, окно идентификаторов запросов клиентов -
+ * в RequestDeduplicator.
+ * <p>
+ * С хранилищем на диске (setStore) новые счета записываются в него, а в памяти держится
+ * ограниченный кэш. Такие счета находятся по номеру (и проходят через журнал и сводные
+ * показатели, как счета в памяти), но не входят в getAll и снимки: их состояние сохраняет
+ * само хранилище. Вторичные индексы держат для них номера ячеек хранилища (индекс баланса -
+ * упакованные номера счетов), а не объекты, поэтому поиск по реквизитам и балансу загружает
+ * только найденные счета
+ */
+public class AccountRegistry implements AccountListener {
+    private static final Comparator<BankAccount> BY_BALANCE = Comparator
+            .comparingLong(BankAccount::getBalance).thenComparing(BankAccount::getAccountNumber);
+
+    private final Map<String, BankAccount> accountsByNumber;
+    private final AttributeIndex bikIndex;
+    private final AttributeIndex kppIndex;
+    private final AttributeIndex innIndex;
+    private final BalanceIndex balanceIndex;
+    private final AccountAggregates aggregates;
+    private final RequestDeduplicator requests = new RequestDeduplicator(
+            RequestDeduplicator.DEFAULT_WINDOW_MILLIS, RequestDeduplicator.DEFAULT_MAX_PER_WINDOW);
+    private final SubstringIndex accountNumberSubstrings;
+    private final SubstringIndex bikSubstrings;
+    private final SubstringIndex kppSubstrings;
+    private final SubstringIndex ownerNameSubstrings;
+    private final List<AccountListener> listeners;
+    private volatile TransactionArchive archive;
+    private volatile AccountCache store;
+    private final AccountListener storedAccountListener = new StoredAccountListener();
+
+    /**
+     * Однопоточный реестр, сохраняющий порядок открытия счетов
+     */
+    public AccountRegistry() {
+        this(false);
+    }
+
+    private AccountRegistry(boolean concurrent) {
+        this.accountsByNumber = concurrent ? new ConcurrentHashMap<>() : new LinkedHashMap<>();
+        this.bikIndex = new AttributeIndex(BankAccount::getBik, concurrent);
+        this.kppIndex = new AttributeIndex(BankAccount::getKpp, concurrent);
+        this.innIndex = new AttributeIndex(BankAccount::getInn, concurrent);
+        this.balanceIndex = new BalanceIndex();
+        this.accountNumberSubstrings = new SubstringIndex(BankAccount::getAccountNumber, concurrent);
+        this.bikSubstrings = new SubstringIndex(BankAccount::getBik, concurrent);
+        this.kppSubstrings = new SubstringIndex(BankAccount::getKpp, concurrent);
+        this.ownerNameSubstrings = new SubstringIndex(BankAccount::getOwnerNameKey, concurrent);
+        this.aggregates = new AccountAggregates();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.listeners.add(balanceIndex);
+        this.listeners.add(aggregates);
+    }
+
+    /**
+     * Потокобезопасный реестр для многопоточной работы (порядок счетов не сохраняется)
+     */
+    public static AccountRegistry concurrent() {
+        return new AccountRegistry(true);
+    }
+
+    /**
+     * Регистрация нового счета. Номер счета должен быть уникальным.
+     * Выполняется под блокировкой счета, чтобы слушатели узнали об открытии счета
+     * раньше, чем о любой операции с ним (с хранилищем - под блокировками добавления кэша
+     * и счета, см. AccountCache.add)
+     */
+    public void register(BankAccount account) {
+        if (store != null) {
+            registerStored(account);
+            return;
+        }
+        ReentrantLock lock = account.lock();
+        lock.lock();
+        try {
+            beforeChange(account);
+            if (accountsByNumber.putIfAbsent(account.getAccountNumber(), account) != null) {
+                throw new IllegalArgumentException("Счет с номером " +
+                        account.getAccountNumber() + " уже существует");
+            }
+            bikIndex.add(account);
+            kppIndex.add(account);
+            innIndex.add(account);
+            balanceIndex.add(account);
+            accountNumberSubstrings.add(account);
+            bikSubstrings.add(account);
+            kppSubstrings.add(account);
+            ownerNameSubstrings.add(account);
+            account.setListener(this);
+            if (archive != null) {
+                account.attachArchive(archive);
+            }
+            onAccountOpened(account);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Регистрация пачки новых счетов (массовая загрузка). Каждый счет публикуется под своей
+     * блокировкой, как в register, а индексы по неизменяемым реквизитам (БИК, КПП, ИНН, подстроки)
+     * строятся одним проходом по всей пачке, параллельно друг другу: несколько мгновений поиск по реквизитам
+     * может еще не находить только что загруженные счета
+     *
+     * @return позиции счетов в списке, не зарегистрированных из-за уже существующего номера
+     */
+    public BitSet registerAll(List<BankAccount> accounts) {
+        BitSet duplicates = new BitSet();
+        if (store != null) {
+            for (int i = 0; i < accounts.size(); i++) {
+                if (!store.add(accounts.get(i))) {
+                    duplicates.set(i);
+                }
+            }
+            return duplicates;
+        }
+        List<BankAccount> registered = new ArrayList<>(accounts.size());
+        for (int i = 0; i < accounts.size(); i++) {
+            BankAccount account = accounts.get(i);
+            ReentrantLock lock = account.lock();
+            lock.lock();
+            try {
+                beforeChange(account);
+                if (accountsByNumber.putIfAbsent(account.getAccountNumber(), account) != null) {
+                    duplicates.set(i);
+                    continue;
+                }
+                // Индекс баланса обновляют слушатели операций - он заполняется под блокировкой
+                balanceIndex.add(account);
+                account.setListener(this);
+                if (archive != null) {
+                    account.attachArchive(archive);
+                }
+                onAccountOpened(account);
+            } finally {
+                lock.unlock();
+            }
+            registered.add(account);
+        }
+
+        // Индексы не зависят друг от друга - каждый строится своей задачей
+        List<Runnable> indexBuilds = List.of(
+                () -> bikIndex.addAll(registered),
+                () -> kppIndex.addAll(registered),
+                () -> innIndex.addAll(registered),
+                () -> accountNumberSubstrings.addAll(registered),
+                () -> bikSubstrings.addAll(registered),
+                () -> kppSubstrings.addAll(registered),
+                () -> ownerNameSubstrings.addAll(registered));
+        indexBuilds.parallelStream().forEach(Runnable::run);
+        return duplicates;
+    }
+
+    /**
+     * Подключение архива холодной истории для счетов реестра и хранилища (до регистрации счетов)
+     */
+    public void setArchive(TransactionArchive archive) {
+        if (!accountsByNumber.isEmpty()) {
+            throw new IllegalStateException("Архив подключается к пустому реестру");
+        }
+        this.archive = archive;
+        AccountCache currentStore = store;
+        if (currentStore != null) {
+            currentStore.setArchive(archive);
+        }
+    }
+
+    TransactionArchive getArchive() {
+        return archive;
+    }
+
+    /**
+     * Подключение хранилища счетов на диске (до регистрации счетов и открытия журнала):
+     * новые счета записываются в хранилище, поиск по номеру продолжается в нем.
+     * Сводные показатели сразу учитывают уже сохраненные в хранилище счета
+     */
+    public void setStore(AccountCache store) {
+        if (!accountsByNumber.isEmpty()) {
+            throw new IllegalStateException("Хранилище подключается к пустому реестру");
+        }
+        store.setListener(storedAccountListener);
+        if (archive != null) {
+            store.setArchive(archive);
+        }
+        store.forEachStored((account, slot) -> {
+            aggregates.restore(account);
+            indexStored(account, slot);
+        });
+        this.store = store;
+    }
+
+    /**
+     * Хранилище счетов на диске или null
+     */
+    public AccountCache getStore() {
+        return store;
+    }
+
+    /**
+     * Запись нового счета в хранилище. Блокировку счета берет кэш после блокировки
+     * добавления (порядок блокировок AccountCache), он же сообщает слушателям об открытии счета
+     * и подключает архив истории
+     */
+    private void registerStored(BankAccount account) {
+        if (accountsByNumber.containsKey(account.getAccountNumber()) || !store.add(account)) {
+            throw new IllegalArgumentException("Счет с номером " +
+                    account.getAccountNumber() + " уже существует");
+        }
+    }
+
+    /**
+     * Добавление счета хранилища во вторичные индексы (ячейки - по возрастанию: при подключении
+     * хранилища и при открытии счета под блокировкой добавления кэша)
+     */
+    private void indexStored(BankAccount account, int slot) {
+        bikIndex.addStored(account, slot);
+        kppIndex.addStored(account, slot);
+        innIndex.addStored(account, slot);
+        balanceIndex.addStored(account);
+        accountNumberSubstrings.addStored(account, slot);
+        bikSubstrings.addStored(account, slot);
+        kppSubstrings.addStored(account, slot);
+        ownerNameSubstrings.addStored(account, slot);
+    }
+
+    /**
+     * Подписка на изменения всех счетов реестра
+     */
+    public void addListener(AccountListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void beforeChange(BankAccount account) {
+        for (AccountListener listener : listeners) {
+            listener.beforeChange(account);
+        }
+    }
+
+    @Override
+    public void onBalanceChanged(BankAccount account, long oldBalance, long newBalance) {
+        for (AccountListener listener : listeners) {
+            listener.onBalanceChanged(account, oldBalance, newBalance);
+        }
+    }
+
+    @Override
+    public void onAccountOpened(BankAccount account) {
+        for (AccountListener listener : listeners) {
+            listener.onAccountOpened(account);
+        }
+    }
+
+    @Override
+    public void onTransaction(BankAccount account, Transaction transaction) {
+        for (AccountListener listener : listeners) {
+            listener.onTransaction(account, transaction);
+        }
+    }
+
+    @Override
+    public void onTransfer(BankAccount from, BankAccount to, Transaction debit, Transaction credit) {
+        if (from.getListener() == storedAccountListener) {
+            return; // Перевод со счета хранилища слушатели уже получили через StoredAccountListener
+        }
+        for (AccountListener listener : listeners) {
+            listener.onTransfer(from, to, debit, credit);
+        }
+    }
+
+    /**
+     * Сводные показатели счетов реестра (обновляются при каждой операции)
+     */
+    public AccountAggregates getAggregates() {
+        return aggregates;
+    }
+
+    /**
+     * Окно идентификаторов запросов для операций с повторами (сервер, пакетный режим)
+     */
+    public RequestDeduplicator getRequestDeduplicator() {
+        return requests;
+    }
+
+    /**
+     * Поиск счета по номеру - в памяти, затем в хранилище (null, если счет не найден)
+     */
+    public BankAccount findByNumber(String accountNumber) {
+        if (accountNumber == null) {
+            return null;
+        }
+        BankAccount account = accountsByNumber.get(accountNumber);
+        AccountCache currentStore = store;
+        return account != null || currentStore == null ? account : currentStore.get(accountNumber);
+    }
+
+    /**
+     * Находится ли счет в хранилище на диске, а не в памяти реестра
+     */
+    public boolean isStored(BankAccount account) {
+        return store != null && accountsByNumber.get(account.getAccountNumber()) != account;
+    }
+
+    /**
+     * Счета с заданным БИК (только для чтения; со счетами хранилища - копия)
+     */
+    public Set<BankAccount> findByBik(String bik) {
+        return withStored(bikIndex.get(bik), bikIndex.getStored(bik));
+    }
+
+    /**
+     * Счета с заданным КПП (только для чтения; со счетами хранилища - копия)
+     */
+    public Set<BankAccount> findByKpp(String kpp) {
+        return withStored(kppIndex.get(kpp), kppIndex.getStored(kpp));
+    }
+
+    /**
+     * Счета с заданным ИНН (только для чтения; со счетами хранилища - копия)
+     */
+    public Set<BankAccount> findByInn(String inn) {
+        return withStored(innIndex.get(inn), innIndex.getStored(inn));
+    }
+
+    /**
+     * Счета с балансом в диапазоне [minBalance, maxBalance] (в копейках), по возрастанию баланса
+     */
+    public List<BankAccount> findByBalanceRange(long minBalance, long maxBalance) {
+        List<BankAccount> result = balanceIndex.findInRange(minBalance, maxBalance);
+        AccountCache currentStore = store;
+        if (currentStore != null && minBalance <= maxBalance) {
+            // Баланс мог измениться после чтения индекса - найденные счета проверяются заново
+            for (BankAccount account : loadStored(balanceIndex.findStoredInRange(minBalance, maxBalance))) {
+                if (account.getBalance() >= minBalance && account.getBalance() <= maxBalance) {
+                    result.add(account);
+                }
+            }
+            result.sort(BY_BALANCE);
+        }
+        return result;
+    }
+
+    /**
+     * count счетов с наибольшим балансом
+     */
+    public List<BankAccount> findRichest(int count) {
+        return withStoredTop(balanceIndex.findRichest(count), balanceIndex.findStoredRichest(count),
+                BY_BALANCE.reversed(), count);
+    }
+
+    /**
+     * count счетов с наименьшим балансом
+     */
+    public List<BankAccount> findPoorest(int count) {
+        return withStoredTop(balanceIndex.findPoorest(count), balanceIndex.findStoredPoorest(count),
+                BY_BALANCE, count);
+    }
+
+    /**
+     * Счета хранилища, удовлетворяющие условию, перебором хранилища - для условий, которые
+     * индексы не сужают (пустой список без хранилища)
+     */
+    List<BankAccount> findStored(Predicate<BankAccount> condition) {
+        AccountCache currentStore = store;
+        return currentStore == null ? List.of() : currentStore.search(condition);
+    }
+
+    /**
+     * Счет хранилища по номеру ячейки из вторичного индекса (null без хранилища)
+     */
+    BankAccount findBySlot(int slot) {
+        AccountCache currentStore = store;
+        return currentStore == null ? null : currentStore.getStored(slot);
+    }
+
+    private Set<BankAccount> withStored(Set<BankAccount> indexed, SlotList.Snapshot stored) {
+        if (stored.size() == 0) {
+            return indexed;
+        }
+        Set<BankAccount> result = new LinkedHashSet<>(indexed);
+        for (int i = 0; i < stored.size(); i++) {
+            BankAccount account = findBySlot(stored.slots()[i]);
+            if (account != null) {
+                result.add(account);
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    private List<BankAccount> withStoredTop(List<BankAccount> indexed, List<String> stored,
+                                            Comparator<BankAccount> order, int count) {
+        if (stored.isEmpty() || count <= 0) {
+            return indexed;
+        }
+        List<BankAccount> result = new ArrayList<>(indexed);
+        result.addAll(loadStored(stored));
+        result.sort(order);
+        return result.size() > count ? new ArrayList<>(result.subList(0, count)) : result;
+    }
+
+    /**
+     * Счета хранилища по номерам из индекса баланса (тот же объект, что видят операции)
+     */
+    private List<BankAccount> loadStored(List<String> accountNumbers) {
+        List<BankAccount> accounts = new ArrayList<>(accountNumbers.size());
+        AccountCache currentStore = store;
+        for (String accountNumber : accountNumbers) {
+            BankAccount account = currentStore == null ? null : currentStore.get(accountNumber);
+            if (account != null) {
+                accounts.add(account);
+            }
+        }
+        return accounts;
+    }
+
+    // Индексы подстрок для BankAccountSearch
+    SubstringIndex accountNumberSubstrings() {
+        return accountNumberSubstrings;
+    }
+
+    SubstringIndex bikSubstrings() {
+        return bikSubstrings;
+    }
+
+    SubstringIndex kppSubstrings() {
+        return kppSubstrings;
+    }
+
+    SubstringIndex ownerNameSubstrings() {
+        return ownerNameSubstrings;
+    }
+
+    public boolean contains(String accountNumber) {
+        return findByNumber(accountNumber) != null;
+    }
+
+    /**
+     * Все счета в памяти реестра, без счетов хранилища (представление только для чтения)
+     */
+    public Collection<BankAccount> getAll() {
+        return Collections.unmodifiableCollection(accountsByNumber.values());
+    }
+
+    /**
+     * Все счета для списков и выгрузки: счета в памяти реестра, затем счета хранилища
+     * (см. AccountCache.accounts - файл читается по мере обхода)
+     */
+    public Iterable<BankAccount> allAccounts() {
+        AccountCache currentStore = store;
+        if (currentStore == null) {
+            return getAll();
+        }
+        return () -> Stream.concat(accountsByNumber.values().stream(),
+                StreamSupport.stream(currentStore.accounts().spliterator(), false)).iterator();
+    }
+
+    /**
+     * Число счетов, включая счета хранилища
+     */
+    public int size() {
+        AccountCache currentStore = store;
+        return accountsByNumber.size() + (currentStore == null ? 0 : currentStore.getStats().getStored());
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Слушатель счетов хранилища: события получают все слушатели реестра, кроме индекса баланса
+     * (он держал бы ссылки на все счета хранилища - счета хранилища индексируются номерами),
+     * а изменения баланса - еще и кэш (вытесненный, но используемый счет возвращается в него)
+     */
+    private class StoredAccountListener implements AccountListener {
+        @Override
+        public void beforeChange(BankAccount account) {
+            for (AccountListener listener : listeners) {
+                listener.beforeChange(account);
+            }
+        }
+
+        @Override
+        public void onBalanceChanged(BankAccount account, long oldBalance, long newBalance) {
+            for (AccountListener listener : listeners) {
+                if (listener != balanceIndex) {
+                    listener.onBalanceChanged(account, oldBalance, newBalance);
+                }
+            }
+            balanceIndex.onStoredBalanceChanged(account, oldBalance, newBalance);
+            store.onBalanceChanged(account, oldBalance, newBalance);
+        }
+
+        /**
+         * Открытие счета хранилища (под блокировкой добавления кэша, после записи в ячейку)
+         */
+        @Override
+        public void onAccountOpened(BankAccount account) {
+            indexStored(account, store.slotOf(account.getAccountNumber()));
+            for (AccountListener listener : listeners) {
+                if (listener != balanceIndex) {
+                    listener.onAccountOpened(account);
+                }
+            }
+        }
+
+        @Override
+        public void onTransaction(BankAccount account, Transaction transaction) {
+            for (AccountListener listener : listeners) {
+                if (listener != balanceIndex) {
+                    listener.onTransaction(account, transaction);
+                }
+            }
+        }
+
+        @Override
+        public void onTransfer(BankAccount from, BankAccount to, Transaction debit, Transaction credit) {
+            // Перевод со счета в памяти реестр уже передал слушателям
+            if (from.getListener() == AccountRegistry.this) {
+                return;
+            }
+            for (AccountListener listener : listeners) {
+                if (listener != balanceIndex) {
+                    listener.onTransfer(from, to, debit, credit);
+                }
+            }
+        }
+    }
+}
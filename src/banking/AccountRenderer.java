@@ -0,0 +1,55 @@
+package banking;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Текстовое представление счетов и транзакций без String.format: поля дописываются
+ * в переданный буфер. Время транзакции форматируется один раз на секунду и берется
+ * из кэша, пока идут транзакции той же секунды (история упорядочена по времени).
+ * Кэш не потокобезопасен - один экземпляр на поток вывода
+ */
+public final class AccountRenderer {
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+            DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss");
+
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedTimestamp;
+
+    /**
+     * Счет в том же виде, что BankAccount.toString (три строки)
+     */
+    public StringBuilder appendAccount(StringBuilder target, BankAccount account) {
+        target.append("Счет: ").append(account.getAccountNumber())
+                .append(" | Владелец: ").append(account.getOwnerName())
+                .append(" | Баланс: ");
+        Money.appendTo(target, account.getBalance()).append(" руб.\n")
+                .append("БИК: ").append(account.getBik())
+                .append(" | КПП: ").append(account.getKpp())
+                .append(" | ИНН: ").append(account.getInn()).append('\n')
+                .append("Корр. счет: ").append(account.getCorrespondentAccount())
+                .append(" | Дата открытия: ").append(account.getOpenDate());
+        return target;
+    }
+
+    /**
+     * Транзакция в том же виде, что Transaction.toString
+     */
+    public StringBuilder appendTransaction(StringBuilder target, Transaction transaction) {
+        target.append('[').append(formatTimestamp(transaction.getTimestamp())).append("] ")
+                .append(transaction.getType().getDescription()).append(": ");
+        return Money.appendTo(target, transaction.getAmount()).append(" руб. - ")
+                .append(transaction.getDescription());
+    }
+
+    private String formatTimestamp(LocalDateTime timestamp) {
+        // Ключ кэша - секунда местного времени, часовой пояс здесь не нужен
+        long second = timestamp.toEpochSecond(ZoneOffset.UTC);
+        if (second != cachedSecond) {
+            cachedTimestamp = TIMESTAMP_FORMAT.format(timestamp);
+            cachedSecond = second;
+        }
+        return cachedTimestamp;
+    }
+}
@@ -0,0 +1,240 @@
+package banking;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Проверка реквизитов счета без регулярных выражений и без создания объектов
+ * при корректных данных: длина и цифры проверяются одним проходом по строке,
+ * контрольные разряды ИНН и номера счета считаются по весам.
+ * <p>
+ * check возвращает текст первой ошибки или null и подходит для предварительной
+ * проверки пакетов, validate бросает IllegalArgumentException
+ */
+public final class AccountValidator {
+    public static final int ACCOUNT_NUMBER_LENGTH = 20;
+    public static final int BIK_LENGTH = 9;
+    public static final int KPP_LENGTH = 9;
+    public static final int CORR_ACCOUNT_LENGTH = 20;
+    public static final int LEGAL_INN_LENGTH = 10;
+    public static final int PERSONAL_INN_LENGTH = 12;
+    /** Предел имени владельца в байтах UTF-8: длина строки в записи журнала - 2 байта со знаком */
+    public static final int MAX_OWNER_NAME_BYTES = Short.MAX_VALUE;
+
+    // Веса контрольных разрядов ИНН
+    private static final int[] INN10_WEIGHTS = {2, 4, 10, 3, 5, 9, 4, 6, 8};
+    private static final int[] INN12_FIRST_WEIGHTS = {7, 2, 4, 10, 3, 5, 9, 4, 6, 8};
+    private static final int[] INN12_SECOND_WEIGHTS = {3, 7, 2, 4, 10, 3, 5, 9, 4, 6, 8};
+
+    // Веса ключа счета (3 разряда по БИК + 20 разрядов счета)
+    private static final int[] ACCOUNT_KEY_WEIGHTS = {7, 1, 3};
+    private static final int ACCOUNT_KEY_POSITION = 8;
+
+    private AccountValidator() {
+    }
+
+    /**
+     * Полная проверка реквизитов нового счета
+     *
+     * @throws IllegalArgumentException с описанием первой ошибки
+     */
+    public static void validate(String accountNumber, String bik, String kpp,
+                                String correspondentAccount, String inn) {
+        String error = check(accountNumber, bik, kpp, correspondentAccount, inn);
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+    }
+
+    /**
+     * Полная проверка: формат полей, контрольные разряды ИНН и ключ номера счета по БИК
+     *
+     * @return описание первой ошибки или null, если реквизиты корректны
+     */
+    public static String check(String accountNumber, String bik, String kpp,
+                               String correspondentAccount, String inn) {
+        String error = checkFormat(accountNumber, bik, kpp, correspondentAccount, inn);
+        if (error != null) {
+            return error;
+        }
+        if (inn != null && !isValidInnChecksum(inn)) {
+            return "Неверные контрольные разряды ИНН";
+        }
+        if (!isValidAccountKey(accountNumber, bik)) {
+            return "Номер счета не соответствует БИК (неверный контрольный ключ)";
+        }
+        return null;
+    }
+
+    /**
+     * Проверка только формата (длина и цифры) - для счетов, восстанавливаемых из журнала
+     * и снимков, которые уже прошли полную проверку при открытии
+     *
+     * @throws IllegalArgumentException с описанием первой ошибки
+     */
+    public static void validateFormat(String accountNumber, String bik, String kpp,
+                                      String correspondentAccount, String inn) {
+        String error = checkFormat(accountNumber, bik, kpp, correspondentAccount, inn);
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+    }
+
+    /**
+     * Проверка длины имени владельца до открытия счета: слишком длинное имя иначе отклонил бы
+     * только журнал, когда счет уже зарегистрирован
+     *
+     * @throws IllegalArgumentException если имя длиннее MAX_OWNER_NAME_BYTES байт в UTF-8
+     */
+    public static void validateOwnerName(String ownerName) {
+        if (ownerName != null && ownerName.length() > MAX_OWNER_NAME_BYTES / 3
+                && ownerName.getBytes(StandardCharsets.UTF_8).length > MAX_OWNER_NAME_BYTES) {
+            throw new IllegalArgumentException("Имя владельца длиннее " + MAX_OWNER_NAME_BYTES + " байт");
+        }
+    }
+
+    private static String checkFormat(String accountNumber, String bik, String kpp,
+                                      String correspondentAccount, String inn) {
+        if (accountNumber == null) {
+            return "Номер счета не может быть null";
+        }
+        if (bik == null) {
+            return "БИК не может быть null";
+        }
+        if (kpp == null) {
+            return "КПП не может быть null";
+        }
+        if (!isDigits(accountNumber, ACCOUNT_NUMBER_LENGTH)) {
+            return "Номер счета должен содержать 20 цифр";
+        }
+        if (!isDigits(bik, BIK_LENGTH)) {
+            return "БИК должен содержать 9 цифр";
+        }
+        if (!isDigits(kpp, KPP_LENGTH)) {
+            return "КПП должен содержать 9 цифр";
+        }
+        if (correspondentAccount != null && !isDigits(correspondentAccount, CORR_ACCOUNT_LENGTH)) {
+            return "Корреспондентский счет должен содержать 20 цифр";
+        }
+        if (inn != null && !isDigits(inn, LEGAL_INN_LENGTH) && !isDigits(inn, PERSONAL_INN_LENGTH)) {
+            return "ИНН должен содержать 10 или 12 цифр";
+        }
+        return null;
+    }
+
+    /**
+     * Строка ровно из length десятичных цифр
+     */
+    public static boolean isDigits(CharSequence value, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Контрольные разряды ИНН из 10 (организация) или 12 (физическое лицо) цифр
+     */
+    public static boolean isValidInn(String inn) {
+        return inn != null
+                && (isDigits(inn, LEGAL_INN_LENGTH) || isDigits(inn, PERSONAL_INN_LENGTH))
+                && isValidInnChecksum(inn);
+    }
+
+    private static boolean isValidInnChecksum(String inn) {
+        if (inn.length() == LEGAL_INN_LENGTH) {
+            return innControlDigit(inn, INN10_WEIGHTS) == digit(inn, 9);
+        }
+        return innControlDigit(inn, INN12_FIRST_WEIGHTS) == digit(inn, 10)
+                && innControlDigit(inn, INN12_SECOND_WEIGHTS) == digit(inn, 11);
+    }
+
+    private static int innControlDigit(String inn, int[] weights) {
+        int sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += digit(inn, i) * weights[i];
+        }
+        return sum % 11 % 10;
+    }
+
+    /**
+     * Контрольный ключ (9-й разряд) номера счета по БИК. Для счетов в кредитной организации
+     * к номеру приписываются три последние цифры БИК, для счетов в подразделении
+     * Банка России (БИК с "00" в 7-8 разрядах) - "0" и 5-6 разряды БИК
+     */
+    public static boolean isValidAccountKey(String accountNumber, String bik) {
+        if (accountNumber == null || bik == null
+                || !isDigits(accountNumber, ACCOUNT_NUMBER_LENGTH) || !isDigits(bik, BIK_LENGTH)) {
+            return false;
+        }
+        return accountKeySum(accountNumber, bik) % 10 == 0;
+    }
+
+    /**
+     * Номер счета с исправленным контрольным ключом (для генерации тестовых данных)
+     */
+    public static String withAccountKey(String accountNumber, String bik) {
+        if (!isDigits(accountNumber, ACCOUNT_NUMBER_LENGTH) || !isDigits(bik, BIK_LENGTH)) {
+            throw new IllegalArgumentException("Номер счета должен содержать 20 цифр, БИК - 9 цифр");
+        }
+        char[] digits = accountNumber.toCharArray();
+        digits[ACCOUNT_KEY_POSITION] = '0';
+        String withZeroKey = new String(digits);
+        // Вес разряда ключа равен 3, подбираем цифру, дополняющую сумму до кратной 10
+        int sum = accountKeySum(withZeroKey, bik) % 10;
+        for (int key = 0; key <= 9; key++) {
+            if ((sum + key * 3 % 10) % 10 == 0) {
+                digits[ACCOUNT_KEY_POSITION] = (char) ('0' + key);
+                break;
+            }
+        }
+        return new String(digits);
+    }
+
+    private static int accountKeySum(String accountNumber, String bik) {
+        boolean centralBank = bik.charAt(6) == '0' && bik.charAt(7) == '0';
+        int sum = 0;
+        // Три приписываемых разряда: позиции 0-2 общего 23-значного числа
+        sum += lowDigitProduct(centralBank ? 0 : digit(bik, 6), 0);
+        sum += lowDigitProduct(centralBank ? digit(bik, 4) : digit(bik, 7), 1);
+        sum += lowDigitProduct(centralBank ? digit(bik, 5) : digit(bik, 8), 2);
+        for (int i = 0; i < ACCOUNT_NUMBER_LENGTH; i++) {
+            sum += lowDigitProduct(digit(accountNumber, i), i + 3);
+        }
+        return sum;
+    }
+
+    private static int lowDigitProduct(int digit, int position) {
+        return digit * ACCOUNT_KEY_WEIGHTS[position % 3] % 10;
+    }
+
+    private static int digit(String value, int index) {
+        return value.charAt(index) - '0';
+    }
+
+    /**
+     * Цифры value с позиции from до to как число (формат уже проверен, до 18 цифр)
+     */
+    public static long parseDigits(CharSequence value, int from, int to) {
+        long result = 0;
+        for (int i = from; i < to; i++) {
+            result = result * 10 + (value.charAt(i) - '0');
+        }
+        return result;
+    }
+
+    /**
+     * Запись value ровно length цифрами (с ведущими нулями) с позиции offset
+     */
+    public static void writeDigits(char[] target, int offset, int length, long value) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            target[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
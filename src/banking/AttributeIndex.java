@@ -0,0 +1,102 @@
+package banking;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Вторичный индекс счетов по значению реквизита (БИК, КПП, ИНН). Счета хранилища
+ * на диске индексируются отдельно, номерами ячеек (addStored)
+ */
+class AttributeIndex {
+    private final Function<BankAccount, String> keyExtractor;
+    private final Map<String, Set<BankAccount>> accountsByKey;
+    private final Map<String, SlotList> slotsByKey = new ConcurrentHashMap<>();
+    private final boolean concurrent;
+
+    AttributeIndex(Function<BankAccount, String> keyExtractor, boolean concurrent) {
+        this.keyExtractor = keyExtractor;
+        this.concurrent = concurrent;
+        this.accountsByKey = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+    }
+
+    /**
+     * Добавление счета в индекс (счета без значения реквизита не индексируются)
+     */
+    void add(BankAccount account) {
+        String key = keyExtractor.apply(account);
+        if (key == null) {
+            return;
+        }
+        accountsByKey.computeIfAbsent(key, k -> newBucket()).add(account);
+    }
+
+    /**
+     * Добавление пачки счетов: счета сначала группируются по значению реквизита,
+     * и каждый список индекса дополняется один раз на значение
+     */
+    void addAll(Collection<BankAccount> accounts) {
+        Map<String, List<BankAccount>> groups = new HashMap<>();
+        for (BankAccount account : accounts) {
+            String key = keyExtractor.apply(account);
+            if (key != null) {
+                groups.computeIfAbsent(key, k -> new ArrayList<>()).add(account);
+            }
+        }
+        // Новый список сразу получает размер группы и не перестраивается при заполнении
+        groups.forEach((key, group) ->
+                accountsByKey.computeIfAbsent(key, k -> newBucket(group.size())).addAll(group));
+    }
+
+    /**
+     * Счета с заданным значением реквизита (представление только для чтения)
+     */
+    Set<BankAccount> get(String key) {
+        if (key == null) {
+            return Collections.emptySet();
+        }
+        Set<BankAccount> bucket = accountsByKey.get(key);
+        return bucket == null ? Collections.emptySet() : Collections.unmodifiableSet(bucket);
+    }
+
+    /**
+     * Добавление счета хранилища по номеру его ячейки (ячейки добавляются по возрастанию)
+     */
+    void addStored(BankAccount account, int slot) {
+        String key = keyExtractor.apply(account);
+        if (key != null) {
+            slotsByKey.computeIfAbsent(key, k -> new SlotList()).add(slot);
+        }
+    }
+
+    /**
+     * Ячейки счетов хранилища с заданным значением реквизита
+     */
+    SlotList.Snapshot getStored(String key) {
+        SlotList slots = key == null ? null : slotsByKey.get(key);
+        return slots == null ? SlotList.EMPTY : slots.snapshot();
+    }
+
+    private Set<BankAccount> newBucket() {
+        // Для однопоточного индекса сохраняем порядок открытия счетов
+        return concurrent ? ConcurrentHashMap.newKeySet() : new LinkedHashSet<>();
+    }
+
+    private Set<BankAccount> newBucket(int expectedSize) {
+        return concurrent ? ConcurrentHashMap.newKeySet(expectedSize) : new LinkedHashSet<>(hashCapacity(expectedSize));
+    }
+
+    /**
+     * Начальная емкость HashMap (LinkedHashSet) для expectedSize элементов без перестройки
+     */
+    static int hashCapacity(int expectedSize) {
+        return Math.max(16, (int) (expectedSize / 0.75f) + 1);
+    }
+}
@@ -0,0 +1,168 @@
+package banking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Упорядоченный индекс счетов по балансу (skip list по ключу "баланс + номер счета").
+ * Поиск по диапазону выполняется за O(log n + k).
+ * <p>
+ * Счета хранилища на диске индексируются отдельно, без ссылок на объекты счетов: ключ -
+ * баланс и упакованный номер (первые 2 цифры и остальные 18 числом, как в AccountNumberTable),
+ * поиск возвращает номера. Изменения их баланса передает реестр (onStoredBalanceChanged)
+ */
+class BalanceIndex implements AccountListener {
+    // Номер счета состоит из цифр, поэтому эти значения ограничивают любой номер снизу и сверху
+    private static final String MIN_ACCOUNT_NUMBER = "";
+    private static final String MAX_ACCOUNT_NUMBER = "\uffff";
+
+    private final ConcurrentSkipListMap<BalanceKey, BankAccount> accountsByBalance =
+            new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListSet<StoredKey> storedByBalance = new ConcurrentSkipListSet<>();
+
+    void add(BankAccount account) {
+        accountsByBalance.put(new BalanceKey(account.getBalance(), account.getAccountNumber()), account);
+    }
+
+    @Override
+    public void onBalanceChanged(BankAccount account, long oldBalance, long newBalance) {
+        String accountNumber = account.getAccountNumber();
+        accountsByBalance.remove(new BalanceKey(oldBalance, accountNumber));
+        accountsByBalance.put(new BalanceKey(newBalance, accountNumber), account);
+    }
+
+    /**
+     * Счета с балансом в диапазоне [minBalance, maxBalance] в порядке возрастания баланса
+     */
+    List<BankAccount> findInRange(long minBalance, long maxBalance) {
+        if (minBalance > maxBalance) {
+            return new ArrayList<>();
+        }
+        ConcurrentNavigableMap<BalanceKey, BankAccount> range = accountsByBalance.subMap(
+                new BalanceKey(minBalance, MIN_ACCOUNT_NUMBER), true,
+                new BalanceKey(maxBalance, MAX_ACCOUNT_NUMBER), true);
+        return new ArrayList<>(range.values());
+    }
+
+    /**
+     * Первые count счетов с наибольшим балансом
+     */
+    List<BankAccount> findRichest(int count) {
+        return firstValues(accountsByBalance.descendingMap(), count);
+    }
+
+    /**
+     * Первые count счетов с наименьшим балансом
+     */
+    List<BankAccount> findPoorest(int count) {
+        return firstValues(accountsByBalance, count);
+    }
+
+    /**
+     * Добавление счета хранилища с его текущим балансом
+     */
+    void addStored(BankAccount account) {
+        storedByBalance.add(StoredKey.of(account.getBalance(), account.getAccountNumber()));
+    }
+
+    /**
+     * Изменение баланса счета хранилища (под блокировкой счета)
+     */
+    void onStoredBalanceChanged(BankAccount account, long oldBalance, long newBalance) {
+        String accountNumber = account.getAccountNumber();
+        storedByBalance.remove(StoredKey.of(oldBalance, accountNumber));
+        storedByBalance.add(StoredKey.of(newBalance, accountNumber));
+    }
+
+    /**
+     * Номера счетов хранилища с балансом в диапазоне [minBalance, maxBalance]
+     * в порядке возрастания баланса
+     */
+    List<String> findStoredInRange(long minBalance, long maxBalance) {
+        if (minBalance > maxBalance) {
+            return new ArrayList<>();
+        }
+        return firstNumbers(storedByBalance.subSet(new StoredKey(minBalance, Byte.MIN_VALUE, Long.MIN_VALUE), true,
+                new StoredKey(maxBalance, Byte.MAX_VALUE, Long.MAX_VALUE), true), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Номера первых count счетов хранилища с наибольшим балансом
+     */
+    List<String> findStoredRichest(int count) {
+        return firstNumbers(storedByBalance.descendingSet(), count);
+    }
+
+    /**
+     * Номера первых count счетов хранилища с наименьшим балансом
+     */
+    List<String> findStoredPoorest(int count) {
+        return firstNumbers(storedByBalance, count);
+    }
+
+    private static List<String> firstNumbers(NavigableSet<StoredKey> keys, int count) {
+        List<String> result = new ArrayList<>(Math.max(0, Math.min(count, 1024)));
+        for (StoredKey key : keys) {
+            if (result.size() >= count) {
+                break;
+            }
+            result.add(key.accountNumber());
+        }
+        return result;
+    }
+
+    private static List<BankAccount> firstValues(ConcurrentNavigableMap<BalanceKey, BankAccount> map,
+                                                 int count) {
+        List<BankAccount> result = new ArrayList<>(Math.max(0, Math.min(count, 1024)));
+        for (BankAccount account : map.values()) {
+            if (result.size() >= count) {
+                break;
+            }
+            result.add(account);
+        }
+        return result;
+    }
+
+    /**
+     * Ключ индекса: баланс в копейках, при равенстве - номер счета
+     */
+    private record BalanceKey(long balance, String accountNumber) implements Comparable<BalanceKey> {
+        @Override
+        public int compareTo(BalanceKey other) {
+            int byBalance = Long.compare(balance, other.balance);
+            return byBalance != 0 ? byBalance : accountNumber.compareTo(other.accountNumber);
+        }
+    }
+
+    /**
+     * Ключ индекса счетов хранилища: баланс, при равенстве - номер счета (упакованный номер
+     * из цифр упорядочен так же, как строка)
+     */
+    private record StoredKey(long balance, byte high, long low) implements Comparable<StoredKey> {
+        static StoredKey of(long balance, String accountNumber) {
+            return new StoredKey(balance, (byte) AccountValidator.parseDigits(accountNumber, 0, 2),
+                    AccountValidator.parseDigits(accountNumber, 2, AccountValidator.ACCOUNT_NUMBER_LENGTH));
+        }
+
+        String accountNumber() {
+            char[] digits = new char[AccountValidator.ACCOUNT_NUMBER_LENGTH];
+            AccountValidator.writeDigits(digits, 0, 2, high);
+            AccountValidator.writeDigits(digits, 2, AccountValidator.ACCOUNT_NUMBER_LENGTH - 2, low);
+            return new String(digits);
+        }
+
+        @Override
+        public int compareTo(StoredKey other) {
+            int byBalance = Long.compare(balance, other.balance);
+            if (byBalance != 0) {
+                return byBalance;
+            }
+            int byHigh = Byte.compare(high, other.high);
+            return byHigh != 0 ? byHigh : Long.compare(low, other.low);
+        }
+    }
+}
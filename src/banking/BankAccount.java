@@ -1,117 +1,384 @@
 package banking;
 
-import java.util.ArrayList;
+import banking.metrics.Metrics;
+import banking.metrics.Operation;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Класс, представляющий банковский счет со всеми реквизитами
+ * Класс, представляющий банковский счет со всеми реквизитами.
+ * Операции со счетом потокобезопасны: изменения выполняются под полосатой блокировкой
+ * счета (см. AccountLocks), баланс читается без блокировки
  */
 public class BankAccount {
     private final String accountNumber;     // Номер счета (20 цифр)
-    private final String bik;               // БИК банка (9 цифр)
-    private final String kpp;               // КПП организации (9 цифр)
-    private final String correspondentAccount; // Корреспондентский счет (20 цифр)
+    private final String bik;               // БИК банка (9 цифр), общий экземпляр из RequisitePool
+    private final String kpp;               // КПП организации (9 цифр), общий экземпляр из RequisitePool
+    private final String correspondentAccount; // Корреспондентский счет (20 цифр), из RequisitePool
     private final String inn;               // ИНН владельца (10 или 12 цифр)
     private final String ownerName;         // Имя владельца счета
+    private final String ownerNameKey;      // Имя владельца в нижнем регистре (для поиска)
 
-    private double balance;
-    private final List<Transaction> transactions;
-    private final String openDate;
-
-    // Константы для валидации
-    private static final int ACCOUNT_NUMBER_LENGTH = 20;
-    private static final int BIK_LENGTH = 9;
-    private static final int KPP_LENGTH = 9;
-    private static final int CORR_ACCOUNT_LENGTH = 20;
+    private volatile long balance;          // В копейках, изменяется только под блокировкой счета
+    private final TransactionHistory history; // Колоночная история, изменяется под блокировкой
+    private final int lockStripe;           // Полоса блокировки (см. AccountLocks)
+    private final int openEpochDay;         // Дата открытия (дней от 1970-01-01)
+    private AccountListener listener;       // Слушатель реестра, в котором зарегистрирован счет
+    private long lastLsn;                   // LSN последней записи журнала по счету (под блокировкой)
 
+    /**
+     * Открытие счета с полной проверкой реквизитов (см. AccountValidator)
+     *
+     * @param initialBalance начальный баланс в копейках (см. Money)
+     */
     public BankAccount(String accountNumber, String bik, String kpp,
                        String correspondentAccount, String inn, String ownerName,
-                       double initialBalance) {
-        validateInput(accountNumber, bik, kpp, correspondentAccount, inn);
+                       long initialBalance) {
+        this(accountNumber, bik, kpp, correspondentAccount, inn, ownerName, initialBalance,
+                LocalDateTime.now(), true);
+    }
+
+    /**
+     * Счет с заданным временем открытия (восстановление из журнала): реквизиты
+     * проверялись при открытии, поэтому проверяется только формат
+     */
+    BankAccount(String accountNumber, String bik, String kpp,
+                String correspondentAccount, String inn, String ownerName,
+                long initialBalance, LocalDateTime openedAt) {
+        this(accountNumber, bik, kpp, correspondentAccount, inn, ownerName, initialBalance,
+                openedAt, false);
+    }
+
+    private BankAccount(String accountNumber, String bik, String kpp,
+                        String correspondentAccount, String inn, String ownerName,
+                        long initialBalance, LocalDateTime openedAt, boolean fullValidation) {
+        long start = fullValidation ? Metrics.start() : Metrics.DISABLED; // Восстановление счета не считается открытием
+        if (fullValidation) {
+            AccountValidator.validate(accountNumber, bik, kpp, correspondentAccount, inn);
+        } else {
+            AccountValidator.validateFormat(accountNumber, bik, kpp, correspondentAccount, inn);
+        }
+        AccountValidator.validateOwnerName(ownerName);
 
         this.accountNumber = accountNumber;
-        this.bik = bik;
-        this.kpp = kpp;
-        this.correspondentAccount = correspondentAccount;
+        this.bik = RequisitePool.canonical(bik);
+        this.kpp = RequisitePool.canonical(kpp);
+        this.correspondentAccount = RequisitePool.canonical(correspondentAccount);
         this.inn = inn;
         this.ownerName = ownerName;
+        this.ownerNameKey = ownerName == null ? null : ownerName.toLowerCase();
         this.balance = initialBalance;
-        this.transactions = new ArrayList<>();
-        this.openDate = java.time.LocalDate.now().toString();
+        this.history = new TransactionHistory();
+        this.lockStripe = AccountLocks.stripeOf(accountNumber);
+        this.openEpochDay = (int) openedAt.toLocalDate().toEpochDay();
 
         // Добавляем транзакцию открытия счета
-        addTransaction(new Transaction(TransactionType.OPEN_ACCOUNT, initialBalance,
+        addTransaction(new Transaction(openedAt, TransactionType.OPEN_ACCOUNT, initialBalance,
                 "Открытие счета с начальным балансом"));
+        Metrics.record(Operation.OPEN, start);
     }
 
     /**
-     * Валидация входных данных
+     * Счет в сохраненном состоянии (загрузка снимка)
      */
-    private void validateInput(String accountNumber, String bik, String kpp,
-                               String correspondentAccount, String inn) {
-        Objects.requireNonNull(accountNumber, "Номер счета не может быть null");
-        Objects.requireNonNull(bik, "БИК не может быть null");
-        Objects.requireNonNull(kpp, "КПП не может быть null");
+    private BankAccount(String accountNumber, String bik, String kpp,
+                        String correspondentAccount, String inn, String ownerName,
+                        long balance, String openDate, TransactionHistory history, long lastLsn) {
+        AccountValidator.validateFormat(accountNumber, bik, kpp, correspondentAccount, inn);
 
-        if (!accountNumber.matches("\\d{" + ACCOUNT_NUMBER_LENGTH + "}")) {
-            throw new IllegalArgumentException("Номер счета должен содержать " +
-                    ACCOUNT_NUMBER_LENGTH + " цифр");
+        this.accountNumber = accountNumber;
+        this.bik = RequisitePool.canonical(bik);
+        this.kpp = RequisitePool.canonical(kpp);
+        this.correspondentAccount = RequisitePool.canonical(correspondentAccount);
+        this.inn = inn;
+        this.ownerName = ownerName;
+        this.ownerNameKey = ownerName == null ? null : ownerName.toLowerCase();
+        this.balance = balance;
+        this.history = history;
+        this.lockStripe = AccountLocks.stripeOf(accountNumber);
+        this.openEpochDay = (int) LocalDate.parse(openDate).toEpochDay();
+        this.lastLsn = lastLsn;
+    }
+
+    static BankAccount restore(String accountNumber, String bik, String kpp,
+                               String correspondentAccount, String inn, String ownerName,
+                               long balance, String openDate, TransactionHistory history, long lastLsn) {
+        return new BankAccount(accountNumber, bik, kpp, correspondentAccount, inn, ownerName,
+                balance, openDate, history, lastLsn);
+    }
+
+    /**
+     * Пополнение счета на сумму в копейках
+     *
+     * @throws ArithmeticException при переполнении баланса
+     */
+    public void deposit(long amount) {
+        deposit(amount, null);
+    }
+
+    /**
+     * Пополнение с идентификатором запроса клиента, который записывается в транзакцию.
+     * Повторы с тем же идентификатором отсекает RequestDeduplicator реестра
+     *
+     * @param requestId идентификатор запроса или null
+     * @throws ArithmeticException при переполнении баланса
+     */
+    public void deposit(long amount, String requestId) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Сумма пополнения должна быть положительной");
         }
 
-        if (!bik.matches("\\d{" + BIK_LENGTH + "}")) {
-            throw new IllegalArgumentException("БИК должен содержать " +
-                    BIK_LENGTH + " цифр");
+        long start = Metrics.start();
+        ReentrantLock lock = lock();
+        lock.lock();
+        try {
+            postDeposit(amount, requestId);
+        } finally {
+            lock.unlock();
         }
+        Metrics.record(Operation.DEPOSIT, start);
+    }
+
+    /**
+     * Пополнение под уже взятой блокировкой счета (сумма проверена вызывающим)
+     */
+    void postDeposit(long amount, String requestId) {
+        long oldBalance = balance;
+        long newBalance = Money.add(oldBalance, amount);
+        notifyBeforeChange();
+        balance = newBalance;
+        Transaction transaction = new Transaction(LocalDateTime.now(), TransactionType.DEPOSIT, amount,
+                describe(TransactionType.DEPOSIT), requestId);
+        addTransaction(transaction);
+        notifyBalanceChanged(oldBalance);
+        notifyTransaction(transaction);
+    }
 
-        if (!kpp.matches("\\d{" + KPP_LENGTH + "}")) {
-            throw new IllegalArgumentException("КПП должен содержать " +
-                    KPP_LENGTH + " цифр");
+    /**
+     * Снятие со счета суммы в копейках
+     */
+    public boolean withdraw(long amount) {
+        return withdraw(amount, null);
+    }
+
+    /**
+     * Снятие с идентификатором запроса клиента, который записывается в транзакцию
+     *
+     * @param requestId идентификатор запроса или null
+     */
+    public boolean withdraw(long amount, String requestId) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Сумма снятия должна быть положительной");
         }
 
-        if (correspondentAccount != null &&
-                !correspondentAccount.matches("\\d{" + CORR_ACCOUNT_LENGTH + "}")) {
-            throw new IllegalArgumentException("Корреспондентский счет должен содержать " +
-                    CORR_ACCOUNT_LENGTH + " цифр");
+        long start = Metrics.start();
+        boolean withdrawn;
+        ReentrantLock lock = lock();
+        lock.lock();
+        try {
+            withdrawn = postWithdrawal(amount, requestId);
+        } finally {
+            lock.unlock();
         }
+        Metrics.record(withdrawn ? Operation.WITHDRAW : Operation.WITHDRAW_REJECTED, start);
+        return withdrawn;
     }
 
     /**
-     * Пополнение счета
+     * Снятие под уже взятой блокировкой счета (сумма проверена вызывающим)
+     *
+     * @return false, если недостаточно средств
      */
-    public void deposit(double amount) {
-        if (amount <= 0) {
-            throw new IllegalArgumentException("Сумма пополнения должна быть положительной");
+    boolean postWithdrawal(long amount, String requestId) {
+        long oldBalance = balance;
+        if (amount > oldBalance) {
+            return false;
         }
+        notifyBeforeChange();
+        balance = Money.subtract(oldBalance, amount);
+        Transaction transaction = new Transaction(LocalDateTime.now(), TransactionType.WITHDRAWAL, amount,
+                describe(TransactionType.WITHDRAWAL), requestId);
+        addTransaction(transaction);
+        notifyBalanceChanged(oldBalance);
+        notifyTransaction(transaction);
+        return true;
+    }
 
-        balance += amount;
-        addTransaction(new Transaction(TransactionType.DEPOSIT, amount,
-                "Пополнение счета"));
+    /**
+     * Атомарный перевод между счетами: списание и зачисление выполняются под блокировками
+     * обоих счетов, взятыми в порядке номеров полос, поэтому взаимная блокировка невозможна,
+     * а переводы между непересекающимися счетами идут параллельно
+     *
+     * @param amount сумма в копейках
+     * @return false, если на счете списания недостаточно средств
+     * @throws ArithmeticException при переполнении баланса счета зачисления
+     */
+    public static boolean transfer(BankAccount from, BankAccount to, long amount) {
+        return transfer(from, to, amount, null);
     }
 
     /**
-     * Снятие со счета
+     * Перевод с идентификатором запроса клиента, который записывается в обе транзакции
+     *
+     * @param requestId идентификатор запроса или null
      */
-    public boolean withdraw(double amount) {
+    public static boolean transfer(BankAccount from, BankAccount to, long amount, String requestId) {
+        Objects.requireNonNull(from, "Счет списания не может быть null");
+        Objects.requireNonNull(to, "Счет зачисления не может быть null");
         if (amount <= 0) {
-            throw new IllegalArgumentException("Сумма снятия должна быть положительной");
+            throw new IllegalArgumentException("Сумма перевода должна быть положительной");
         }
+        if (from.equals(to)) {
+            throw new IllegalArgumentException("Нельзя перевести деньги на тот же счет");
+        }
+
+        long start = Metrics.start();
+        ReentrantLock first = AccountLocks.lock(Math.min(from.lockStripe, to.lockStripe));
+        ReentrantLock second = AccountLocks.lock(Math.max(from.lockStripe, to.lockStripe));
+        first.lock();
+        second.lock(); // Для счетов из одной полосы блокировка реентерабельна
+        try {
+            long fromOldBalance = from.balance;
+            if (amount > fromOldBalance) {
+                Metrics.record(Operation.TRANSFER_REJECTED, start);
+                return false; // Недостаточно средств
+            }
+            long toOldBalance = to.balance;
+            // Зачисление считаем до изменений, чтобы переполнение не оставило половину перевода
+            long toNewBalance = Money.add(toOldBalance, amount);
+            from.notifyBeforeChange();
+            to.notifyBeforeChange();
 
-        if (amount > balance) {
-            return false; // Недостаточно средств
+            from.balance = Money.subtract(fromOldBalance, amount);
+            to.balance = toNewBalance;
+            LocalDateTime timestamp = LocalDateTime.now();
+            Transaction debit = new Transaction(timestamp, TransactionType.TRANSFER_OUT, amount,
+                    transferDescription(TransactionType.TRANSFER_OUT, to.accountNumber), requestId);
+            Transaction credit = new Transaction(timestamp, TransactionType.TRANSFER_IN, amount,
+                    transferDescription(TransactionType.TRANSFER_IN, from.accountNumber), requestId);
+            from.addTransaction(debit);
+            to.addTransaction(credit);
+            from.notifyBalanceChanged(fromOldBalance);
+            to.notifyBalanceChanged(toOldBalance);
+            // Счета могут принадлежать разным слушателям (реестр и хранилище) - узнать должны оба
+            AccountListener fromListener = from.listener;
+            AccountListener toListener = to.listener;
+            if (fromListener != null) {
+                fromListener.onTransfer(from, to, debit, credit);
+            }
+            if (toListener != null && toListener != fromListener) {
+                toListener.onTransfer(from, to, debit, credit);
+            }
+            Metrics.record(Operation.TRANSFER, start);
+            return true;
+        } finally {
+            second.unlock();
+            first.unlock();
         }
+    }
 
-        balance -= amount;
-        addTransaction(new Transaction(TransactionType.WITHDRAWAL, amount,
-                "Снятие наличных"));
-        return true;
+    /**
+     * Описание пополнения или снятия в истории счета
+     */
+    static String describe(TransactionType type) {
+        return type == TransactionType.DEPOSIT ? "Пополнение счета" : "Снятие наличных";
+    }
+
+    static String transferDescription(TransactionType type, String counterpartyNumber) {
+        return (type == TransactionType.TRANSFER_OUT ? "Перевод на счет " : "Перевод со счета ")
+                + counterpartyNumber;
+    }
+
+    /**
+     * Повторное применение операции из журнала: без проверки остатка и без уведомления
+     * слушателей о транзакции (она уже записана в журнал), индексы баланса обновляются
+     */
+    void replay(Transaction transaction, long lsn) {
+        ReentrantLock lock = lock();
+        lock.lock();
+        try {
+            long oldBalance = balance;
+            balance = switch (transaction.getType()) {
+                case DEPOSIT, TRANSFER_IN -> Money.add(oldBalance, transaction.getAmount());
+                case WITHDRAWAL, TRANSFER_OUT -> Money.subtract(oldBalance, transaction.getAmount());
+                case OPEN_ACCOUNT -> throw new IllegalArgumentException("Открытие счета не повторяется");
+            };
+            addTransaction(transaction);
+            lastLsn = lsn;
+            notifyBalanceChanged(oldBalance);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Блокировка счета (одна из полос AccountLocks)
+     */
+    ReentrantLock lock() {
+        return AccountLocks.lock(lockStripe);
+    }
+
+    /**
+     * Номер полосы блокировки счета (см. AccountLocks)
+     */
+    int getLockStripe() {
+        return lockStripe;
     }
 
     /**
-     * Добавление транзакции в историю
+     * Добавление транзакции в историю (вызывается под блокировкой счета)
      */
     private void addTransaction(Transaction transaction) {
-        transactions.add(transaction);
+        history.add(transaction);
+    }
+
+    /**
+     * Подключение архива холодной истории (вызывается реестром при регистрации счета)
+     */
+    void attachArchive(TransactionArchive archive) {
+        ReentrantLock lock = lock();
+        lock.lock();
+        try {
+            history.attachArchive(archive);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Подключение слушателя изменений (вызывается реестром при регистрации счета)
+     */
+    void setListener(AccountListener listener) {
+        this.listener = listener;
+    }
+
+    AccountListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Проверка слушателем (журналом), что операцию можно провести - до изменения счета
+     */
+    private void notifyBeforeChange() {
+        if (listener != null) {
+            listener.beforeChange(this);
+        }
+    }
+
+    private void notifyBalanceChanged(long oldBalance) {
+        if (listener != null) {
+            listener.onBalanceChanged(this, oldBalance, balance);
+        }
+    }
+
+    private void notifyTransaction(Transaction transaction) {
+        if (listener != null) {
+            listener.onTransaction(this, transaction);
+        }
     }
 
     // Геттеры
@@ -139,26 +406,215 @@ public class BankAccount {
         return ownerName;
     }
 
-    public double getBalance() {
+    String getOwnerNameKey() {
+        return ownerNameKey;
+    }
+
+    /**
+     * Баланс в копейках
+     */
+    public long getBalance() {
         return balance;
     }
 
+    /**
+     * Вся история счета (копия). Для длинных историй используйте постраничное чтение
+     */
     public List<Transaction> getTransactions() {
-        return new ArrayList<>(transactions); // Возвращаем копию для инкапсуляции
+        long start = Metrics.start();
+        ReentrantLock lock = lock();
+        lock.lock();
+        try {
+            return history.range(0, history.size());
+        } finally {
+            lock.unlock();
+            Metrics.record(Operation.HISTORY_READ, start);
+        }
+    }
+
+    public int getTransactionCount() {
+        ReentrantLock lock = lock();
+        lock.lock();
+        try {
+            return history.size();
+        } finally {
+            lock.unlock();
+        }
     }
 
+    /**
+     * Страница истории: не более limit транзакций, начиная с позиции offset
+     */
+    public List<Transaction> getTransactions(int offset, int limit) {
+        checkPage(offset, limit);
+        long start = Metrics.start();
+        ReentrantLock lock = lock();
+        lock.lock();
+        try {
+            int from = Math.min(offset, history.size());
+            return history.range(from, (int) Math.min(history.size(), (long) from + limit));
+        } finally {
+            lock.unlock();
+            Metrics.record(Operation.HISTORY_READ, start);
+        }
+    }
+
+    /**
+     * Страница транзакций за период [from, to): не более limit, пропустив первые offset
+     */
+    public List<Transaction> getTransactions(LocalDateTime from, LocalDateTime to, int offset, int limit) {
+        return getTransactions(null, from, to, offset, limit);
+    }
+
+    /**
+     * Страница транзакций типа type (null - любого) за период [from, to):
+     * не более limit, пропустив первые offset подходящих
+     */
+    public List<Transaction> getTransactions(TransactionType type, LocalDateTime from, LocalDateTime to,
+                                             int offset, int limit) {
+        checkPage(offset, limit);
+        long fromMillis = toEpochMillis(from, "Начало периода не может быть null");
+        long toMillis = toEpochMillis(to, "Конец периода не может быть null");
+        long startNanos = Metrics.start();
+        ReentrantLock lock = lock();
+        lock.lock();
+        try {
+            int end = history.lowerBound(toMillis);
+            int start = Math.min(end, history.lowerBound(fromMillis));
+            return history.select(type, start, end, offset, limit);
+        } finally {
+            lock.unlock();
+            Metrics.record(Operation.HISTORY_READ, startNanos);
+        }
+    }
+
+    /**
+     * Сумма транзакций типа type за период [from, to) в копейках, например
+     * пополнения за месяц. Считается по нарастающим итогам истории, без перебора
+     */
+    public long sumTransactions(TransactionType type, LocalDateTime from, LocalDateTime to) {
+        Objects.requireNonNull(type, "Тип транзакции не может быть null");
+        long fromMillis = toEpochMillis(from, "Начало периода не может быть null");
+        long toMillis = toEpochMillis(to, "Конец периода не может быть null");
+        long start = Metrics.start();
+        ReentrantLock lock = lock();
+        lock.lock();
+        try {
+            int end = history.lowerBound(toMillis);
+            return history.sum(type, Math.min(end, history.lowerBound(fromMillis)), end);
+        } finally {
+            lock.unlock();
+            Metrics.record(Operation.HISTORY_TOTALS, start);
+        }
+    }
+
+    /**
+     * Число транзакций типа type за период [from, to)
+     */
+    public int countTransactions(TransactionType type, LocalDateTime from, LocalDateTime to) {
+        Objects.requireNonNull(type, "Тип транзакции не может быть null");
+        long fromMillis = toEpochMillis(from, "Начало периода не может быть null");
+        long toMillis = toEpochMillis(to, "Конец периода не может быть null");
+        long start = Metrics.start();
+        ReentrantLock lock = lock();
+        lock.lock();
+        try {
+            int end = history.lowerBound(toMillis);
+            return history.count(type, Math.min(end, history.lowerBound(fromMillis)), end);
+        } finally {
+            lock.unlock();
+            Metrics.record(Operation.HISTORY_TOTALS, start);
+        }
+    }
+
+    private static long toEpochMillis(LocalDateTime timestamp, String nullMessage) {
+        return TransactionHistory.toEpochMillis(Objects.requireNonNull(timestamp, nullMessage));
+    }
+
+    private static void checkPage(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Смещение и размер страницы не могут быть отрицательными");
+        }
+    }
+
+    /**
+     * Транзакция открытия счета (первая в истории) или null, если история начинается позже
+     * (счет загружен из DiskAccountStore)
+     */
+    Transaction getOpeningTransaction() {
+        ReentrantLock lock = lock();
+        lock.lock();
+        try {
+            return history.size() == 0 ? null : history.get(0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Последние count транзакций (копия)
+     */
+    List<Transaction> getRecentTransactions(int count) {
+        ReentrantLock lock = lock();
+        lock.lock();
+        try {
+            int size = history.size();
+            return history.range(Math.max(0, size - count), size);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Число транзакций, хранящихся в памяти (вызывается под блокировкой счета)
+     */
+    int getHotTransactionCount() {
+        return history.hotSize();
+    }
+
+    /**
+     * История счета (вызывается под блокировкой счета): кэш хранилища сохраняет ее
+     * при вытеснении счета и передает счету, загруженному снова
+     */
+    TransactionHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Блоки истории в архиве (вызывается под блокировкой счета)
+     */
+    TransactionHistory.ColdChunks getColdChunks() {
+        return history.coldChunks();
+    }
+
+    /**
+     * LSN последней записи журнала, отраженной в состоянии счета (читать под блокировкой счета)
+     */
+    long getLastLsn() {
+        return lastLsn;
+    }
+
+    void setLastLsn(long lastLsn) {
+        this.lastLsn = lastLsn;
+    }
+
+    /**
+     * Дата открытия в виде ГГГГ-ММ-ДД
+     */
     public String getOpenDate() {
-        return openDate;
+        return LocalDate.ofEpochDay(openEpochDay).toString();
+    }
+
+    /**
+     * Дата открытия в днях от 1970-01-01
+     */
+    int getOpenEpochDay() {
+        return openEpochDay;
     }
 
     @Override
     public String toString() {
-        return String.format(
-                "Счет: %s | Владелец: %s | Баланс: %.2f руб.\n" +
-                        "БИК: %s | КПП: %s | ИНН: %s\n" +
-                        "Корр. счет: %s | Дата открытия: %s",
-                accountNumber, ownerName, balance, bik, kpp, inn,
-                correspondentAccount, openDate);
+        return new AccountRenderer().appendAccount(new StringBuilder(256), this).toString();
     }
 
     @Override
@@ -171,6 +627,6 @@ public class BankAccount {
 
     @Override
     public int hashCode() {
-        return Objects.hash(accountNumber);
+        return accountNumber.hashCode();
     }
 }
\ No newline at end of file
@@ -1,19 +1,48 @@
 package banking;
 
+import banking.metrics.Metrics;
+import banking.metrics.Operation;
+
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * Класс для эффективного поиска банковских счетов по различным атрибутам
  */
 public class BankAccountSearch {
+    /**
+     * Размер части, ниже которого перебор не делится между потоками
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 8_192;
 
     /**
-     * Поиск счетов по предикату (условию)
+     * Без ограничения числа результатов
      */
-    public static List<BankAccount> search(List<BankAccount> accounts,
+    public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+    /**
+     * Поиск счетов по произвольному предикату (условию) полным перебором
+     */
+    public static List<BankAccount> search(Collection<BankAccount> accounts,
                                            Predicate<BankAccount> condition) {
+        long start = Metrics.start();
+        List<BankAccount> result = scan(accounts, condition);
+        Metrics.record(Operation.SEARCH_SCAN, start);
+        return result;
+    }
+
+    private static List<BankAccount> scan(Collection<BankAccount> accounts,
+                                          Predicate<BankAccount> condition) {
         List<BankAccount> result = new ArrayList<>();
         for (BankAccount account : accounts) {
             if (condition.test(account)) {
@@ -24,80 +53,390 @@ public class BankAccountSearch {
     }
 
     /**
-     * Поиск по номеру счета (точное совпадение)
+     * Параллельный поиск по произвольному предикату в пуле fork-join: набор счетов делится
+     * на части, пока они больше threshold, части проверяются в разных потоках.
+     * Предикат вызывается одновременно из нескольких потоков.
+     * Без ограничения для упорядоченной коллекции (например, однопоточного реестра) порядок
+     * результатов совпадает с порядком обхода, для остальных не определен; с ограничением
+     * перебор прекращается, как только найдено limit счетов, и возвращаются limit любых
+     * подходящих счетов
+     *
+     * @param threshold размер части для последовательной проверки (DEFAULT_PARALLEL_THRESHOLD)
+     * @param limit     наибольшее число результатов или NO_LIMIT
      */
-    public static List<BankAccount> searchByAccountNumber(List<BankAccount> accounts,
+    public static List<BankAccount> parallelSearch(Collection<BankAccount> accounts,
+                                                   Predicate<BankAccount> condition,
+                                                   int threshold, int limit) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Порог разделения должен быть положительным");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Ограничение числа результатов должно быть положительным");
+        }
+        long start = Metrics.start();
+        List<BankAccount> result = new SearchTask(accounts.spliterator(), condition, threshold,
+                limit, new AtomicInteger()).invoke();
+        if (result.size() > limit) {
+            result = new ArrayList<>(result.subList(0, limit)); // Части могли найти лишнее одновременно
+        }
+        Metrics.record(Operation.SEARCH_SCAN, start);
+        return result;
+    }
+
+    /**
+     * Потоковый поиск: счета проверяются по мере чтения из итератора, результаты
+     * не накапливаются в памяти. Итератор отражает текущее содержимое accounts,
+     * как и обычный обход коллекции (см. advancedSearchIterator)
+     */
+    public static Iterator<BankAccount> searchIterator(Collection<BankAccount> accounts,
+                                                       Predicate<BankAccount> condition) {
+        return accounts.stream().filter(condition).iterator();
+    }
+
+    /**
+     * Поиск по номеру счета (точное совпадение, через индекс реестра)
+     */
+    public static List<BankAccount> searchByAccountNumber(AccountRegistry registry,
                                                           String accountNumber) {
-        return search(accounts, account ->
-                account.getAccountNumber().equals(accountNumber));
+        long start = Metrics.start();
+        BankAccount account = registry.findByNumber(accountNumber);
+        Metrics.record(Operation.SEARCH_BY_NUMBER, start);
+        return account == null ? List.of() : List.of(account);
     }
 
     /**
-     * Поиск по БИК (точное совпадение)
+     * Поиск по БИК (точное совпадение, через индекс реестра)
      */
-    public static List<BankAccount> searchByBik(List<BankAccount> accounts, String bik) {
-        return search(accounts, account -> account.getBik().equals(bik));
+    public static List<BankAccount> searchByBik(AccountRegistry registry, String bik) {
+        long start = Metrics.start();
+        List<BankAccount> result = new ArrayList<>(registry.findByBik(bik));
+        Metrics.record(Operation.SEARCH_BY_BIK, start);
+        return result;
     }
 
     /**
-     * Поиск по КПП (точное совпадение)
+     * Поиск по КПП (точное совпадение, через индекс реестра)
      */
-    public static List<BankAccount> searchByKpp(List<BankAccount> accounts, String kpp) {
-        return search(accounts, account -> account.getKpp().equals(kpp));
+    public static List<BankAccount> searchByKpp(AccountRegistry registry, String kpp) {
+        long start = Metrics.start();
+        List<BankAccount> result = new ArrayList<>(registry.findByKpp(kpp));
+        Metrics.record(Operation.SEARCH_BY_KPP, start);
+        return result;
     }
 
     /**
      * Поиск по имени владельца (частичное совпадение, без учета регистра)
      */
-    public static List<BankAccount> searchByOwnerName(List<BankAccount> accounts,
+    public static List<BankAccount> searchByOwnerName(AccountRegistry registry,
                                                       String ownerName) {
-        return search(accounts, account ->
-                account.getOwnerName().toLowerCase().contains(ownerName.toLowerCase()));
+        long start = Metrics.start();
+        List<SubstringCriterion> criteria = new ArrayList<>();
+        addCriterion(criteria, registry.ownerNameSubstrings(), foldCase(ownerName));
+        List<BankAccount> result = searchBySubstrings(registry, criteria);
+        Metrics.record(Operation.SEARCH_BY_OWNER, start);
+        return result;
+    }
+
+    /**
+     * Поиск по ИНН (точное совпадение, через индекс реестра)
+     */
+    public static List<BankAccount> searchByInn(AccountRegistry registry, String inn) {
+        long start = Metrics.start();
+        List<BankAccount> result = new ArrayList<>(registry.findByInn(inn)); // счета без ИНН не индексируются
+        Metrics.record(Operation.SEARCH_BY_INN, start);
+        return result;
+    }
+
+    /**
+     * Поиск по диапазону баланса в копейках (через упорядоченный индекс, по возрастанию баланса)
+     */
+    public static List<BankAccount> searchByBalanceRange(AccountRegistry registry,
+                                                         long minBalance, long maxBalance) {
+        long start = Metrics.start();
+        List<BankAccount> result = registry.findByBalanceRange(minBalance, maxBalance);
+        Metrics.record(Operation.SEARCH_BY_BALANCE, start);
+        return result;
     }
 
     /**
-     * Поиск по ИНН (точное совпадение)
+     * Счета с наибольшим балансом (по убыванию)
      */
-    public static List<BankAccount> searchByInn(List<BankAccount> accounts, String inn) {
-        return search(accounts, account ->
-                inn.equals(account.getInn())); // ИНН может быть null
+    public static List<BankAccount> searchRichest(AccountRegistry registry, int count) {
+        long start = Metrics.start();
+        List<BankAccount> result = registry.findRichest(count);
+        Metrics.record(Operation.SEARCH_TOP, start);
+        return result;
     }
 
     /**
-     * Поиск по диапазону баланса
+     * Счета с наименьшим балансом (по возрастанию)
      */
-    public static List<BankAccount> searchByBalanceRange(List<BankAccount> accounts,
-                                                         double minBalance, double maxBalance) {
-        return search(accounts, account ->
-                account.getBalance() >= minBalance && account.getBalance() <= maxBalance);
+    public static List<BankAccount> searchPoorest(AccountRegistry registry, int count) {
+        long start = Metrics.start();
+        List<BankAccount> result = registry.findPoorest(count);
+        Metrics.record(Operation.SEARCH_TOP, start);
+        return result;
     }
 
     /**
-     * Комплексный поиск по нескольким параметрам
+     * Комплексный поиск по нескольким параметрам (частичное совпадение).
+     * Пересекает списки триграммного индекса, начиная с самого короткого
      */
-    public static List<BankAccount> advancedSearch(List<BankAccount> accounts,
+    public static List<BankAccount> advancedSearch(AccountRegistry registry,
                                                    String accountNumber, String bik,
                                                    String kpp, String ownerName) {
-        Predicate<BankAccount> condition = account -> true;
+        long start = Metrics.start();
+        List<SubstringCriterion> criteria = new ArrayList<>();
+        addCriterion(criteria, registry.accountNumberSubstrings(), accountNumber);
+        addCriterion(criteria, registry.bikSubstrings(), bik);
+        addCriterion(criteria, registry.kppSubstrings(), kpp);
+        addCriterion(criteria, registry.ownerNameSubstrings(), foldCase(ownerName));
+        List<BankAccount> result = searchBySubstrings(registry, criteria);
+        Metrics.record(Operation.SEARCH_ADVANCED, start);
+        return result;
+    }
+
+    /**
+     * Комплексный поиск с потоковым результатом для вывода больших выборок: счета проверяются
+     * по мере чтения итератора и не накапливаются в памяти. Кандидаты - самый короткий список
+     * триграммного индекса, а если все условия короче триграммы, то все счета реестра
+     * (searchIterator вместо параллельного перебора). Счета хранилища на диске выдаются
+     * после счетов в памяти (см. searchStored). Время поиска учитывается в метриках, когда итератор исчерпан
+     */
+    public static Iterator<BankAccount> advancedSearchIterator(AccountRegistry registry,
+                                                               String accountNumber, String bik,
+                                                               String kpp, String ownerName) {
+        long start = Metrics.start();
+        List<SubstringCriterion> criteria = new ArrayList<>();
+        addCriterion(criteria, registry.accountNumberSubstrings(), accountNumber);
+        addCriterion(criteria, registry.bikSubstrings(), bik);
+        addCriterion(criteria, registry.kppSubstrings(), kpp);
+        addCriterion(criteria, registry.ownerNameSubstrings(), foldCase(ownerName));
+        List<Set<BankAccount>> postingLists = postingLists(criteria);
+        Predicate<BankAccount> matchesAll = matchesAll(criteria);
 
-        if (accountNumber != null && !accountNumber.isEmpty()) {
-            condition = condition.and(account ->
-                    account.getAccountNumber().contains(accountNumber));
+        Iterator<BankAccount> inMemory;
+        if (postingLists.isEmpty()) {
+            inMemory = searchIterator(registry.getAll(), matchesAll);
+        } else {
+            inMemory = searchIterator(postingLists.get(0),
+                    account -> inAllPostingLists(account, postingLists) && matchesAll.test(account));
         }
+        return new StreamingResult(inMemory, () -> searchStored(registry, criteria, matchesAll).iterator(), start);
+    }
 
-        if (bik != null && !bik.isEmpty()) {
-            condition = condition.and(account -> account.getBik().contains(bik));
+    private static void addCriterion(List<SubstringCriterion> criteria,
+                                     SubstringIndex index, String query) {
+        if (query != null && !query.isEmpty()) {
+            criteria.add(new SubstringCriterion(index, query));
         }
+    }
+
+    private static String foldCase(String value) {
+        return value == null ? null : value.toLowerCase();
+    }
+
+    /**
+     * Поиск по набору условий "поле содержит подстроку"
+     */
+    private static List<BankAccount> searchBySubstrings(AccountRegistry registry,
+                                                        List<SubstringCriterion> criteria) {
+        List<Set<BankAccount>> postingLists = postingLists(criteria);
+        Predicate<BankAccount> matchesAll = matchesAll(criteria);
 
-        if (kpp != null && !kpp.isEmpty()) {
-            condition = condition.and(account -> account.getKpp().contains(kpp));
+        List<BankAccount> result;
+        if (postingLists.isEmpty()) {
+            // Все условия короче триграммы - индекс не помогает, остается перебор
+            result = parallelSearch(registry.getAll(), matchesAll, DEFAULT_PARALLEL_THRESHOLD, NO_LIMIT);
+        } else {
+            result = new ArrayList<>();
+            Set<BankAccount> smallest = postingLists.get(0);
+            for (BankAccount account : smallest) {
+                if (inAllPostingLists(account, postingLists) && matchesAll.test(account)) {
+                    result.add(account);
+                }
+            }
         }
+        result.addAll(searchStored(registry, criteria, matchesAll));
+        return result;
+    }
 
-        if (ownerName != null && !ownerName.isEmpty()) {
-            condition = condition.and(account ->
-                    account.getOwnerName().toLowerCase().contains(ownerName.toLowerCase()));
+    /**
+     * Счета хранилища на диске: пересечение списков ячеек триграммного индекса, начиная
+     * с самого короткого, и проверка найденных. Перебор хранилища - только если все условия
+     * короче триграммы
+     */
+    private static List<BankAccount> searchStored(AccountRegistry registry, List<SubstringCriterion> criteria,
+                                                  Predicate<BankAccount> matchesAll) {
+        List<SlotList.Snapshot> postingLists = new ArrayList<>();
+        for (SubstringCriterion criterion : criteria) {
+            postingLists.addAll(criterion.index().storedPostingsFor(criterion.query()));
+        }
+        if (postingLists.isEmpty()) {
+            return registry.findStored(matchesAll);
         }
+        postingLists.sort(Comparator.comparingInt(SlotList.Snapshot::size));
 
-        return search(accounts, condition);
+        List<BankAccount> result = new ArrayList<>();
+        SlotList.Snapshot smallest = postingLists.get(0);
+        for (int i = 0; i < smallest.size(); i++) {
+            int slot = smallest.slots()[i];
+            if (inAllSlotLists(slot, postingLists)) {
+                BankAccount account = registry.findBySlot(slot);
+                if (account != null && matchesAll.test(account)) {
+                    result.add(account);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean inAllSlotLists(int slot, List<SlotList.Snapshot> postingLists) {
+        for (int i = 1; i < postingLists.size(); i++) {
+            if (!postingLists.get(i).contains(slot)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Списки триграммного индекса для всех условий, самый короткий - первым
+     */
+    private static List<Set<BankAccount>> postingLists(List<SubstringCriterion> criteria) {
+        List<Set<BankAccount>> postingLists = new ArrayList<>();
+        for (SubstringCriterion criterion : criteria) {
+            postingLists.addAll(criterion.index().postingsFor(criterion.query()));
+        }
+        postingLists.sort(Comparator.comparingInt(Set::size));
+        return postingLists;
+    }
+
+    private static Predicate<BankAccount> matchesAll(List<SubstringCriterion> criteria) {
+        return account -> {
+            for (SubstringCriterion criterion : criteria) {
+                if (!criterion.index().matches(account, criterion.query())) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    private static boolean inAllPostingLists(BankAccount account, List<Set<BankAccount>> postingLists) {
+        for (int i = 1; i < postingLists.size(); i++) {
+            if (!postingLists.get(i).contains(account)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Часть параллельного поиска: отделяет части в подзадачи, пока остаток больше
+     * порога, проверяет остаток сама и склеивает результаты (у упорядоченных коллекций
+     * trySplit отделяет префикс, поэтому порядок обхода сохраняется)
+     */
+    private static final class SearchTask extends RecursiveTask<List<BankAccount>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Spliterator<BankAccount> accounts;
+        private final Predicate<BankAccount> condition;
+        private final int threshold;
+        private final int limit;
+        private final AtomicInteger found;      // Общий счетчик найденных (только при ограничении)
+
+        SearchTask(Spliterator<BankAccount> accounts, Predicate<BankAccount> condition,
+                   int threshold, int limit, AtomicInteger found) {
+            this.accounts = accounts;
+            this.condition = condition;
+            this.threshold = threshold;
+            this.limit = limit;
+            this.found = found;
+        }
+
+        @Override
+        protected List<BankAccount> compute() {
+            List<SearchTask> forks = new ArrayList<>();
+            Spliterator<BankAccount> prefix;
+            while (accounts.estimateSize() > threshold && (prefix = accounts.trySplit()) != null) {
+                SearchTask task = new SearchTask(prefix, condition, threshold, limit, found);
+                task.fork();
+                forks.add(task);
+            }
+
+            List<BankAccount> own = new ArrayList<>();
+            boolean limited = limit != NO_LIMIT;
+            while ((!limited || found.get() < limit) && accounts.tryAdvance(account -> {
+                if (condition.test(account)) {
+                    own.add(account);
+                    if (limited) {
+                        found.incrementAndGet();
+                    }
+                }
+            })) {
+                // Проверка по одному счету, чтобы вовремя заметить достигнутый предел
+            }
+
+            if (forks.isEmpty()) {
+                return own;
+            }
+            List<BankAccount> result = new ArrayList<>();
+            for (SearchTask fork : forks) {
+                result.addAll(fork.join());
+            }
+            result.addAll(own);
+            return result;
+        }
+    }
+
+    /**
+     * Потоковый результат: сначала счета в памяти, затем счета хранилища (их перебор
+     * начинается, только когда дочитаны счета в памяти)
+     */
+    private static final class StreamingResult implements Iterator<BankAccount> {
+        private Iterator<BankAccount> current;
+        private Supplier<Iterator<BankAccount>> stored;
+        private final long start;
+        private boolean recorded;
+
+        StreamingResult(Iterator<BankAccount> inMemory, Supplier<Iterator<BankAccount>> stored, long start) {
+            this.current = inMemory;
+            this.stored = stored;
+            this.start = start;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (current.hasNext()) {
+                return true;
+            }
+            if (stored != null) {
+                current = stored.get();
+                stored = null;
+                if (current.hasNext()) {
+                    return true;
+                }
+            }
+            if (!recorded) {
+                recorded = true;
+                Metrics.record(Operation.SEARCH_ADVANCED, start);
+            }
+            return false;
+        }
+
+        @Override
+        public BankAccount next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+
+    /**
+     * Условие поиска по подстроке в одном индексе
+     */
+    private record SubstringCriterion(SubstringIndex index, String query) {
     }
-}
\ No newline at end of file
+}
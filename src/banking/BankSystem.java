@@ -1,6 +1,16 @@
 package banking;
 
-import java.util.ArrayList;
+import banking.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Scanner;
 
@@ -8,11 +18,22 @@ import java.util.Scanner;
  * Основной класс банковской системы с консольным меню
  */
 public class BankSystem {
-    private final List<BankAccount> accounts;
+    private static final int HISTORY_PAGE_SIZE = 100;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    private final AccountRegistry accounts;
     private final Scanner scanner;
 
     public BankSystem() {
-        this.accounts = new ArrayList<>();
+        this(new AccountRegistry());
+    }
+
+    /**
+     * Консольная система поверх заданного реестра (например, общего с рабочими потоками
+     * AccountRegistry.concurrent())
+     */
+    public BankSystem(AccountRegistry accounts) {
+        this.accounts = accounts;
         this.scanner = new Scanner(System.in);
     }
 
@@ -34,6 +55,14 @@ public class BankSystem {
                 case 5 -> showTransactions();
                 case 6 -> searchAccounts();
                 case 7 -> showAllAccounts();
+                case 8 -> transferMoney();
+                case 9 -> showStatement();
+                case 10 -> showMetrics();
+                case 11 -> exportAccounts();
+                case 12 -> importAccountFile();
+                case 13 -> exportAccountFile();
+                case 14 -> showAggregates();
+                case 15 -> showCacheStats();
                 case 0 -> {
                     System.out.println("Выход из системы...");
                     return;
@@ -52,6 +81,14 @@ public class BankSystem {
         System.out.println("5. Вывести список транзакций");
         System.out.println("6. Поиск по атрибутам");
         System.out.println("7. Показать все счета");
+        System.out.println("8. Перевести деньги между счетами");
+        System.out.println("9. Выписка за период");
+        System.out.println("10. Метрики операций");
+        System.out.println("11. Выгрузить счета в файл");
+        System.out.println("12. Загрузить счета из файла (.csv или двоичный)");
+        System.out.println("13. Выгрузить счета для загрузки (.csv или двоичный)");
+        System.out.println("14. Сводные показатели");
+        System.out.println("15. Статистика кэша счетов");
         System.out.println("0. Выход");
     }
 
@@ -68,7 +105,7 @@ public class BankSystem {
             String correspondentAccount = readInput("Введите корреспондентский счет (20 цифр, опционально): ");
             String inn = readInput("Введите ИНН владельца (опционально): ");
             String ownerName = readInput("Введите имя владельца: ");
-            double initialBalance = readDoubleInput("Введите начальный баланс: ");
+            long initialBalance = readMoneyInput("Введите начальный баланс: ");
 
             // Если поля опциональные и пустые, устанавливаем null
             if (correspondentAccount.isEmpty()) correspondentAccount = null;
@@ -77,7 +114,7 @@ public class BankSystem {
             BankAccount newAccount = new BankAccount(accountNumber, bik, kpp,
                     correspondentAccount, inn, ownerName, initialBalance);
 
-            accounts.add(newAccount);
+            accounts.register(newAccount);
             System.out.println("Счет успешно открыт!");
             System.out.println(newAccount);
 
@@ -97,13 +134,13 @@ public class BankSystem {
         BankAccount account = findAccountByNumber();
         if (account == null) return;
 
-        double amount = readDoubleInput("Введите сумму для пополнения: ");
+        long amount = readMoneyInput("Введите сумму для пополнения: ");
 
         try {
             account.deposit(amount);
-            System.out.printf("Счет успешно пополнен на %.2f руб.\n", amount);
-            System.out.printf("Текущий баланс: %.2f руб.\n", account.getBalance());
-        } catch (IllegalArgumentException e) {
+            System.out.printf("Счет успешно пополнен на %s руб.\n", Money.format(amount));
+            System.out.printf("Текущий баланс: %s руб.\n", Money.format(account.getBalance()));
+        } catch (IllegalArgumentException | IllegalStateException | ArithmeticException e) {
             System.out.println("Ошибка: " + e.getMessage());
         }
     }
@@ -117,17 +154,47 @@ public class BankSystem {
         BankAccount account = findAccountByNumber();
         if (account == null) return;
 
-        double amount = readDoubleInput("Введите сумму для снятия: ");
+        long amount = readMoneyInput("Введите сумму для снятия: ");
 
         try {
             boolean success = account.withdraw(amount);
             if (success) {
-                System.out.printf("Со счета снято %.2f руб.\n", amount);
-                System.out.printf("Текущий баланс: %.2f руб.\n", account.getBalance());
+                System.out.printf("Со счета снято %s руб.\n", Money.format(amount));
+                System.out.printf("Текущий баланс: %s руб.\n", Money.format(account.getBalance()));
             } else {
                 System.out.println("Недостаточно средств на счете!");
             }
-        } catch (IllegalArgumentException e) {
+        } catch (IllegalArgumentException | IllegalStateException | ArithmeticException e) {
+            System.out.println("Ошибка: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Перевод денег между счетами
+     */
+    private void transferMoney() {
+        System.out.println("\n--- ПЕРЕВОД МЕЖДУ СЧЕТАМИ ---");
+
+        System.out.println("Счет списания.");
+        BankAccount from = findAccountByNumber();
+        if (from == null) return;
+
+        System.out.println("Счет зачисления.");
+        BankAccount to = findAccountByNumber();
+        if (to == null) return;
+
+        long amount = readMoneyInput("Введите сумму перевода: ");
+
+        try {
+            boolean success = BankAccount.transfer(from, to, amount);
+            if (success) {
+                System.out.printf("Переведено %s руб. со счета %s на счет %s\n",
+                        Money.format(amount), from.getAccountNumber(), to.getAccountNumber());
+                System.out.printf("Баланс счета списания: %s руб.\n", Money.format(from.getBalance()));
+            } else {
+                System.out.println("Недостаточно средств на счете!");
+            }
+        } catch (IllegalArgumentException | IllegalStateException | ArithmeticException e) {
             System.out.println("Ошибка: " + e.getMessage());
         }
     }
@@ -141,7 +208,7 @@ public class BankSystem {
         BankAccount account = findAccountByNumber();
         if (account == null) return;
 
-        System.out.printf("Текущий баланс: %.2f руб.\n", account.getBalance());
+        System.out.printf("Текущий баланс: %s руб.\n", Money.format(account.getBalance()));
     }
 
     /**
@@ -153,16 +220,73 @@ public class BankSystem {
         BankAccount account = findAccountByNumber();
         if (account == null) return;
 
-        List<Transaction> transactions = account.getTransactions();
-
-        if (transactions.isEmpty()) {
+        printStoredHistoryNote(account);
+        if (account.getTransactionCount() == 0) {
             System.out.println("Транзакций не найдено.");
             return;
         }
 
         System.out.println("История транзакций для счета " + account.getAccountNumber() + ":");
-        for (Transaction transaction : transactions) {
-            System.out.println(transaction);
+        // Читаем историю страницами, не копируя ее целиком
+        try (PagedWriter out = new PagedWriter(System.out)) {
+            int offset = 0;
+            List<Transaction> page;
+            while (!(page = account.getTransactions(offset, HISTORY_PAGE_SIZE)).isEmpty()) {
+                for (Transaction transaction : page) {
+                    out.appendTransaction(transaction).newLine();
+                }
+                offset += page.size();
+            }
+        }
+    }
+
+    /**
+     * Выписка по счету за период с отбором по типу операции и итогами по типам
+     */
+    private void showStatement() {
+        System.out.println("\n--- ВЫПИСКА ЗА ПЕРИОД ---");
+
+        BankAccount account = findAccountByNumber();
+        if (account == null) return;
+
+        LocalDateTime from = readDateInput("Начало периода (дд.мм.гггг): ").atStartOfDay();
+        LocalDateTime to = readDateInput("Конец периода включительно (дд.мм.гггг): ").plusDays(1).atStartOfDay();
+
+        printStoredHistoryNote(account);
+        TransactionType[] types = TransactionType.values();
+        System.out.println("0. Все операции");
+        for (int i = 0; i < types.length; i++) {
+            System.out.println((i + 1) + ". " + types[i].getDescription());
+        }
+        int choice = readIntInput("Тип операции: ");
+        if (choice < 0 || choice > types.length) {
+            System.out.println("Неверный выбор.");
+            return;
+        }
+        TransactionType type = choice == 0 ? null : types[choice - 1];
+
+        int offset = 0;
+        try (PagedWriter out = new PagedWriter(System.out)) {
+            List<Transaction> page;
+            while (!(page = account.getTransactions(type, from, to, offset, HISTORY_PAGE_SIZE)).isEmpty()) {
+                for (Transaction transaction : page) {
+                    out.appendTransaction(transaction).newLine();
+                }
+                offset += page.size();
+            }
+        }
+        if (offset == 0) {
+            System.out.println("Транзакций за период не найдено.");
+        }
+
+        System.out.println("Итоги за период:");
+        for (TransactionType totalType : types) {
+            if (type != null && totalType != type) continue;
+            int count = account.countTransactions(totalType, from, to);
+            if (count > 0) {
+                System.out.printf("%s: %d на сумму %s руб.\n", totalType.getDescription(), count,
+                        Money.format(account.sumTransactions(totalType, from, to)));
+            }
         }
     }
 
@@ -178,43 +302,55 @@ public class BankSystem {
         System.out.println("5. По ИНН");
         System.out.println("6. По диапазону баланса");
         System.out.println("7. Комплексный поиск");
+        System.out.println("8. Счета с наибольшим балансом");
+        System.out.println("9. Счета с наименьшим балансом");
 
         int choice = readIntInput("Выберите тип поиска: ");
 
-        List<BankAccount> results;
+        // Подстрочный поиск выдает счета по мере нахождения, остальные - готовым списком
+        Iterator<BankAccount> results;
 
         switch (choice) {
             case 1 -> {
                 String accountNumber = readInput("Введите номер счета: ");
-                results = BankAccountSearch.searchByAccountNumber(accounts, accountNumber);
+                results = BankAccountSearch.searchByAccountNumber(accounts, accountNumber).iterator();
             }
             case 2 -> {
                 String bik = readInput("Введите БИК: ");
-                results = BankAccountSearch.searchByBik(accounts, bik);
+                results = BankAccountSearch.searchByBik(accounts, bik).iterator();
             }
             case 3 -> {
                 String kpp = readInput("Введите КПП: ");
-                results = BankAccountSearch.searchByKpp(accounts, kpp);
+                results = BankAccountSearch.searchByKpp(accounts, kpp).iterator();
             }
             case 4 -> {
                 String ownerName = readInput("Введите имя владельца: ");
-                results = BankAccountSearch.searchByOwnerName(accounts, ownerName);
+                results = BankAccountSearch.advancedSearchIterator(accounts, null, null, null, ownerName);
             }
             case 5 -> {
                 String inn = readInput("Введите ИНН: ");
-                results = BankAccountSearch.searchByInn(accounts, inn);
+                results = BankAccountSearch.searchByInn(accounts, inn).iterator();
             }
             case 6 -> {
-                double minBalance = readDoubleInput("Введите минимальный баланс: ");
-                double maxBalance = readDoubleInput("Введите максимальный баланс: ");
-                results = BankAccountSearch.searchByBalanceRange(accounts, minBalance, maxBalance);
+                long minBalance = readMoneyInput("Введите минимальный баланс: ");
+                long maxBalance = readMoneyInput("Введите максимальный баланс: ");
+                results = BankAccountSearch.searchByBalanceRange(accounts, minBalance, maxBalance).iterator();
             }
             case 7 -> {
                 String accountNumber = readInput("Введите номер счета (частично или полностью): ");
                 String bik = readInput("Введите БИК (частично или полностью): ");
                 String kpp = readInput("Введите КПП (частично или полностью): ");
                 String ownerName = readInput("Введите имя владельца (частично или полностью): ");
-                results = BankAccountSearch.advancedSearch(accounts, accountNumber, bik, kpp, ownerName);
+                results = BankAccountSearch.advancedSearchIterator(accounts, accountNumber, bik, kpp,
+                        ownerName);
+            }
+            case 8 -> {
+                int count = readIntInput("Введите количество счетов: ");
+                results = BankAccountSearch.searchRichest(accounts, count).iterator();
+            }
+            case 9 -> {
+                int count = readIntInput("Введите количество счетов: ");
+                results = BankAccountSearch.searchPoorest(accounts, count).iterator();
             }
             default -> {
                 System.out.println("Неверный выбор.");
@@ -236,42 +372,181 @@ public class BankSystem {
             return;
         }
 
-        for (int i = 0; i < accounts.size(); i++) {
-            System.out.printf("%d. %s\n", i + 1, accounts.get(i));
-            System.out.println("---");
+        try (PagedWriter out = new PagedWriter(System.out)) {
+            long index = 1;
+            for (BankAccount account : accounts.allAccounts()) {
+                out.append(index++).append(". ").appendAccount(account).newLine();
+                out.append("---").newLine();
+            }
         }
     }
 
+    /**
+     * Выгрузка всех счетов в текстовый файл (потоково, страницами)
+     */
+    private void exportAccounts() {
+        System.out.println("\n--- ВЫГРУЗКА СЧЕТОВ ---");
+        String fileName = readInput("Введите имя файла: ");
+
+        long startNanos = System.nanoTime();
+        try (PagedWriter out = PagedWriter.open(Path.of(fileName))) {
+            long exported = 0;
+            for (BankAccount account : accounts.allAccounts()) {
+                out.appendAccount(account).newLine();
+                out.append("---").newLine();
+                exported++;
+            }
+            out.flush();
+            System.out.printf("Выгружено счетов: %d за %.2f с\n", exported,
+                    (System.nanoTime() - startNanos) / 1e9);
+        } catch (IOException | UncheckedIOException | InvalidPathException e) {
+            System.out.println("Ошибка выгрузки: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Массовая загрузка счетов (см. AccountFileFormat), отклоненные записи - в файл рядом
+     */
+    private void importAccountFile() {
+        System.out.println("\n--- ЗАГРУЗКА СЧЕТОВ ---");
+        String fileName = readInput("Введите имя файла: ");
+
+        try {
+            Path input = Path.of(fileName);
+            Path rejections = Path.of(fileName + ".rejections.csv");
+            AccountImporter importer = new AccountImporter(accounts, Runtime.getRuntime().availableProcessors());
+            System.out.println(importer.importAccounts(input, rejections));
+            System.out.println("Отклоненные записи: " + rejections);
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("Ошибка загрузки: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Загрузка прервана.");
+        }
+    }
+
+    /**
+     * Выгрузка счетов в формате для AccountImporter
+     */
+    private void exportAccountFile() {
+        System.out.println("\n--- ВЫГРУЗКА СЧЕТОВ ДЛЯ ЗАГРУЗКИ ---");
+        String fileName = readInput("Введите имя файла (.csv - CSV, иначе двоичный): ");
+
+        try {
+            System.out.println(AccountExporter.export(accounts.allAccounts(), Path.of(fileName)));
+        } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+            System.out.println("Ошибка выгрузки: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Сводные показатели без перебора счетов (см. AccountAggregates)
+     */
+    private void showAggregates() {
+        System.out.println("\n--- СВОДНЫЕ ПОКАЗАТЕЛИ ---");
+        System.out.println("1. Итоги по системе");
+        System.out.println("2. Итоги по БИК");
+        System.out.println("3. Итоги по ИНН");
+        System.out.println("4. Объемы операций за день");
+
+        AccountAggregates aggregates = accounts.getAggregates();
+        switch (readIntInput("Выберите показатель: ")) {
+            case 1 -> System.out.printf("Счетов: %d | Общий баланс: %s руб.\n",
+                    aggregates.getAccountCount(), Money.format(aggregates.getTotalBalance()));
+            case 2 -> {
+                String bik = readInput("Введите БИК: ");
+                System.out.printf("Счетов: %d | Баланс: %s руб.\n", aggregates.getBikAccountCount(bik),
+                        Money.format(aggregates.getBikBalance(bik)));
+            }
+            case 3 -> {
+                String inn = readInput("Введите ИНН: ");
+                System.out.printf("Счетов: %d | Баланс: %s руб.\n", aggregates.getInnAccountCount(inn),
+                        Money.format(aggregates.getInnBalance(inn)));
+            }
+            case 4 -> {
+                LocalDate day = readDateInput("Дата (дд.мм.гггг): ");
+                boolean found = false;
+                for (TransactionType type : TransactionType.values()) {
+                    long count = aggregates.getDailyCount(day, type);
+                    if (count > 0) {
+                        System.out.printf("%s: %d на сумму %s руб.\n", type.getDescription(), count,
+                                Money.format(aggregates.getDailyVolume(day, type)));
+                        found = true;
+                    }
+                }
+                if (!found) {
+                    System.out.println("Операций за день не найдено.");
+                }
+            }
+            default -> System.out.println("Неверный выбор.");
+        }
+    }
+
+    /**
+     * Число операций и перцентили задержек с момента запуска
+     */
+    private void showMetrics() {
+        System.out.println("\n--- МЕТРИКИ ОПЕРАЦИЙ ---");
+        System.out.print(Metrics.report());
+    }
+
+    /**
+     * Попадания, промахи и вытеснения кэша счетов
+     */
+    private void showCacheStats() {
+        System.out.println("\n--- СТАТИСТИКА КЭША СЧЕТОВ ---");
+        AccountCache store = accounts.getStore();
+        if (store == null) {
+            System.out.println("Хранилище счетов не подключено (параметр --store).");
+            return;
+        }
+        System.out.println(store.getStats());
+    }
+
     /**
      * Вспомогательный метод для поиска счета по номеру
      */
     private BankAccount findAccountByNumber() {
         String accountNumber = readInput("Введите номер счета: ");
 
-        List<BankAccount> foundAccounts = BankAccountSearch.searchByAccountNumber(accounts, accountNumber);
+        BankAccount account = accounts.findByNumber(accountNumber);
 
-        if (foundAccounts.isEmpty()) {
+        if (account == null) {
             System.out.println("Счет с номером " + accountNumber + " не найден.");
-            return null;
         }
 
-        return foundAccounts.get(0);
+        return account;
+    }
+
+    /**
+     * Предупреждение о неполной истории счета из хранилища на диске
+     */
+    private void printStoredHistoryNote(BankAccount account) {
+        if (accounts.isStored(account)) {
+            System.out.println("Счет из хранилища на диске: история содержит только операции " +
+                    "с момента запуска программы.");
+        }
     }
 
     /**
-     * Отображение результатов поиска
+     * Отображение результатов поиска по мере чтения итератора, без накопления списка
      */
-    private void displaySearchResults(List<BankAccount> results) {
-        if (results.isEmpty()) {
+    private void displaySearchResults(Iterator<BankAccount> results) {
+        if (!results.hasNext()) {
             System.out.println("Счета не найдены.");
             return;
         }
 
-        System.out.println("\nНайдено счетов: " + results.size());
-        for (BankAccount account : results) {
-            System.out.println(account);
-            System.out.println("---");
+        System.out.println();
+        int found = 0;
+        try (PagedWriter out = new PagedWriter(System.out)) {
+            while (results.hasNext()) {
+                out.appendAccount(results.next()).newLine();
+                out.append("---").newLine();
+                found++;
+            }
         }
+        System.out.println("Найдено счетов: " + found);
     }
 
     // Вспомогательные методы для ввода данных
@@ -291,13 +566,27 @@ public class BankSystem {
         }
     }
 
-    private double readDoubleInput(String prompt) {
+    private LocalDate readDateInput(String prompt) {
+        while (true) {
+            try {
+                System.out.print(prompt);
+                return LocalDate.parse(scanner.nextLine().trim(), DATE_FORMAT);
+            } catch (DateTimeParseException e) {
+                System.out.println("Ошибка: введите дату в формате дд.мм.гггг.");
+            }
+        }
+    }
+
+    /**
+     * Ввод суммы в рублях с точностью до копейки, возвращает сумму в копейках
+     */
+    private long readMoneyInput(String prompt) {
         while (true) {
             try {
                 System.out.print(prompt);
-                return Double.parseDouble(scanner.nextLine().trim());
+                return Money.parse(scanner.nextLine());
             } catch (NumberFormatException e) {
-                System.out.println("Ошибка: введите число.");
+                System.out.println("Ошибка: введите сумму (например, 1500.50).");
             }
         }
     }
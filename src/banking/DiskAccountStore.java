@@ -0,0 +1,313 @@
+package banking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище счетов на диске: реквизиты и дата открытия каждого счета - в ячейке фиксированного
+ * размера SLOT_BYTES (запись двоичного формата AccountFileFormat), в памяти - только таблица
+ * "номер -> ячейка" (AccountNumberTable). Последние STATE_BYTES ячейки - текущее состояние:
+ * баланс и LSN последней отраженной в нем записи журнала. Номер счета каждой ячейки
+держится в памяти упакованным (еще 9 байт на счет), чтобы индексы по номерам ячеек
+не читали файл ради номера. Состояние обновляется на месте одной
+ * записью, поэтому баланс и LSN в ячейке всегда согласованы и при воспроизведении журнала
+ * применяются только записи новее LSN ячейки. История операций в хранилище не записывается:
+ее держит AccountCache.
+ * <p>
+ * Запись, не помещающаяся в ячейку (длинное имя владельца), целиком дописывается в файл
+ * переполнения рядом с хранилищем (имя файла + ".overflow"), а в ячейке остаются ее начало
+ * (с номером счета - для построения таблицы номеров) и позиция полной записи перед состоянием.
+ * Поэтому хранилище принимает те же имена владельцев, что и остальные режимы.
+ * <p>
+ * Таблица номеров защищена блокировкой чтения-записи: find можно вызывать из любых потоков
+ * одновременно с add, а add - из одного потока за раз (AccountCache - под блокировкой добавления).
+ * load, forEach и writeState - позиционные операции канала, их можно вызывать из любых потоков
+ */
+public class DiskAccountStore implements Closeable {
+    static final int SLOT_BYTES = 256;
+
+    private static final int MAGIC = 0x4253544F;    // "BSTO"
+    private static final int VERSION = 3;      // 2: баланс и LSN в конце ячейки; 3: файл переполнения
+    private static final int HEADER_BYTES = 16;
+    private static final int STATE_BYTES = 2 * Long.BYTES;
+    private static final int STATE_OFFSET = SLOT_BYTES - STATE_BYTES;
+    private static final int OVERFLOW_OFFSET = STATE_OFFSET - Long.BYTES;  // Позиция записи + 1, 0 - нет
+    private static final String OVERFLOW_SUFFIX = ".overflow";
+    private static final int SCAN_BUFFER_BYTES = SLOT_BYTES * 4096;
+
+    private final FileChannel channel;
+    private final FileChannel overflow;
+    private final AccountNumberTable slots;
+    // Номер счета по ячейке: первые 2 цифры и остальные 18 числом, как в AccountNumberTable
+    private byte[] numberHighs;
+    private long[] numberLows;
+    private final ReentrantReadWriteLock slotsLock = new ReentrantReadWriteLock();
+    private volatile int size;             // Ячейка публикуется после записи
+    private long overflowEnd;
+
+    private DiskAccountStore(FileChannel channel, FileChannel overflow, AccountNumberTable slots,
+                             byte[] numberHighs, long[] numberLows, int size) throws IOException {
+        this.channel = channel;
+        this.overflow = overflow;
+        this.slots = slots;
+        this.numberHighs = numberHighs;
+        this.numberLows = numberLows;
+        this.size = size;
+        this.overflowEnd = overflow.size(); // Хвост после сбоя ни на что не ссылается и перезаписывается
+    }
+
+    /**
+     * Открытие хранилища (файл создается при отсутствии); таблица номеров строится
+     * одним последовательным чтением файла
+     */
+    public static DiskAccountStore open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel overflow = null;
+        try {
+            overflow = FileChannel.open(file.resolveSibling(file.getFileName() + OVERFLOW_SUFFIX),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                        .putInt(MAGIC).putInt(VERSION).putInt(SLOT_BYTES);
+                header.clear();
+                channel.write(header, 0);
+                overflow.truncate(0);
+                return new DiskAccountStore(channel, overflow, new AccountNumberTable(16),
+                        new byte[16], new long[16], 0);
+            }
+            readHeader(channel);
+            return scan(channel, overflow);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            if (overflow != null) {
+                overflow.close();
+            }
+            throw e;
+        }
+    }
+
+    private static void readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+            throw new IOException("Файл не является хранилищем счетов");
+        }
+        int version = header.getInt();
+        int slotBytes = header.getInt();
+        if (version != VERSION || slotBytes != SLOT_BYTES) {
+            throw new IOException("Неподдерживаемый формат хранилища счетов: версия " + version);
+        }
+    }
+
+    /**
+     * Построение таблицы номеров. Ячейка без записи (оборванная запись в конце файла)
+     * завершает хранилище
+     */
+    private static DiskAccountStore scan(FileChannel channel, FileChannel overflow) throws IOException {
+        int count = (int) ((channel.size() - HEADER_BYTES) / SLOT_BYTES);
+        AccountNumberTable slots = new AccountNumberTable(count);
+        byte[] numberHighs = new byte[Math.max(16, count)];
+        long[] numberLows = new long[numberHighs.length];
+        ByteBuffer buffer = ByteBuffer.allocateDirect(SCAN_BUFFER_BYTES);
+        int slot = 0;
+        while (slot < count) {
+            buffer.clear();
+            long position = HEADER_BYTES + (long) slot * SLOT_BYTES;
+            int bytes = (int) Math.min(SCAN_BUFFER_BYTES, (long) (count - slot) * SLOT_BYTES);
+            buffer.limit(bytes);
+            while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+                // Читаем до заполнения буфера
+            }
+            buffer.flip();
+            for (int offset = 0; offset + SLOT_BYTES <= buffer.limit(); offset += SLOT_BYTES) {
+                if (buffer.getShort(offset) == 0) {
+                    return new DiskAccountStore(channel, overflow, slots, numberHighs, numberLows, slot);
+                }
+                numberHighs[slot] = buffer.get(offset + AccountFileFormat.LENGTH_BYTES);
+                numberLows[slot] = buffer.getLong(offset + AccountFileFormat.LENGTH_BYTES + 1);
+                slots.put(number(numberHighs[slot], numberLows[slot]), slot);
+                slot++;
+            }
+        }
+        return new DiskAccountStore(channel, overflow, slots, numberHighs, numberLows, slot);
+    }
+
+    private static String number(byte high, long low) {
+        char[] digits = new char[AccountValidator.ACCOUNT_NUMBER_LENGTH];
+        AccountValidator.writeDigits(digits, 0, 2, high);
+        AccountValidator.writeDigits(digits, 2, AccountValidator.ACCOUNT_NUMBER_LENGTH - 2, low);
+        return new String(digits);
+    }
+
+    /**
+     * Номер ячейки счета или -1
+     */
+    public int find(String accountNumber) {
+        slotsLock.readLock().lock();
+        try {
+            return slots.get(accountNumber);
+        } finally {
+            slotsLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Номер счета в ячейке (без чтения файла)
+     */
+    public String accountNumber(int slot) {
+        slotsLock.readLock().lock();
+        try {
+            return number(numberHighs[slot], numberLows[slot]);
+        } finally {
+            slotsLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Запись нового счета в следующую ячейку (вызывается под блокировкой счета);
+     * запись длиннее ячейки сначала дописывается в файл переполнения
+     *
+     * @return номер ячейки
+     * @throws IllegalArgumentException если счет уже есть
+     */
+    public int add(BankAccount account) {
+        if (find(account.getAccountNumber()) >= 0) {
+            throw new IllegalArgumentException("Счет с номером " + account.getAccountNumber() + " уже существует");
+        }
+        ByteBuffer record = ByteBuffer.allocate(AccountFileFormat.LENGTH_BYTES + AccountFileFormat.MAX_RECORD_BYTES);
+        AccountFileFormat.putBinary(record, account, account.getBalance());
+        ByteBuffer slotBytes = ByteBuffer.allocate(SLOT_BYTES);
+        if (record.position() > OVERFLOW_OFFSET) {
+            record.flip();
+            long position = overflowEnd;
+            overflowEnd += record.remaining();
+            write(overflow, record.duplicate(), position);
+            slotBytes.put(record.limit(OVERFLOW_OFFSET)).putLong(OVERFLOW_OFFSET, position + 1);
+        } else {
+            slotBytes.put(record.flip());
+        }
+        slotBytes.putLong(STATE_OFFSET, account.getBalance()).putLong(STATE_OFFSET + Long.BYTES, account.getLastLsn());
+        slotBytes.clear(); // Ячейка целиком, промежуток до состояния - нули
+        int slot = size;
+        write(channel, slotBytes, slotPosition(slot));
+        String accountNumber = account.getAccountNumber();
+        slotsLock.writeLock().lock();
+        try {
+            slots.put(accountNumber, slot);
+            if (slot == numberHighs.length) {
+                numberHighs = Arrays.copyOf(numberHighs, slot * 2);
+                numberLows = Arrays.copyOf(numberLows, numberHighs.length);
+            }
+            numberHighs[slot] = (byte) AccountValidator.parseDigits(accountNumber, 0, 2);
+            numberLows[slot] = AccountValidator.parseDigits(accountNumber, 2, AccountValidator.ACCOUNT_NUMBER_LENGTH);
+        } finally {
+            slotsLock.writeLock().unlock();
+        }
+        size++;
+        return slot;
+    }
+
+    /**
+     * Счет из ячейки: новый объект с пустой историей, балансом и LSN из состояния ячейки
+     */
+    public BankAccount load(int slot) {
+        return load(slot, new TransactionHistory());
+    }
+
+    /**
+     * Счет из ячейки с заданной историей (история счета, вытесненного из памяти)
+     */
+    BankAccount load(int slot, TransactionHistory history) {
+        ByteBuffer slotBytes = read(channel, SLOT_BYTES, slotPosition(slot));
+        int length = Short.toUnsignedInt(slotBytes.getShort(0));
+        long overflowPosition = slotBytes.getLong(OVERFLOW_OFFSET) - 1;
+        ByteBuffer body = overflowPosition < 0
+                ? slotBytes.slice(AccountFileFormat.LENGTH_BYTES, length)
+                : read(overflow, length, overflowPosition + AccountFileFormat.LENGTH_BYTES);
+        AccountFileFormat.Row row = AccountFileFormat.getBinary(body);
+        return BankAccount.restore(row.accountNumber(), row.bik(), row.kpp(), row.correspondentAccount(),
+                row.inn(), row.ownerName(), slotBytes.getLong(STATE_OFFSET),
+                LocalDate.ofEpochDay(row.openEpochDay()).toString(),
+                history, slotBytes.getLong(STATE_OFFSET + Long.BYTES));
+    }
+
+    /**
+     * Обход всех счетов хранилища (каждый счет - новый объект, см. load)
+     */
+    public void forEach(Consumer<BankAccount> action) {
+        int count = size;
+        for (int slot = 0; slot < count; slot++) {
+            action.accept(load(slot));
+        }
+    }
+
+    /**
+     * Запись баланса счета и LSN последней отраженной в нем записи журнала в его ячейку
+     */
+    public void writeState(int slot, long balance, long lastLsn) {
+        ByteBuffer state = ByteBuffer.allocate(STATE_BYTES).putLong(0, balance).putLong(Long.BYTES, lastLsn);
+        write(channel, state, slotPosition(slot) + STATE_OFFSET);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Сброс записанного на диск
+     */
+    public void flush() {
+        try {
+            overflow.force(false);
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            overflow.close();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void write(FileChannel target, ByteBuffer buffer, long position) {
+        try {
+            while (buffer.hasRemaining()) {
+                position += target.write(buffer, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel source, int bytes, long position) {
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        try {
+            while (buffer.hasRemaining() && source.read(buffer, position + buffer.position()) >= 0) {
+                // Читаем до заполнения буфера
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.flip();
+    }
+
+    private static long slotPosition(int slot) {
+        return HEADER_BYTES + (long) slot * SLOT_BYTES;
+    }
+}
@@ -0,0 +1,689 @@
+package banking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал упреждающей записи: каждое открытие счета, пополнение, снятие и перевод
+ * дописывается в сегменты journal-&lt;первый LSN&gt;.log. Запись в файл и fsync выполняет
+ * фоновый поток группами (group commit): раз в flushIntervalMillis или по накоплении
+ * flushEveryRecords записей. Сами операции fsync не ждут (асинхронная фиксация): сервер
+ * запросов перед ответом на пакет изменений вызывает sync (см. banking.server.RequestHandler),
+ * а консоль и пакетный режим сообщают о проведенной операции сразу, и при сбое у них теряется
+ * не более одной группы - окно до flushIntervalMillis или flushEveryRecords записей.
+ * <p>
+ * Формат записи: длина (int), CRC32 (int), LSN (long), тип (byte), данные.
+ * Записи операций несут идентификатор запроса клиента, а итог запроса с идентификатором
+ * пишется отдельной записью (см. RequestDeduplicator): воспроизведение восстанавливает окно повторов.
+ * При открытии загружается последний снимок (см. SnapshotManager) и воспроизводится хвост
+ * журнала после него, оборванная последняя запись отбрасывается
+ */
+public class Journal implements AccountListener, Closeable {
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final int HEADER_SIZE = 8;            // Длина + CRC32
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+    private static final int BUFFER_CAPACITY = 1 << 20;
+    private static final long SEGMENT_BYTES = 64L << 20;
+
+    // Типы записей
+    private static final byte OPEN = 1;
+    private static final byte DEPOSIT = 2;
+    private static final byte WITHDRAWAL = 3;
+    private static final byte TRANSFER = 4;
+    private static final byte REQUEST = 5;
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final Path directory;
+    private final long flushIntervalNanos;
+    private final int flushEveryRecords;
+    private final long segmentBytes;
+    private final ReplayReport replayReport;
+
+    // Текущий сегмент: меняется только фоновым потоком
+    private FileChannel channel;
+    private long segmentSize;
+    private volatile long segmentFirstLsn;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushRequested = lock.newCondition();
+    private final Condition flushCompleted = lock.newCondition();
+    private final ByteBuffer scratch = ByteBuffer.allocate(HEADER_SIZE + MAX_RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer active = ByteBuffer.allocate(BUFFER_CAPACITY);
+    private ByteBuffer flushing = ByteBuffer.allocate(BUFFER_CAPACITY);
+    private long activeFirstLsn;
+    private int pendingRecords;
+    private boolean syncRequested;
+    private long nextLsn;
+    private long appendedLsn;
+    private long durableLsn;
+    private volatile boolean closed;         // Читается без блокировки в beforeChange
+    private volatile IOException failure;
+    private final Thread flusher;
+
+    private Journal(Path directory, Segment lastSegment, long lastLsn, long flushIntervalMillis,
+                    int flushEveryRecords, long segmentBytes, ReplayReport replayReport) throws IOException {
+        this.directory = directory;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.flushEveryRecords = flushEveryRecords;
+        this.segmentBytes = segmentBytes;
+        this.replayReport = replayReport;
+        this.nextLsn = lastLsn + 1;
+        this.appendedLsn = lastLsn;
+        this.durableLsn = lastLsn;
+
+        if (lastSegment != null) {
+            this.channel = FileChannel.open(lastSegment.path(), StandardOpenOption.WRITE);
+            this.segmentSize = lastSegment.validBytes();
+            this.segmentFirstLsn = lastSegment.firstLsn();
+            channel.truncate(segmentSize); // Отбрасываем оборванную запись
+            channel.position(segmentSize);
+        } else {
+            openSegment(nextLsn);
+        }
+
+        this.flusher = new Thread(this::flushLoop, "journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Открытие журнала в каталоге: загрузка последнего снимка, воспроизведение журнала
+     * после него в реестр и подписка на дальнейшие изменения счетов реестра
+     *
+     * @param flushIntervalMillis максимальная задержка fsync
+     * @param flushEveryRecords   число записей, после которого fsync выполняется сразу
+     */
+    public static Journal open(Path directory, AccountRegistry registry,
+                               long flushIntervalMillis, int flushEveryRecords) throws IOException {
+        return open(directory, registry, flushIntervalMillis, flushEveryRecords, SEGMENT_BYTES);
+    }
+
+    /**
+     * Открытие журнала с заданным размером сегмента (в тестах - чтобы сегменты сменялись часто)
+     */
+    static Journal open(Path directory, AccountRegistry registry, long flushIntervalMillis,
+                        int flushEveryRecords, long segmentBytes) throws IOException {
+        if (flushIntervalMillis <= 0 || flushEveryRecords <= 0 || segmentBytes <= 0) {
+            throw new IllegalArgumentException(
+                    "Параметры group commit и размер сегмента должны быть положительными");
+        }
+        Files.createDirectories(directory);
+
+        long startNanos = System.nanoTime();
+        // Восстановленные счета и операции не относятся к дневным объемам этого запуска
+        registry.getAggregates().setRecovering(true);
+        SnapshotManager.LoadedSnapshot snapshot;
+        long lastLsn;
+        long records = 0;
+        Segment lastSegment = null;
+        try {
+            snapshot = SnapshotManager.loadLatest(directory, registry);
+            // Счета снимка могут нести LSN записей, не дошедших до диска до сбоя: новые записи
+            // должны получить LSN больше них, иначе следующее воспроизведение их пропустит
+            lastLsn = Math.max(snapshot.lsn(), snapshot.maxAccountLsn());
+
+            List<Segment> segments = listSegments(directory);
+            for (int i = 0; i < segments.size(); i++) {
+                boolean last = i == segments.size() - 1;
+                Segment segment = replaySegment(segments.get(i), registry, snapshot.lsn());
+                if (!last && segment.validBytes() != Files.size(segment.path())) {
+                    throw new IllegalStateException("Сегмент журнала поврежден: " + segment.path());
+                }
+                records += segment.records();
+                lastLsn = Math.max(lastLsn, segment.lastLsn());
+                lastSegment = segment;
+            }
+        } finally {
+            registry.getAggregates().setRecovering(false);
+        }
+
+        ReplayReport report = new ReplayReport(snapshot.accounts(), snapshot.lsn(), records, lastLsn,
+                System.nanoTime() - startNanos);
+        Journal journal = new Journal(directory, lastSegment, lastLsn, flushIntervalMillis,
+                flushEveryRecords, segmentBytes, report);
+        registry.addListener(journal);
+        registry.getRequestDeduplicator().setJournal(journal);
+        if (registry.getStore() != null) {
+            registry.getStore().setJournal(journal);
+        }
+        return journal;
+    }
+
+    /**
+     * Итоги загрузки снимка и воспроизведения журнала при открытии
+     */
+    public ReplayReport getReplayReport() {
+        return replayReport;
+    }
+
+    /**
+     * LSN последней записи, сохраненной на диск (fsync)
+     */
+    long getDurableLsn() {
+        lock.lock();
+        try {
+            return durableLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * LSN последней записи, принятой журналом
+     */
+    public long getAppendedLsn() {
+        lock.lock();
+        try {
+            return appendedLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Запись событий реестра
+
+    /**
+     * Отказ в операции, если журнал закрыт или перестал писаться: проверка идет до изменения
+     * счета, поэтому клиент получает ошибку только для непримененной операции
+     */
+    @Override
+    public void beforeChange(BankAccount account) {
+        if (closed) {
+            throw new IllegalStateException("Журнал закрыт, операция не проведена", failure);
+        }
+    }
+
+    @Override
+    public void onAccountOpened(BankAccount account) {
+        lock.lock();
+        try {
+            if (closed) {
+                return; // Журнал отказал после проверки: см. endRecord
+            }
+            ByteBuffer record = beginRecord(OPEN, account.getOpeningTransaction().getTimestamp());
+            putString(record, account.getAccountNumber());
+            putString(record, account.getBik());
+            putString(record, account.getKpp());
+            putString(record, account.getCorrespondentAccount());
+            putString(record, account.getInn());
+            putString(record, account.getOwnerName());
+            record.putLong(account.getBalance());
+            long lsn = endRecord();
+            if (lsn > 0) {
+                account.setLastLsn(lsn);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onTransaction(BankAccount account, Transaction transaction) {
+        byte type = switch (transaction.getType()) {
+            case DEPOSIT -> DEPOSIT;
+            case WITHDRAWAL -> WITHDRAWAL;
+            default -> throw new IllegalArgumentException(
+                    "Операция не журналируется отдельно: " + transaction.getType());
+        };
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            ByteBuffer record = beginRecord(type, transaction.getTimestamp());
+            putString(record, account.getAccountNumber());
+            record.putLong(transaction.getAmount());
+            putString(record, transaction.getRequestId());
+            long lsn = endRecord();
+            if (lsn > 0) {
+                account.setLastLsn(lsn);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onTransfer(BankAccount from, BankAccount to, Transaction debit, Transaction credit) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            // Перевод - одна запись, поэтому после сбоя он не может восстановиться наполовину
+            ByteBuffer record = beginRecord(TRANSFER, debit.getTimestamp());
+            putString(record, from.getAccountNumber());
+            putString(record, to.getAccountNumber());
+            record.putLong(debit.getAmount());
+            putString(record, debit.getRequestId());
+            long lsn = endRecord();
+            if (lsn > 0) {
+                from.setLastLsn(lsn);
+                to.setLastLsn(lsn);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Итог запроса с идентификатором: после перезапуска повтор получит тот же ответ
+     */
+    void onRequestCompleted(String requestId, RequestDeduplicator.Result result) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            ByteBuffer record = beginRecord(REQUEST, LocalDateTime.now());
+            putString(record, requestId);
+            record.put((byte) (result.rejected() ? 1 : 0));
+            putString(record, result.text());
+            endRecord();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ByteBuffer beginRecord(byte type, LocalDateTime timestamp) {
+        scratch.clear();
+        scratch.position(HEADER_SIZE);
+        scratch.putLong(nextLsn);
+        scratch.put(type);
+        scratch.putLong(timestamp.atZone(ZONE).toInstant().toEpochMilli());
+        return scratch;
+    }
+
+    /**
+     * Завершение записи и перенос ее в буфер группы, возвращает LSN записи.
+     * Операция к этому моменту уже применена к счету, поэтому исключений здесь нет: если журнал
+     * отказал, пока запись ждала места в буфере, запись отбрасывается (возвращается 0), как
+     * несохраненная группа при сбое, а следующие операции отклоняет beforeChange
+     */
+    private long endRecord() {
+        int length = scratch.position() - HEADER_SIZE;
+        crc.reset();
+        crc.update(scratch.array(), HEADER_SIZE, length);
+        scratch.putInt(0, length);
+        scratch.putInt(4, (int) crc.getValue());
+        scratch.flip();
+
+        while (active.remaining() < scratch.remaining()) {
+            // Буфер заполнен: ждем, пока фоновый поток заберет его на запись
+            syncRequested = true;
+            flushRequested.signal();
+            flushCompleted.awaitUninterruptibly();
+            if (closed) {
+                return 0;
+            }
+        }
+        if (active.position() == 0) {
+            activeFirstLsn = nextLsn;
+        }
+        active.put(scratch);
+        appendedLsn = nextLsn++;
+        if (++pendingRecords >= flushEveryRecords) {
+            flushRequested.signal();
+        }
+        return appendedLsn;
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Слишком длинное значение для журнала");
+        }
+        try {
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        } catch (BufferOverflowException e) {
+            throw new IllegalArgumentException("Запись не помещается в журнал");
+        }
+    }
+
+    // Group commit
+
+    /**
+     * Ожидание, пока все уже записанные операции будут сохранены на диск (fsync)
+     */
+    public void sync() throws IOException {
+        lock.lock();
+        try {
+            sync(appendedLsn);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ожидание fsync записей до LSN target включительно
+     */
+    void sync(long target) throws IOException {
+        lock.lock();
+        try {
+            while (durableLsn < target && failure == null) {
+                syncRequested = true;
+                flushRequested.signal();
+                flushCompleted.awaitUninterruptibly();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (true) {
+            long target;
+            long firstLsn;
+            lock.lock();
+            try {
+                while (!closed && !syncRequested && pendingRecords < flushEveryRecords) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    flushRequested.awaitNanos(remaining);
+                }
+                if (closed && active.position() == 0) {
+                    flushCompleted.signalAll();
+                    return;
+                }
+                ByteBuffer full = active;
+                active = flushing;
+                flushing = full;
+                firstLsn = activeFirstLsn;
+                target = appendedLsn;
+                pendingRecords = 0;
+                syncRequested = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            if (flushing.position() > 0) {
+                try {
+                    if (segmentSize >= segmentBytes) {
+                        channel.close();
+                        openSegment(firstLsn);
+                    }
+                    flushing.flip();
+                    while (flushing.hasRemaining()) {
+                        segmentSize += channel.write(flushing);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            flushing.clear();
+            deadline = System.nanoTime() + flushIntervalNanos;
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                    closed = true;
+                    System.err.println("Ошибка записи журнала: " + error.getMessage());
+                } else {
+                    durableLsn = target;
+                }
+                flushCompleted.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void openSegment(long firstLsn) throws IOException {
+        channel = FileChannel.open(segmentPath(directory, firstLsn),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentSize = 0;
+        segmentFirstLsn = firstLsn;
+    }
+
+    // Сегменты
+
+    /**
+     * Удаление сегментов, все записи которых не новее lsn (они уже отражены в снимке).
+     * Текущий сегмент не удаляется
+     */
+    void deleteSegmentsUpTo(long lsn) throws IOException {
+        List<Segment> segments = listSegments(directory);
+        long currentFirstLsn = segmentFirstLsn;
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            boolean coveredByNext = segments.get(i + 1).firstLsn() <= lsn + 1;
+            if (coveredByNext && segment.firstLsn() < currentFirstLsn) {
+                Files.deleteIfExists(segment.path());
+            }
+        }
+    }
+
+    private static Path segmentPath(Path directory, long firstLsn) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX));
+    }
+
+    private static List<Segment> listSegments(Path directory) throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long firstLsn = Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length()));
+                segments.add(new Segment(file, firstLsn, 0, 0, 0));
+            }
+        }
+        segments.sort((a, b) -> Long.compare(a.firstLsn(), b.firstLsn()));
+        return segments;
+    }
+
+    /**
+     * Сегмент журнала; validBytes, records и lastLsn заполняются при воспроизведении
+     */
+    private record Segment(Path path, long firstLsn, long validBytes, long records, long lastLsn) {
+    }
+
+    /**
+     * Сохранение оставшихся записей и закрытие файла журнала
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            flushRequested.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close(); // Повторное закрытие канала ничего не делает
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Воспроизведение
+
+    private static Segment replaySegment(Segment segment, AccountRegistry registry, long snapshotLsn)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_CAPACITY);
+        CRC32 checksum = new CRC32();
+        long position = 0;
+        long records = 0;
+        long lastLsn = 0;
+
+        try (FileChannel channel = FileChannel.open(segment.path(), StandardOpenOption.READ)) {
+            buffer.flip();
+            while (true) {
+                if (buffer.remaining() < HEADER_SIZE
+                        || buffer.remaining() < HEADER_SIZE + buffer.getInt(buffer.position())) {
+                    buffer.compact();
+                    int read = channel.read(buffer);
+                    buffer.flip();
+                    if (read <= 0) {
+                        break;
+                    }
+                    continue;
+                }
+                int length = buffer.getInt();
+                int expectedCrc = buffer.getInt();
+                if (length <= 0 || length > MAX_RECORD_SIZE) {
+                    break; // Поврежденный заголовок - конец корректной части журнала
+                }
+                checksum.reset();
+                checksum.update(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+                if ((int) checksum.getValue() != expectedCrc) {
+                    break;
+                }
+
+                ByteBuffer record = buffer.slice(buffer.position(), length);
+                buffer.position(buffer.position() + length);
+                long lsn = record.getLong();
+                if (lsn > snapshotLsn) {
+                    apply(lsn, record, registry);
+                    records++;
+                }
+                lastLsn = lsn;
+                position += HEADER_SIZE + length;
+            }
+        }
+        return new Segment(segment.path(), segment.firstLsn(), position, records, lastLsn);
+    }
+
+    /**
+     * Применение записи. Счета из нечеткого снимка могут уже содержать операции с LSN
+     * новее снимка, такие операции (и отдельные стороны перевода) пропускаются.
+     * Идентификаторы запросов операций и итоги запросов возвращаются в окно повторов
+     */
+    private static void apply(long lsn, ByteBuffer record, AccountRegistry registry) {
+        byte type = record.get();
+        long epochMillis = record.getLong();
+        LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZONE);
+        RequestDeduplicator requests = registry.getRequestDeduplicator();
+
+        switch (type) {
+            case OPEN -> {
+                String accountNumber = getString(record);
+                String bik = getString(record);
+                String kpp = getString(record);
+                String correspondentAccount = getString(record);
+                String inn = getString(record);
+                String ownerName = getString(record);
+                long initialBalance = record.getLong();
+                if (!registry.contains(accountNumber)) {
+                    BankAccount account = new BankAccount(accountNumber, bik, kpp, correspondentAccount,
+                            inn, ownerName, initialBalance, timestamp);
+                    account.setLastLsn(lsn);
+                    registry.register(account);
+                }
+            }
+            case DEPOSIT, WITHDRAWAL -> {
+                BankAccount account = findAccount(registry, getString(record), lsn);
+                long amount = record.getLong();
+                String requestId = getRequestId(record, requests, epochMillis);
+                if (account.getLastLsn() < lsn) {
+                    TransactionType transactionType = type == DEPOSIT
+                            ? TransactionType.DEPOSIT : TransactionType.WITHDRAWAL;
+                    account.replay(new Transaction(timestamp, transactionType, amount,
+                            BankAccount.describe(transactionType), requestId), lsn);
+                }
+            }
+            case TRANSFER -> {
+                BankAccount from = findAccount(registry, getString(record), lsn);
+                BankAccount to = findAccount(registry, getString(record), lsn);
+                long amount = record.getLong();
+                String requestId = getRequestId(record, requests, epochMillis);
+                if (from.getLastLsn() < lsn) {
+                    from.replay(new Transaction(timestamp, TransactionType.TRANSFER_OUT, amount,
+                            BankAccount.transferDescription(TransactionType.TRANSFER_OUT,
+                                    to.getAccountNumber()), requestId), lsn);
+                }
+                if (to.getLastLsn() < lsn) {
+                    to.replay(new Transaction(timestamp, TransactionType.TRANSFER_IN, amount,
+                            BankAccount.transferDescription(TransactionType.TRANSFER_IN,
+                                    from.getAccountNumber()), requestId), lsn);
+                }
+            }
+            case REQUEST -> {
+                String requestId = getString(record);
+                boolean rejected = record.get() != 0;
+                requests.restore(requestId, new RequestDeduplicator.Result(getString(record), rejected),
+                        epochMillis);
+            }
+            default -> throw new IllegalStateException("Неизвестный тип записи журнала " + type + ", LSN " + lsn);
+        }
+    }
+
+    /**
+     * Идентификатор запроса в конце записи операции (в записях без него поля нет).
+     * Операция с идентификатором уже проведена: повтор не должен провести ее еще раз,
+     * даже если итог запроса не успел попасть в журнал
+     */
+    private static String getRequestId(ByteBuffer record, RequestDeduplicator requests, long epochMillis) {
+        String requestId = record.hasRemaining() ? getString(record) : null;
+        if (requestId != null) {
+            requests.restore(requestId, RequestDeduplicator.Result.RECOVERED, epochMillis);
+        }
+        return requestId;
+    }
+
+    private static BankAccount findAccount(AccountRegistry registry, String accountNumber, long lsn) {
+        BankAccount account = registry.findByNumber(accountNumber);
+        if (account == null) {
+            throw new IllegalStateException("Журнал несогласован: счет " + accountNumber +
+                    " не открыт, LSN " + lsn);
+        }
+        return account;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
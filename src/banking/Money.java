@@ -0,0 +1,130 @@
+package banking;
+
+/**
+ * Денежные суммы в копейках в примитивном long.
+ * Арифметика не создает объектов и проверяет переполнение, разбор и форматирование
+ * работают с десятичной записью вида "1234.56" (допускается и запятая)
+ */
+public final class Money {
+    public static final int KOPECKS_PER_RUBLE = 100;
+
+    private Money() {
+    }
+
+    /**
+     * Сумма в копейках из целого числа рублей
+     */
+    public static long ofRubles(long rubles) {
+        return Math.multiplyExact(rubles, KOPECKS_PER_RUBLE);
+    }
+
+    /**
+     * Сложение с проверкой переполнения
+     *
+     * @throws ArithmeticException при переполнении
+     */
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    /**
+     * Вычитание с проверкой переполнения
+     *
+     * @throws ArithmeticException при переполнении
+     */
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * Разбор суммы в рублях ("100", "-5", "12.3", "12,34") в копейки
+     *
+     * @throws NumberFormatException если строка не является суммой с точностью до копейки
+     */
+    public static long parse(CharSequence text) {
+        int length = text.length();
+        int start = 0;
+        while (start < length && text.charAt(start) == ' ') {
+            start++;
+        }
+        while (length > start && text.charAt(length - 1) == ' ') {
+            length--;
+        }
+        if (start == length) {
+            throw new NumberFormatException("Пустая сумма");
+        }
+
+        boolean negative = false;
+        char first = text.charAt(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            start++;
+        }
+
+        long kopecks = 0;
+        int digits = 0;
+        int fractionDigits = -1; // -1: разделитель еще не встречен
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '.' || c == ',') {
+                if (fractionDigits >= 0) {
+                    throw invalid(text);
+                }
+                fractionDigits = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                throw invalid(text);
+            }
+            if (fractionDigits >= 0 && ++fractionDigits > 2) {
+                throw new NumberFormatException("Сумма задается с точностью до копейки: " + text);
+            }
+            try {
+                kopecks = Math.addExact(Math.multiplyExact(kopecks, 10), c - '0');
+            } catch (ArithmeticException e) {
+                throw new NumberFormatException("Слишком большая сумма: " + text);
+            }
+            digits++;
+        }
+        if (digits == 0) {
+            throw invalid(text);
+        }
+
+        int scale = fractionDigits <= 0 ? 2 : 2 - fractionDigits;
+        try {
+            for (int i = 0; i < scale; i++) {
+                kopecks = Math.multiplyExact(kopecks, 10);
+            }
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Слишком большая сумма: " + text);
+        }
+        return negative ? -kopecks : kopecks;
+    }
+
+    private static NumberFormatException invalid(CharSequence text) {
+        return new NumberFormatException("Некорректная сумма: " + text);
+    }
+
+    /**
+     * Запись суммы в рублях с двумя знаками после точки ("1234.56")
+     */
+    public static String format(long kopecks) {
+        return appendTo(new StringBuilder(24), kopecks).toString();
+    }
+
+    /**
+     * Дописывание суммы в рублях в буфер без промежуточных строк
+     */
+    public static StringBuilder appendTo(StringBuilder target, long kopecks) {
+        long rubles = kopecks / KOPECKS_PER_RUBLE;
+        int remainder = (int) Math.abs(kopecks % KOPECKS_PER_RUBLE);
+        if (kopecks < 0 && rubles == 0) {
+            target.append('-'); // -0.50: знак не виден в целой части
+        }
+        target.append(rubles).append('.');
+        if (remainder < 10) {
+            target.append('0');
+        }
+        return target.append(remainder);
+    }
+}
@@ -0,0 +1,127 @@
+package banking;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Вывод списков счетов и транзакций страницами: строки собираются в одном буфере
+ * и передаются получателю (консоли или файлу) одной записью на страницу,
+ * а не вызовом println на каждую строку. Ошибки записи - UncheckedIOException
+ */
+public class PagedWriter implements Closeable {
+    private static final int DEFAULT_PAGE_CHARS = 1 << 16;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Appendable target;
+    private final boolean ownsTarget;
+    private final int pageChars;
+    private final StringBuilder page;
+    private final AccountRenderer renderer = new AccountRenderer();
+    private long lines;
+
+    /**
+     * Вывод в существующий получатель (например, System.out), close() его не закрывает
+     */
+    public PagedWriter(Appendable target) {
+        this(target, false, DEFAULT_PAGE_CHARS);
+    }
+
+    private PagedWriter(Appendable target, boolean ownsTarget, int pageChars) {
+        this.target = target;
+        this.ownsTarget = ownsTarget;
+        this.pageChars = pageChars;
+        this.page = new StringBuilder(pageChars + 1024);
+    }
+
+    /**
+     * Вывод в файл в UTF-8 (файл создается или перезаписывается и закрывается в close())
+     */
+    public static PagedWriter open(Path file) throws IOException {
+        Writer writer = new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8);
+        return new PagedWriter(writer, true, DEFAULT_PAGE_CHARS);
+    }
+
+    public PagedWriter append(CharSequence text) {
+        page.append(text);
+        return this;
+    }
+
+    public PagedWriter append(long value) {
+        page.append(value);
+        return this;
+    }
+
+    public PagedWriter appendAccount(BankAccount account) {
+        renderer.appendAccount(page, account);
+        return this;
+    }
+
+    public PagedWriter appendTransaction(Transaction transaction) {
+        renderer.appendTransaction(page, transaction);
+        return this;
+    }
+
+    /**
+     * Конец строки; заполненная страница передается получателю
+     */
+    public PagedWriter newLine() {
+        page.append(LINE_SEPARATOR);
+        lines++;
+        if (page.length() >= pageChars) {
+            writePage();
+        }
+        return this;
+    }
+
+    /**
+     * Число строк, завершенных newLine()
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    public void flush() {
+        writePage();
+        if (target instanceof Flushable flushable) {
+            try {
+                flushable.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void writePage() {
+        if (page.length() == 0) {
+            return;
+        }
+        try {
+            target.append(page);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        page.setLength(0);
+    }
+
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            if (ownsTarget && target instanceof Closeable closeable) {
+                try {
+                    closeable.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package banking;
+
+/**
+ * Итоги восстановления при запуске: загрузка снимка и воспроизведение журнала после него
+ */
+public class ReplayReport {
+    private final long snapshotAccounts;
+    private final long snapshotLsn;
+    private final long records;
+    private final long lastLsn;
+    private final long elapsedNanos;
+
+    ReplayReport(long snapshotAccounts, long snapshotLsn, long records, long lastLsn, long elapsedNanos) {
+        this.snapshotAccounts = snapshotAccounts;
+        this.snapshotLsn = snapshotLsn;
+        this.records = records;
+        this.lastLsn = lastLsn;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Число счетов, загруженных из снимка (0, если снимка нет)
+     */
+    public long getSnapshotAccounts() {
+        return snapshotAccounts;
+    }
+
+    /**
+     * LSN, на котором снят загруженный снимок
+     */
+    public long getSnapshotLsn() {
+        return snapshotLsn;
+    }
+
+    /**
+     * Число записей журнала, воспроизведенных после снимка
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Номер (LSN) последней записи журнала, 0 для пустого журнала
+     */
+    public long getLastLsn() {
+        return lastLsn;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getRecordsPerSecond() {
+        return elapsedNanos == 0 ? 0 : records * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Счетов из снимка: %d (LSN %d) | Восстановлено записей журнала: %d | " +
+                        "Время: %.2f с | Скорость: %.0f записей/с",
+                snapshotAccounts, snapshotLsn, records, elapsedNanos / 1e9, getRecordsPerSecond());
+    }
+}
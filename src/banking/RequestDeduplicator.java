@@ -0,0 +1,281 @@
+package banking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Защита от повторного проведения операций с одним идентификатором запроса клиента
+ * (повтор после тайм-аута): операция с уже известным идентификатором не выполняется,
+ * вызывающий получает результат первого выполнения (или ждет его, если оно еще идет).
+ * <p>
+ * Идентификаторы хранятся в двух поколениях-хеш-таблицах: текущее поколение заменяется новым
+ * раз в windowMillis или по заполнении maxPerWindow записей, предыдущее при этом отбрасывается.
+ * Поэтому идентификатор помнится не меньше одного окна (если окно не закрыто досрочно),
+ * а память ограничена 2 * maxPerWindow записями. Проверка - один поиск в одной-двух таблицах.
+ * <p>
+ * Отказ (например, недостаточно средств) - такой же итог запроса, как успех: повтор получает
+ * тот же отказ. Операция, завершившаяся исключением, ничего не изменила: повторы, ждавшие ее,
+ * получают то же исключение, а следующий повтор выполняется заново.
+ * <p>
+ * С журналом (setJournal) итог каждого запроса записывается в журнал, а идентификатор
+ * запроса - еще и в запись самой операции. Окно восстанавливается из снимка и журнала
+ * (restore), поэтому повтор после перезапуска тоже не проводится второй раз
+ */
+public class RequestDeduplicator {
+    public static final int MAX_REQUEST_ID_LENGTH = 64;
+    static final long DEFAULT_WINDOW_MILLIS = 5 * 60 * 1000;
+    static final int DEFAULT_MAX_PER_WINDOW = 100_000;
+
+    /**
+     * Итог запроса: ответ клиенту или отказ с причиной (rejected = true).
+     * Итог RECOVERED - операция проведена до перезапуска, но ее ответ не успел попасть
+     * в журнал: text равен null, ответ повтора строит вызывающий по текущему состоянию
+     */
+    public record Result(String text, boolean rejected) {
+        public static final Result RECOVERED = new Result(null, false);
+
+        public static Result ok(String text) {
+            return new Result(text, false);
+        }
+
+        public static Result rejected(String reason) {
+            return new Result(reason, true);
+        }
+
+        public boolean isRecovered() {
+            return text == null;
+        }
+    }
+
+    /**
+     * Завершенный запрос окна (для снимка)
+     */
+    record Entry(String requestId, Result result) {
+    }
+
+    private final long windowMillis;
+    private final long windowNanos;
+    private final int maxPerWindow;
+    // Вставка - под блокировкой чтения, смена поколений - под блокировкой записи
+    private final ReentrantReadWriteLock rotation = new ReentrantReadWriteLock();
+    private volatile Generation current;
+    private volatile Generation previous;
+    private volatile Journal journal;
+
+    private final LongAdder duplicates = new LongAdder();
+
+    public RequestDeduplicator(long windowMillis, int maxPerWindow) {
+        if (windowMillis <= 0 || maxPerWindow <= 0) {
+            throw new IllegalArgumentException("Окно и число запросов в окне должны быть положительными");
+        }
+        this.windowMillis = windowMillis;
+        this.windowNanos = windowMillis * 1_000_000;
+        this.maxPerWindow = maxPerWindow;
+        this.current = new Generation(System.nanoTime());
+        this.previous = new Generation(System.nanoTime());
+    }
+
+    /**
+     * Журнал для итогов запросов (подключается после восстановления окна)
+     */
+    void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Выполнение операции, если ее идентификатор еще не встречался в окне; иначе - итог
+     * первого выполнения. Без идентификатора (null) операция выполняется всегда
+     *
+     * @throws IllegalArgumentException если идентификатор пустой или длиннее MAX_REQUEST_ID_LENGTH
+     */
+    public Result execute(String requestId, Supplier<Result> operation) {
+        if (requestId == null) {
+            return operation.get();
+        }
+        checkRequestId(requestId);
+
+        FutureTask<Result> task = new FutureTask<>(operation::get);
+        Generation generation;
+        FutureTask<Result> existing;
+        rotateIfExpired();
+        rotation.readLock().lock();
+        try {
+            existing = previous.entries.get(requestId);
+            generation = current;
+            if (existing == null) {
+                existing = generation.entries.putIfAbsent(requestId, task);
+            }
+        } finally {
+            rotation.readLock().unlock();
+        }
+
+        if (existing != null) {
+            duplicates.increment();
+            return await(existing);
+        }
+        generation.size.incrementAndGet();
+        task.run();
+        Result result;
+        try {
+            result = await(task);
+        } catch (RuntimeException | Error e) {
+            generation.entries.remove(requestId, task); // Следующий повтор выполнится заново
+            throw e;
+        }
+        Journal target = journal;
+        if (target != null) {
+            target.onRequestCompleted(requestId, result); // До ответа: сервер ждет fsync журнала
+        }
+        return result;
+    }
+
+    /**
+     * Восстановление итога запроса из снимка или журнала. Итог старше двух окон не нужен
+     * и отбрасывается; RECOVERED не заменяет уже известный итог
+     *
+     * @param epochMillis время выполнения запроса
+     */
+    void restore(String requestId, Result result, long epochMillis) {
+        if (System.currentTimeMillis() - epochMillis >= 2 * windowMillis) {
+            return;
+        }
+        FutureTask<Result> task = new FutureTask<>(() -> result);
+        task.run();
+        rotateIfExpired();
+        rotation.readLock().lock();
+        try {
+            Map<String, FutureTask<Result>> entries = previous.entries.containsKey(requestId)
+                    ? previous.entries : current.entries;
+            if (result.isRecovered() && entries.containsKey(requestId)) {
+                return;
+            }
+            if (entries.put(requestId, task) == null) {
+                current.size.incrementAndGet();
+            }
+        } finally {
+            rotation.readLock().unlock();
+        }
+    }
+
+    /**
+     * Завершенные запросы окна с итогами (выполняемые сейчас не входят: их итог
+     * попадет в журнал после снимка)
+     */
+    List<Entry> completed() {
+        List<Entry> entries = new ArrayList<>();
+        rotation.readLock().lock();
+        try {
+            for (Generation generation : new Generation[]{previous, current}) {
+                generation.entries.forEach((requestId, task) -> {
+                    if (task.isDone()) {
+                        try {
+                            entries.add(new Entry(requestId, task.get()));
+                        } catch (ExecutionException | InterruptedException e) {
+                            // Завершилась исключением - итога нет, запись сейчас удаляется
+                        }
+                    }
+                });
+            }
+        } finally {
+            rotation.readLock().unlock();
+        }
+        return entries;
+    }
+
+    /**
+     * Проверка формата идентификатора запроса
+     *
+     * @throws IllegalArgumentException если идентификатор пустой или длиннее MAX_REQUEST_ID_LENGTH
+     */
+    public static void checkRequestId(String requestId) {
+        if (requestId.isEmpty() || requestId.length() > MAX_REQUEST_ID_LENGTH) {
+            throw new IllegalArgumentException("Идентификатор запроса должен содержать от 1 до " +
+                    MAX_REQUEST_ID_LENGTH + " символов");
+        }
+    }
+
+    /**
+     * Повторы, не выполненные второй раз, с момента создания
+     */
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * Идентификаторы в окне (в обоих поколениях)
+     */
+    public int size() {
+        rotation.readLock().lock();
+        try {
+            return current.entries.size() + previous.entries.size();
+        } finally {
+            rotation.readLock().unlock();
+        }
+    }
+
+    private void rotateIfExpired() {
+        Generation generation = current;
+        if (!generation.isFull(System.nanoTime())) {
+            return;
+        }
+        rotation.writeLock().lock();
+        try {
+            if (current == generation) {
+                previous = generation;
+                current = new Generation(System.nanoTime());
+            }
+        } finally {
+            rotation.writeLock().unlock();
+        }
+    }
+
+    private static Result await(FutureTask<Result> task) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true; // Первое выполнение все равно завершится
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException runtime) {
+                        throw runtime;
+                    }
+                    if (e.getCause() instanceof Error error) {
+                        throw error;
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Поколение окна: идентификаторы и задачи их первого выполнения
+     */
+    private class Generation {
+        final long startNanos;
+        final Map<String, FutureTask<Result>> entries = new ConcurrentHashMap<>();
+        final AtomicInteger size = new AtomicInteger();
+
+        Generation(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        boolean isFull(long nowNanos) {
+            return nowNanos - startNanos >= windowNanos || size.get() >= maxPerWindow;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package banking;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Пул общих значений реквизитов (БИК, КПП, корреспондентский счет): несколько сотен банков
+ * обслуживают миллионы счетов, поэтому счета ссылаются на один экземпляр строки
+ * вместо собственной копии. Пул только растет - число разных значений ограничено
+ * числом банков и организаций
+ */
+final class RequisitePool {
+    private static final ConcurrentHashMap<String, String> VALUES = new ConcurrentHashMap<>();
+
+    private RequisitePool() {
+    }
+
+    /**
+     * Общий экземпляр строки с тем же значением (null остается null)
+     */
+    static String canonical(String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = VALUES.get(value); // Обычно значение уже в пуле - чтение без блокировки
+        if (pooled == null) {
+            pooled = VALUES.putIfAbsent(value, value);
+        }
+        return pooled == null ? value : pooled;
+    }
+}
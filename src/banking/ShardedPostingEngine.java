@@ -0,0 +1,306 @@
+package banking;
+
+import banking.metrics.Metrics;
+import banking.metrics.Operation;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Проведение пополнений и снятий через разделы с единственным исполнителем
+ * (в духе LMAX Disruptor). Счета распределены по разделам по полосе блокировки,
+ * у каждого раздела свой поток и кольцевой буфер без блокировок: производитель
+ * занимает ячейку атомарным счетчиком и публикует ее номером последовательности.
+ * <p>
+ * Исполнитель забирает из буфера пачку операций, группирует ее по полосам блокировок
+ * и проводит каждую группу под одной блокировкой. Потоки-производители блокировок
+ * не берут, а блокировка исполнителя не конкурирует с другими исполнителями и нужна
+ * только для согласованности с чтением истории, переводами и прямыми вызовами deposit/withdraw.
+ * Операции одного счета проводятся в порядке отправки, результат сообщается
+ * обратным вызовом в потоке исполнителя.
+ * <p>
+ * Через исполнитель проводятся пополнения и снятия сервера запросов (banking.server.RequestServer):
+ * потоки соединений только публикуют операции и ждут результата, а не конкурируют за блокировки счетов.
+ * <p>
+ * Остановка безопасна для одновременной отправки: производитель отмечается в счетчике раздела
+ * до проверки running, а исполнитель завершается, только когда running сброшен, отмеченных
+ * производителей нет и все занятые ячейки проведены. Поэтому опубликованная операция либо
+ * проводится, либо отправка отклоняется с IllegalStateException, но не теряется
+ */
+public final class ShardedPostingEngine implements Closeable {
+    private static final int BATCH_SIZE = 256;
+    private static final int SPIN_LIMIT = 100;
+    private static final int YIELD_LIMIT = 200;
+    private static final long IDLE_PARK_NANOS = 50_000;
+
+    /**
+     * Результат операции: applied = false для снятия при недостатке средств
+     * или при ошибке (error не null)
+     */
+    @FunctionalInterface
+    public interface Callback {
+        void posted(boolean applied, RuntimeException error);
+    }
+
+    private final Shard[] shards;
+    private final Thread[] writers;
+    private volatile boolean running = true;
+
+    /**
+     * @param shardCount   число разделов (потоков-исполнителей)
+     * @param ringCapacity емкость кольцевого буфера раздела (округляется до степени двойки)
+     */
+    public ShardedPostingEngine(int shardCount, int ringCapacity) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Число разделов должно быть положительным");
+        }
+        if (ringCapacity < BATCH_SIZE) {
+            throw new IllegalArgumentException("Емкость буфера должна быть не меньше " + BATCH_SIZE);
+        }
+        int capacity = Integer.highestOneBit(ringCapacity - 1) << 1;
+        shards = new Shard[shardCount];
+        writers = new Thread[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(capacity);
+            writers[i] = new Thread(shards[i], "posting-shard-" + i);
+            writers[i].setDaemon(true);
+            writers[i].start();
+        }
+    }
+
+    /**
+     * Отправка пополнения на сумму в копейках
+     */
+    public void deposit(BankAccount account, long amount, Callback callback) {
+        deposit(account, amount, null, callback);
+    }
+
+    /**
+     * Отправка пополнения с идентификатором запроса клиента (записывается в транзакцию)
+     */
+    public void deposit(BankAccount account, long amount, String requestId, Callback callback) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Сумма пополнения должна быть положительной");
+        }
+        submit(account, amount, requestId, callback);
+    }
+
+    /**
+     * Отправка снятия суммы в копейках
+     */
+    public void withdraw(BankAccount account, long amount, Callback callback) {
+        withdraw(account, amount, null, callback);
+    }
+
+    /**
+     * Отправка снятия с идентификатором запроса клиента (записывается в транзакцию)
+     */
+    public void withdraw(BankAccount account, long amount, String requestId, Callback callback) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Сумма снятия должна быть положительной");
+        }
+        submit(account, -amount, requestId, callback);
+    }
+
+    private void submit(BankAccount account, long signedAmount, String requestId, Callback callback) {
+        Shard shard = shards[account.getLockStripe() % shards.length];
+        shard.producers.incrementAndGet(); // До проверки running: исполнитель дождется публикации
+        try {
+            if (!running) {
+                throw new IllegalStateException("Исполнитель операций остановлен");
+            }
+            shard.publish(account, signedAmount, requestId, callback);
+        } finally {
+            shard.producers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Число операций, проведенных (или отклоненных) всеми разделами
+     */
+    public long getProcessed() {
+        long processed = 0;
+        for (Shard shard : shards) {
+            processed += shard.processed.sum();
+        }
+        return processed;
+    }
+
+    /**
+     * Проведение уже отправленных операций и остановка исполнителей
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Thread writer : writers) {
+            LockSupport.unpark(writer);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Раздел: кольцевой буфер операций в параллельных массивах и его исполнитель
+     */
+    private final class Shard implements Runnable {
+        private final int mask;
+        private final BankAccount[] accounts;
+        private final long[] amounts;             // > 0 - пополнение, < 0 - снятие
+        private final long[] startNanos;
+        private final String[] requestIds;
+        private final Callback[] callbacks;
+        private final AtomicLongArray published;  // Номер последовательности, записанный в ячейку
+        private final AtomicLong claimed = new AtomicLong();
+        private final AtomicInteger producers = new AtomicInteger(); // Потоки внутри submit
+        private volatile long consumed;           // Следующая непрочитанная последовательность
+        private final LongAdder processed = new LongAdder();
+
+        // Состояние исполнителя: результаты пачки и группы по полосам блокировок
+        private final boolean[] applied = new boolean[BATCH_SIZE];
+        private final RuntimeException[] errors = new RuntimeException[BATCH_SIZE];
+        private final int[] nextInGroup = new int[BATCH_SIZE];
+        private final int[] groupStripes = new int[BATCH_SIZE];
+        private final int[] groupHeads = new int[AccountLocks.count()];
+        private final int[] groupTails = new int[AccountLocks.count()];
+
+        Shard(int capacity) {
+            mask = capacity - 1;
+            accounts = new BankAccount[capacity];
+            amounts = new long[capacity];
+            startNanos = new long[capacity];
+            requestIds = new String[capacity];
+            callbacks = new Callback[capacity];
+            published = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                published.set(i, -1);
+            }
+            Arrays.fill(groupHeads, -1);
+        }
+
+        void publish(BankAccount account, long signedAmount, String requestId, Callback callback) {
+            long start = Metrics.start();
+            long sequence = claimed.getAndIncrement();
+            // Ожидание, пока исполнитель освободит ячейку прошлого круга
+            for (int spins = 0; sequence - consumed > mask; spins++) {
+                if (spins < SPIN_LIMIT) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            int slot = (int) sequence & mask;
+            accounts[slot] = account;
+            amounts[slot] = signedAmount;
+            startNanos[slot] = start;
+            requestIds[slot] = requestId;
+            callbacks[slot] = callback;
+            published.lazySet(slot, sequence); // Публикует записанные выше поля
+        }
+
+        @Override
+        public void run() {
+            int idle = 0;
+            while (true) {
+                if (drainBatch() > 0) {
+                    idle = 0;
+                } else if (!running && producers.get() == 0 && claimed.get() == consumed) {
+                    return; // Новые отправки уже видят !running и отклоняются
+                } else if (++idle < SPIN_LIMIT) {
+                    Thread.onSpinWait();
+                } else if (idle < YIELD_LIMIT) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        }
+
+        private int drainBatch() {
+            long first = consumed;
+            int count = 0;
+            while (count < BATCH_SIZE && published.get((int) (first + count) & mask) == first + count) {
+                count++;
+            }
+            if (count == 0) {
+                return 0;
+            }
+
+            // Цепочки операций по полосам блокировок в порядке поступления
+            int groups = 0;
+            for (int i = 0; i < count; i++) {
+                int stripe = accounts[(int) (first + i) & mask].getLockStripe();
+                if (groupHeads[stripe] < 0) {
+                    groupHeads[stripe] = i;
+                    groupStripes[groups++] = stripe;
+                } else {
+                    nextInGroup[groupTails[stripe]] = i;
+                }
+                groupTails[stripe] = i;
+                nextInGroup[i] = -1;
+            }
+
+            for (int g = 0; g < groups; g++) {
+                int stripe = groupStripes[g];
+                ReentrantLock lock = AccountLocks.lock(stripe);
+                lock.lock();
+                try {
+                    for (int i = groupHeads[stripe]; i >= 0; i = nextInGroup[i]) {
+                        post(i, (int) (first + i) & mask);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                groupHeads[stripe] = -1;
+            }
+
+            // Обратные вызовы - вне блокировок
+            for (int i = 0; i < count; i++) {
+                int slot = (int) (first + i) & mask;
+                Metrics.record(errors[i] != null ? Operation.POSTING_FAILED
+                        : amounts[slot] > 0 ? Operation.DEPOSIT
+                        : applied[i] ? Operation.WITHDRAW : Operation.WITHDRAW_REJECTED, startNanos[slot]);
+                Callback callback = callbacks[slot];
+                if (callback != null) {
+                    try {
+                        callback.posted(applied[i], errors[i]);
+                    } catch (RuntimeException e) {
+                        System.err.println("Ошибка обратного вызова операции: " + e.getMessage());
+                    }
+                }
+                accounts[slot] = null;
+                requestIds[slot] = null;
+                callbacks[slot] = null;
+                errors[i] = null;
+            }
+            processed.add(count);
+            consumed = first + count;
+            return count;
+        }
+
+        private void post(int index, int slot) {
+            long amount = amounts[slot];
+            try {
+                if (amount > 0) {
+                    accounts[slot].postDeposit(amount, requestIds[slot]);
+                    applied[index] = true;
+                } else {
+                    applied[index] = accounts[slot].postWithdrawal(-amount, requestIds[slot]);
+                }
+            } catch (RuntimeException e) {
+                // Например, переполнение баланса - раздел продолжает работу
+                applied[index] = false;
+                errors[index] = e;
+            }
+        }
+    }
+}
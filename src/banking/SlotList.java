@@ -0,0 +1,50 @@
+package banking;
+
+import java.util.Arrays;
+
+/**
+ * Список индекса для счетов хранилища: номера ячеек DiskAccountStore по возрастанию в массиве
+ * int (4 байта на счет вместо ссылки в множестве). Ячейки добавляются в порядке их выделения,
+ * поэтому список остается упорядоченным и проверяется двоичным поиском.
+ * <p>
+ * Добавление синхронизировано; чтение - без блокировки: массив публикуется раньше размера,
+ * а его начало после публикации не меняется
+ */
+final class SlotList {
+    static final Snapshot EMPTY = new Snapshot(new int[0], 0);
+
+    private volatile int[] slots = new int[4];
+    private volatile int size;
+
+    /**
+     * Добавление ячейки; ячейка не больше последней уже в списке (повтор триграммы
+     * в одном значении) пропускается
+     */
+    synchronized void add(int slot) {
+        int count = size;
+        int[] current = slots;
+        if (count > 0 && current[count - 1] >= slot) {
+            return;
+        }
+        if (count == current.length) {
+            current = Arrays.copyOf(current, count * 2);
+        }
+        current[count] = slot;
+        slots = current;
+        size = count + 1;
+    }
+
+    Snapshot snapshot() {
+        int count = size;
+        return new Snapshot(slots, count);
+    }
+
+    /**
+     * Содержимое списка на момент чтения: первые size элементов массива
+     */
+    record Snapshot(int[] slots, int size) {
+        boolean contains(int slot) {
+            return Arrays.binarySearch(slots, 0, size, slot) >= 0;
+        }
+    }
+}
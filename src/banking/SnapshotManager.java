@@ -0,0 +1,387 @@
+package banking;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Снимки состояния реестра и сжатие журнала.
+ * Снимок нечеткий: записи продолжаются во время его снятия, каждый счет сохраняется
+ * под своей блокировкой вместе с LSN последней отраженной в нем записи журнала.
+ * После записи снимка удаляются сегменты журнала, целиком покрытые им, поэтому
+ * при запуске воспроизводится только хвост журнала
+ * <p>
+ * История счета сохраняется ссылками на блоки TransactionArchive с итогами по типам на границах
+ * интервалов (при загрузке архив не перечитывается) и горячей частью из памяти.
+ * Без архива в снимок попадают последние HISTORY_TAIL транзакций каждого счета.
+ * Счета хранилища на диске в снимок не входят: перед удалением сегментов журнала
+ * измененные состояния из кэша записываются в хранилище (AccountCache.flush)
+ * <p>
+ * В конце снимка сохраняются итоги запросов окна повторов (RequestDeduplicator): записи
+ * журнала с ними удаляются вместе с покрытыми сегментами
+ */
+public class SnapshotManager implements Closeable {
+    static final int HISTORY_TAIL = 100;
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String TEMP_FILE_NAME = "snapshot.tmp";
+    private static final int MAGIC = 0x42534E50; // "BSNP"
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final Path directory;
+    private final AccountRegistry registry;
+    private final Journal journal;
+    private ScheduledExecutorService scheduler;
+
+    public SnapshotManager(Path directory, AccountRegistry registry, Journal journal) {
+        this.directory = directory;
+        this.registry = registry;
+        this.journal = journal;
+    }
+
+    /**
+     * Снятие снимка и удаление покрытых им сегментов журнала
+     */
+    public synchronized SnapshotReport takeSnapshot() throws IOException {
+        long startNanos = System.nanoTime();
+        // Все записи до lsn отражены в счетах к моменту их сохранения
+        long lsn = journal.getAppendedLsn();
+        Path temp = directory.resolve(TEMP_FILE_NAME);
+        TransactionArchive archive = registry.getArchive();
+        long accounts = 0;
+        long maxAccountLsn = lsn;
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE),
+                    new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(lsn);
+
+            for (BankAccount account : registry.getAll()) {
+                long balance;
+                long lastLsn;
+                TransactionHistory.ColdChunks cold;
+                List<Transaction> hot;
+                ReentrantLock lock = account.lock();
+                lock.lock();
+                try {
+                    balance = account.getBalance();
+                    lastLsn = account.getLastLsn();
+                    cold = account.getColdChunks();
+                    hot = account.getRecentTransactions(archive == null
+                            ? HISTORY_TAIL : account.getHotTransactionCount());
+                } finally {
+                    lock.unlock();
+                }
+                writeAccount(out, account, balance, lastLsn, cold, hot);
+                maxAccountLsn = Math.max(maxAccountLsn, lastLsn);
+                accounts++;
+            }
+            out.writeByte(0);
+            if (archive != null) {
+                // Все блоки, на которые ссылается снимок, уже записаны в архив
+                out.writeLong(archive.getEnd());
+                archive.force();
+            } else {
+                out.writeLong(0);
+            }
+            // Итоги, записанные в журнал до lsn, уже в окне; более поздние воспроизведет журнал
+            List<RequestDeduplicator.Entry> requests = registry.getRequestDeduplicator().completed();
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(requests.size());
+            for (RequestDeduplicator.Entry request : requests) {
+                out.writeUTF(request.requestId());
+                out.writeBoolean(request.result().rejected());
+                writeNullable(out, request.result().text());
+            }
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            channel.force(true);
+        }
+        // Счета сохранены в разные моменты: перевод новее lsn мог попасть в снимок только
+        // списанием. Снимок публикуется, когда такие записи уже на диске и воспроизведение
+        // дополнит вторую сторону
+        journal.sync(maxAccountLsn);
+
+        Path snapshot = snapshotPath(directory, lsn);
+        Files.move(temp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        long bytes = Files.size(snapshot);
+        for (Path older : listSnapshots(directory)) {
+            if (!older.equals(snapshot)) {
+                Files.deleteIfExists(older);
+            }
+        }
+        AccountCache store = registry.getStore();
+        if (store != null) {
+            store.flush(); // Хранилище должно отражать все удаляемые записи журнала
+        }
+        journal.deleteSegmentsUpTo(lsn);
+        return new SnapshotReport(accounts, lsn, bytes, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Периодическое снятие снимков в фоновом потоке
+     */
+    public synchronized void schedule(long periodSeconds) {
+        if (periodSeconds <= 0) {
+            throw new IllegalArgumentException("Период снимков должен быть положительным");
+        }
+        if (scheduler != null) {
+            throw new IllegalStateException("Снимки уже запланированы");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                takeSnapshot();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Ошибка снятия снимка: " + e.getMessage());
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Остановка фоновых снимков (снимок, снимаемый в этот момент, дописывается)
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService current;
+        synchronized (this) {
+            current = scheduler;
+            scheduler = null;
+        }
+        if (current == null) {
+            return;
+        }
+        current.shutdown();
+        try {
+            current.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void writeAccount(DataOutputStream out, BankAccount account, long balance,
+                                     long lastLsn, TransactionHistory.ColdChunks cold,
+                                     List<Transaction> history) throws IOException {
+        out.writeByte(1);
+        writeNullable(out, account.getAccountNumber());
+        writeNullable(out, account.getBik());
+        writeNullable(out, account.getKpp());
+        writeNullable(out, account.getCorrespondentAccount());
+        writeNullable(out, account.getInn());
+        writeNullable(out, account.getOwnerName());
+        out.writeUTF(account.getOpenDate());
+        out.writeLong(balance);
+        out.writeLong(lastLsn);
+        out.writeInt(cold.positions().length);
+        for (int i = 0; i < cold.positions().length; i++) {
+            out.writeLong(cold.positions()[i]);
+            out.writeInt(cold.counts()[i]);
+        }
+        if (cold.positions().length > 0) {
+            // Итоги холодной части по типам (граница 0 - нули, не пишется)
+            for (int i = TransactionType.values().length; i < cold.checkpointSums().length; i++) {
+                out.writeLong(cold.checkpointSums()[i]);
+                out.writeInt(cold.checkpointCounts()[i]);
+            }
+        }
+        out.writeInt(history.size());
+        for (Transaction transaction : history) {
+            out.writeLong(transaction.getTimestamp().atZone(ZONE).toInstant().toEpochMilli());
+            out.writeByte(transaction.getType().ordinal());
+            out.writeLong(transaction.getAmount());
+            writeNullable(out, transaction.getDescription());
+            writeNullable(out, transaction.getRequestId());
+        }
+    }
+
+    /**
+     * Блоки архива счета и итоги холодной части по типам (см. TransactionHistory.ColdChunks)
+     */
+    private static TransactionHistory.ColdChunks readColdChunks(DataInputStream in, int chunks,
+                                                                int typeCount) throws IOException {
+        long[] positions = new long[chunks];
+        int[] counts = new int[chunks];
+        long coldSize = 0;
+        for (int i = 0; i < chunks; i++) {
+            positions[i] = in.readLong();
+            counts[i] = in.readInt();
+            if (counts[i] <= 0) {
+                throw new IOException("Снимок поврежден: пустой блок истории");
+            }
+            coldSize += counts[i];
+        }
+        if (coldSize % TransactionHistory.CHECKPOINT_INTERVAL != 0 || coldSize > Integer.MAX_VALUE) {
+            throw new IOException("Снимок поврежден: блоки истории не на границе итогов");
+        }
+        int values = (int) (coldSize / TransactionHistory.CHECKPOINT_INTERVAL + 1) * typeCount;
+        long[] checkpointSums = new long[values];
+        int[] checkpointCounts = new int[values];
+        for (int i = typeCount; i < values; i++) {
+            checkpointSums[i] = in.readLong();
+            checkpointCounts[i] = in.readInt();
+        }
+        return new TransactionHistory.ColdChunks(positions, counts, checkpointSums, checkpointCounts);
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    // Загрузка
+
+    /**
+     * Загруженный снимок: LSN, на котором он снят, число счетов и наибольший LSN последней
+     * операции среди счетов (снимок нечеткий, он может быть больше LSN снимка)
+     */
+    record LoadedSnapshot(long lsn, long accounts, long maxAccountLsn) {
+    }
+
+    /**
+     * Загрузка последнего снимка каталога в реестр
+     *
+     * @throws IOException если снимок поврежден
+     */
+    static LoadedSnapshot loadLatest(Path directory, AccountRegistry registry) throws IOException {
+        Files.deleteIfExists(directory.resolve(TEMP_FILE_NAME)); // Недописанный снимок
+        List<Path> snapshots = listSnapshots(directory);
+        if (snapshots.isEmpty()) {
+            return new LoadedSnapshot(0, 0, 0);
+        }
+        Path latest = snapshots.get(snapshots.size() - 1);
+        TransactionType[] types = TransactionType.values();
+
+        try (CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(latest), BUFFER_SIZE), new CRC32())) {
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Неизвестный формат снимка: " + latest);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия снимка " + version + ": " + latest);
+            }
+            TransactionArchive archive = registry.getArchive();
+            RequestDeduplicator requests = registry.getRequestDeduplicator();
+            long lsn = in.readLong();
+            long accounts = 0;
+            long maxAccountLsn = 0;
+            while (in.readByte() != 0) {
+                String accountNumber = readNullable(in);
+                String bik = readNullable(in);
+                String kpp = readNullable(in);
+                String correspondentAccount = readNullable(in);
+                String inn = readNullable(in);
+                String ownerName = readNullable(in);
+                String openDate = in.readUTF();
+                long balance = in.readLong();
+                long lastLsn = in.readLong();
+                maxAccountLsn = Math.max(maxAccountLsn, lastLsn);
+                TransactionHistory history = new TransactionHistory();
+                int chunks = in.readInt();
+                if (chunks > 0) {
+                    if (archive == null) {
+                        throw new IOException("Снимок ссылается на архив истории, который не подключен");
+                    }
+                    history.attachArchive(archive);
+                    history.restoreCold(readColdChunks(in, chunks, types.length));
+                }
+                int historySize = in.readInt();
+                for (int i = 0; i < historySize; i++) {
+                    long epochMillis = in.readLong();
+                    LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZONE);
+                    TransactionType type = types[in.readUnsignedByte()];
+                    long amount = in.readLong();
+                    String description = readNullable(in);
+                    String requestId = readNullable(in);
+                    if (requestId != null) {
+                        // Итог запроса мог не попасть ни в окно снимка, ни в журнал
+                        requests.restore(requestId, RequestDeduplicator.Result.RECOVERED, epochMillis);
+                    }
+                    history.add(new Transaction(timestamp, type, amount, description, requestId));
+                }
+                registry.register(BankAccount.restore(accountNumber, bik, kpp, correspondentAccount,
+                        inn, ownerName, balance, openDate, history, lastLsn));
+                accounts++;
+            }
+            long archiveEnd = in.readLong();
+            long requestsMillis = in.readLong();
+            int requestCount = in.readInt();
+            for (int i = 0; i < requestCount; i++) {
+                String requestId = in.readUTF();
+                boolean rejected = in.readBoolean();
+                requests.restore(requestId, new RequestDeduplicator.Result(readNullable(in), rejected),
+                        requestsMillis);
+            }
+            long expectedChecksum = checked.getChecksum().getValue();
+            if (in.readLong() != expectedChecksum) {
+                throw new IOException("Контрольная сумма снимка не совпадает: " + latest);
+            }
+            if (archive != null) {
+                archive.restoreEnd(archiveEnd);
+            }
+            return new LoadedSnapshot(lsn, accounts, maxAccountLsn);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Снимок поврежден: " + latest, e);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static Path snapshotPath(Path directory, long lsn) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, lsn, SNAPSHOT_SUFFIX));
+    }
+
+    /**
+     * Снимки каталога по возрастанию LSN
+     */
+    private static List<Path> listSnapshots(Path directory) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            files.forEach(snapshots::add);
+        }
+        snapshots.sort(null); // Номер LSN дополнен нулями, порядок имен совпадает с порядком LSN
+        return snapshots;
+    }
+}
@@ -0,0 +1,46 @@
+package banking;
+
+/**
+ * Итоги снятия снимка
+ */
+public class SnapshotReport {
+    private final long accounts;
+    private final long lsn;
+    private final long bytes;
+    private final long elapsedNanos;
+
+    SnapshotReport(long accounts, long lsn, long bytes, long elapsedNanos) {
+        this.accounts = accounts;
+        this.lsn = lsn;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * LSN журнала, на котором снят снимок
+     */
+    public long getLsn() {
+        return lsn;
+    }
+
+    /**
+     * Размер файла снимка в байтах
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Снимок: счетов %d | LSN %d | %d байт | Время: %.2f с",
+                accounts, lsn, bytes, elapsedNanos / 1e9);
+    }
+}
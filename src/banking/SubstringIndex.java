@@ -0,0 +1,122 @@
+package banking;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Индекс для поиска по подстроке: списки счетов (posting lists) для каждой триграммы значения.
+ * Кандидаты, содержащие все триграммы запроса, затем проверяются точным сравнением.
+ * Для счетов хранилища на диске списки содержат номера ячеек (addStored)
+ */
+class SubstringIndex {
+    static final int GRAM_LENGTH = 3;
+
+    private final Function<BankAccount, String> keyExtractor;
+    private final Map<String, Set<BankAccount>> postings;
+    private final Map<String, SlotList> storedPostings = new ConcurrentHashMap<>();
+    private final boolean concurrent;
+
+    /**
+     * @param keyExtractor значение, по которому ищется подстрока (уже в нужном регистре)
+     */
+    SubstringIndex(Function<BankAccount, String> keyExtractor, boolean concurrent) {
+        this.keyExtractor = keyExtractor;
+        this.concurrent = concurrent;
+        this.postings = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+    }
+
+    void add(BankAccount account) {
+        String key = keyExtractor.apply(account);
+        if (key == null) {
+            return;
+        }
+        for (int i = 0; i + GRAM_LENGTH <= key.length(); i++) {
+            postings.computeIfAbsent(key.substring(i, i + GRAM_LENGTH), gram -> newPostingList())
+                    .add(account);
+        }
+    }
+
+    /**
+     * Добавление пачки счетов: триграммы всех счетов сначала группируются,
+     * и каждый список индекса дополняется один раз на триграмму
+     */
+    void addAll(Collection<BankAccount> accounts) {
+        Map<String, List<BankAccount>> groups = new HashMap<>();
+        for (BankAccount account : accounts) {
+            String key = keyExtractor.apply(account);
+            if (key == null) {
+                continue;
+            }
+            for (int i = 0; i + GRAM_LENGTH <= key.length(); i++) {
+                groups.computeIfAbsent(key.substring(i, i + GRAM_LENGTH), gram -> new ArrayList<>())
+                        .add(account);
+            }
+        }
+        groups.forEach((gram, group) ->
+                postings.computeIfAbsent(gram, g -> newPostingList(group.size())).addAll(group));
+    }
+
+    /**
+     * Списки счетов для всех триграмм запроса. Пустой результат означает, что запрос
+     * короче триграммы и индекс не может сузить поиск
+     */
+    List<Set<BankAccount>> postingsFor(String query) {
+        List<Set<BankAccount>> result = new ArrayList<>();
+        for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+            Set<BankAccount> postingList = postings.get(query.substring(i, i + GRAM_LENGTH));
+            result.add(postingList == null ? Collections.emptySet() : postingList);
+        }
+        return result;
+    }
+
+    /**
+     * Добавление счета хранилища по номеру его ячейки (ячейки добавляются по возрастанию)
+     */
+    void addStored(BankAccount account, int slot) {
+        String key = keyExtractor.apply(account);
+        if (key == null) {
+            return;
+        }
+        for (int i = 0; i + GRAM_LENGTH <= key.length(); i++) {
+            storedPostings.computeIfAbsent(key.substring(i, i + GRAM_LENGTH), gram -> new SlotList())
+                    .add(slot);
+        }
+    }
+
+    /**
+     * Списки ячеек хранилища для всех триграмм запроса (пустой результат - как в postingsFor)
+     */
+    List<SlotList.Snapshot> storedPostingsFor(String query) {
+        List<SlotList.Snapshot> result = new ArrayList<>();
+        for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+            SlotList postingList = storedPostings.get(query.substring(i, i + GRAM_LENGTH));
+            result.add(postingList == null ? SlotList.EMPTY : postingList.snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * Точная проверка вхождения подстроки для кандидата
+     */
+    boolean matches(BankAccount account, String query) {
+        String key = keyExtractor.apply(account);
+        return key != null && key.contains(query);
+    }
+
+    private Set<BankAccount> newPostingList() {
+        return concurrent ? ConcurrentHashMap.newKeySet() : new LinkedHashSet<>();
+    }
+
+    private Set<BankAccount> newPostingList(int expectedSize) {
+        return concurrent ? ConcurrentHashMap.newKeySet(expectedSize)
+                : new LinkedHashSet<>(AttributeIndex.hashCapacity(expectedSize));
+    }
+}
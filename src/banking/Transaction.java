@@ -1,7 +1,6 @@
 package banking;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 
 /**
  * Класс, представляющий банковскую транзакцию
@@ -9,17 +8,28 @@ import java.time.format.DateTimeFormatter;
 public class Transaction {
     private final LocalDateTime timestamp;
     private final TransactionType type;
-    private final double amount;
+    private final long amount;              // Сумма в копейках
     private final String description;
+    private final String requestId;         // Идентификатор запроса клиента (может быть null)
 
-    private static final DateTimeFormatter FORMATTER =
-            DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss");
+    public Transaction(TransactionType type, long amount, String description) {
+        this(LocalDateTime.now(), type, amount, description);
+    }
+
+    /**
+     * Транзакция с заданным временем (восстановление из журнала)
+     */
+    Transaction(LocalDateTime timestamp, TransactionType type, long amount, String description) {
+        this(timestamp, type, amount, description, null);
+    }
 
-    public Transaction(TransactionType type, double amount, String description) {
-        this.timestamp = LocalDateTime.now();
+    Transaction(LocalDateTime timestamp, TransactionType type, long amount, String description,
+                String requestId) {
+        this.timestamp = timestamp;
         this.type = type;
         this.amount = amount;
         this.description = description;
+        this.requestId = requestId;
     }
 
     public LocalDateTime getTimestamp() {
@@ -30,7 +40,10 @@ public class Transaction {
         return type;
     }
 
-    public double getAmount() {
+    /**
+     * Сумма транзакции в копейках
+     */
+    public long getAmount() {
         return amount;
     }
 
@@ -38,12 +51,15 @@ public class Transaction {
         return description;
     }
 
+    /**
+     * Идентификатор запроса, которым проведена операция (см. RequestDeduplicator), или null
+     */
+    public String getRequestId() {
+        return requestId;
+    }
+
     @Override
     public String toString() {
-        return String.format("[%s] %s: %.2f руб. - %s",
-                timestamp.format(FORMATTER),
-                type.getDescription(),
-                amount,
-                description);
+        return new AccountRenderer().appendTransaction(new StringBuilder(128), this).toString();
     }
 }
@@ -0,0 +1,254 @@
+package banking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Архив холодной истории транзакций в отображаемых в память файлах archive-NNNNNN.dat.
+ * Записи фиксированной ширины (RECORD_SIZE байт): время в миллисекундах, сумма,
+ * номер описания в словаре архива, тип и номер счета контрагента перевода (упакованный,
+ * как в AccountNumberTable). Истории счетов сбрасывают сюда старые записи блоками,
+ * блок не пересекает границу файла. Чтение идет прямо из отображенных буферов.
+ * <p>
+ * Постоянные описания хранятся в словаре descriptions.dat (дописываемые строки UTF-8 с длиной),
+ * описание перевода собирается при чтении из номера контрагента, поэтому словарь не растет
+ * с числом счетов. Позиция конца архива сохраняется в снимке: блоки, записанные после
+ * последнего снимка, ни на что не ссылаются и после перезапуска перезаписываются
+ */
+public class TransactionArchive implements Closeable {
+    static final int RECORD_SIZE = 32;
+    private static final long SEGMENT_BYTES = 64L << 20;
+    private static final long RECORDS_PER_SEGMENT = SEGMENT_BYTES / RECORD_SIZE;
+    private static final String SEGMENT_FORMAT = "archive-%06d.dat";
+    private static final String DICTIONARY_FILE_NAME = "descriptions.dat";
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    // Смещения полей записи
+    private static final int MILLIS_OFFSET = 0;
+    private static final int AMOUNT_OFFSET = 8;
+    private static final int DESCRIPTION_OFFSET = 16;
+    private static final int TYPE_OFFSET = 20;
+    private static final int COUNTERPARTY_HIGH_OFFSET = 21;
+    private static final int COUNTERPARTY_LOW_OFFSET = 24;
+
+    private final Path directory;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private long end;                        // Номер записи, с которой продолжается архив
+
+    private final FileChannel dictionary;
+    private final ConcurrentHashMap<String, Integer> descriptionIds = new ConcurrentHashMap<>();
+    private volatile String[] descriptions = new String[64];
+    private int descriptionCount;
+    private boolean closed;
+
+    private TransactionArchive(Path directory, FileChannel dictionary) {
+        this.directory = directory;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Открытие архива в каталоге (создается при отсутствии)
+     */
+    public static TransactionArchive open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        FileChannel dictionary = FileChannel.open(directory.resolve(DICTIONARY_FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        TransactionArchive archive = new TransactionArchive(directory, dictionary);
+        archive.loadDictionary();
+        for (int segment = 0; Files.exists(archive.segmentPath(segment)); segment++) {
+            archive.mapSegment(segment);
+        }
+        return archive;
+    }
+
+    /**
+     * Резервирование места под count подряд идущих записей, возвращает номер первой
+     */
+    synchronized long reserve(int count) throws IOException {
+        if (count <= 0 || count > RECORDS_PER_SEGMENT) {
+            throw new IllegalArgumentException("Некорректный размер блока архива: " + count);
+        }
+        long offset = end % RECORDS_PER_SEGMENT;
+        if (offset + count > RECORDS_PER_SEGMENT) {
+            end += RECORDS_PER_SEGMENT - offset; // Блок начинается со следующего файла
+        }
+        long start = end;
+        int lastSegment = (int) ((start + count - 1) / RECORDS_PER_SEGMENT);
+        while (segments.length <= lastSegment) {
+            mapSegment(segments.length);
+        }
+        end = start + count;
+        return start;
+    }
+
+    /**
+     * Запись транзакции; для перевода description равно null, а номер контрагента передается
+     * упакованным (counterpartyHigh - первые 2 цифры или NO_COUNTERPARTY, counterpartyLow - остальные)
+     */
+    void write(long index, long epochMillis, TransactionType type, long amount, String description,
+               byte counterpartyHigh, long counterpartyLow) throws IOException {
+        ByteBuffer segment = segment(index);
+        int offset = offset(index);
+        segment.putLong(offset + MILLIS_OFFSET, epochMillis);
+        segment.putLong(offset + AMOUNT_OFFSET, amount);
+        segment.put(offset + TYPE_OFFSET, (byte) type.ordinal());
+        segment.putInt(offset + DESCRIPTION_OFFSET, internDescription(description));
+        segment.put(offset + COUNTERPARTY_HIGH_OFFSET, counterpartyHigh);
+        segment.putLong(offset + COUNTERPARTY_LOW_OFFSET, counterpartyLow);
+    }
+
+    long getEpochMillis(long index) {
+        return segment(index).getLong(offset(index) + MILLIS_OFFSET);
+    }
+
+    long getAmount(long index) {
+        return segment(index).getLong(offset(index) + AMOUNT_OFFSET);
+    }
+
+    int getTypeOrdinal(long index) {
+        return segment(index).get(offset(index) + TYPE_OFFSET);
+    }
+
+    String getDescription(long index) {
+        ByteBuffer segment = segment(index);
+        int offset = offset(index);
+        byte counterpartyHigh = segment.get(offset + COUNTERPARTY_HIGH_OFFSET);
+        if (counterpartyHigh != TransactionHistory.NO_COUNTERPARTY) {
+            return TransactionHistory.describeTransfer(TYPES[segment.get(offset + TYPE_OFFSET)],
+                    counterpartyHigh, segment.getLong(offset + COUNTERPARTY_LOW_OFFSET));
+        }
+        int id = segment.getInt(offset + DESCRIPTION_OFFSET);
+        return id < 0 ? null : descriptions[id];
+    }
+
+    private ByteBuffer segment(long index) {
+        return segments[(int) (index / RECORDS_PER_SEGMENT)];
+    }
+
+    private int offset(long index) {
+        return (int) (index % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+    }
+
+    /**
+     * Номер записи, следующей за последним зарезервированным блоком
+     */
+    synchronized long getEnd() {
+        return end;
+    }
+
+    /**
+     * Продолжение архива с позиции из снимка
+     */
+    synchronized void restoreEnd(long end) {
+        if (end > (long) segments.length * RECORDS_PER_SEGMENT) {
+            throw new IllegalStateException("Снимок ссылается на отсутствующие файлы архива");
+        }
+        this.end = end;
+    }
+
+    /**
+     * Сброс записанных блоков и словаря на диск (перед сохранением снимка)
+     */
+    public void force() throws IOException {
+        dictionary.force(false);
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Сброс и закрытие архива; повторный вызов (например, из обработчика завершения) ничего не делает
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        force();
+        dictionary.close();
+    }
+
+    private void mapSegment(int segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Отображение остается действительным после закрытия канала
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    SEGMENT_BYTES);
+            MappedByteBuffer[] grown = Arrays.copyOf(segments, segment + 1);
+            grown[segment] = buffer;
+            segments = grown;
+        }
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format(SEGMENT_FORMAT, segment));
+    }
+
+    // Словарь описаний
+
+    private int internDescription(String description) throws IOException {
+        if (description == null) {
+            return -1;
+        }
+        Integer id = descriptionIds.get(description);
+        if (id != null) {
+            return id;
+        }
+        synchronized (dictionary) {
+            id = descriptionIds.get(description);
+            if (id == null) {
+                byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer entry = ByteBuffer.allocate(4 + bytes.length);
+                entry.putInt(bytes.length).put(bytes).flip();
+                long position = dictionary.size();
+                while (entry.hasRemaining()) {
+                    position += dictionary.write(entry, position);
+                }
+                id = addDescription(description);
+            }
+            return id;
+        }
+    }
+
+    private int addDescription(String description) {
+        String[] table = descriptions;
+        if (descriptionCount == table.length) {
+            table = Arrays.copyOf(table, table.length * 2);
+        }
+        table[descriptionCount] = description;
+        descriptions = table; // Публикация строки до выдачи ее номера
+        int id = descriptionCount++;
+        descriptionIds.put(description, id);
+        return id;
+    }
+
+    private void loadDictionary() throws IOException {
+        long size = dictionary.size();
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && dictionary.read(buffer, buffer.position()) > 0) {
+            // Читаем словарь целиком
+        }
+        buffer.flip();
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt(buffer.position());
+            if (length < 0 || buffer.remaining() < 4 + length) {
+                break; // Оборванная последняя строка
+            }
+            buffer.getInt();
+            String description = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            addDescription(description);
+        }
+        dictionary.truncate(buffer.position());
+    }
+}
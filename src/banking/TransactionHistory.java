@@ -0,0 +1,491 @@
+package banking;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * История транзакций счета в колоночном виде: время в миллисекундах, тип, сумма и номер
+ * описания в общей таблице строк хранятся в примитивных массивах (около 21 байта на запись
+ * вместо объекта Transaction с LocalDateTime). Объекты Transaction создаются только при чтении.
+ * <p>
+ * В общую таблицу попадают только постоянные тексты ("Пополнение счета" и т.п.). Описание
+ * перевода содержит номер счета контрагента, поэтому номер хранится отдельной колонкой
+ * (первые 2 цифры и остальные 18 числом, как в AccountNumberTable; еще 9 байт на запись,
+ * массивы создаются при первом переводе), а текст собирается при чтении.
+ * <p>
+ * Если подключен архив, горячая часть ограничена HOT_LIMIT записями: старые записи
+ * блоками по SPILL_BATCH уходят в TransactionArchive, в памяти остаются только позиции
+ * блоков. Позиции 0..coldSize-1 читаются из архива, остальные - из горячих массивов.
+ * <p>
+ * Время в истории не убывает, поэтому окно по времени ищется двоичным поиском.
+ * Каждые CHECKPOINT_INTERVAL записей сохраняются нарастающие итоги сумм и количеств
+ * по типам: сумма по типу за период считается как разность итогов на границах периода,
+ * при этом досчитывается не более одного неполного интервала с каждой стороны.
+ * SPILL_BATCH кратен CHECKPOINT_INTERVAL, поэтому холодная часть кончается на границе
+ * интервала: ее итоги сохраняются в снимке вместе с блоками и при загрузке не пересчитываются.
+ * <p>
+ * Идентификаторы запросов клиентов хранятся только у горячих записей, в массиве, который
+ * создается при первой записи с идентификатором; в архив и снимок они не попадают.
+ * Класс не синхронизирован: обращения выполняются под блокировкой счета
+ */
+final class TransactionHistory {
+    private static final int INITIAL_CAPACITY = 4;
+    static final int HOT_LIMIT = 1024;
+    static final int SPILL_BATCH = 512;
+    static final int CHECKPOINT_INTERVAL = 256;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final TransactionType[] TYPES = TransactionType.values();
+    static final byte NO_COUNTERPARTY = -1;
+    private static final String TRANSFER_OUT_PREFIX = BankAccount.transferDescription(TransactionType.TRANSFER_OUT, "");
+    private static final String TRANSFER_IN_PREFIX = BankAccount.transferDescription(TransactionType.TRANSFER_IN, "");
+
+    // Общая таблица постоянных описаний: "Пополнение счета", "Снятие наличных" и т.п.
+    private static final ConcurrentHashMap<String, Integer> DESCRIPTION_IDS = new ConcurrentHashMap<>();
+    private static final Object DESCRIPTION_LOCK = new Object();
+    private static volatile String[] descriptions = new String[64];
+    private static int descriptionCount;
+
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    private int[] descriptionIds = new int[INITIAL_CAPACITY];
+    private String[] requestIds;            // null, пока не было операций с идентификатором
+    private byte[] counterpartyHighs;       // null, пока не было переводов
+    private long[] counterpartyLows;
+    private int hotSize;
+    private long lastMillis = Long.MIN_VALUE;
+
+    // Холодная часть: блоки архива и номер первой транзакции каждого блока
+    private TransactionArchive archive;
+    private long[] chunkPositions = new long[0];
+    private int[] chunkStarts = new int[0];
+    private int chunkCount;
+    private int coldSize;
+
+    // Нарастающие итоги по типам: текущие и на каждой границе CHECKPOINT_INTERVAL записей
+    private final long[] runningSums = new long[TYPES.length];
+    private final int[] runningCounts = new int[TYPES.length];
+    private long[] checkpointSums = new long[TYPES.length];
+    private int[] checkpointCounts = new int[TYPES.length];
+
+    /**
+     * Подключение архива: дальнейшие записи сверх HOT_LIMIT сбрасываются в него
+     */
+    void attachArchive(TransactionArchive archive) {
+        this.archive = archive;
+        spillIfFull();
+    }
+
+    /**
+     * Восстановление холодной части из снимка (до горячих записей): блоки архива и итоги
+     * на границах интервалов берутся из снимка, из архива читается только время последней записи
+     *
+     * @throws IllegalArgumentException если итоги снимка не соответствуют блокам
+     */
+    void restoreCold(ColdChunks cold) {
+        if (hotSize > 0 || coldSize > 0 || archive == null) {
+            throw new IllegalStateException("Холодная часть восстанавливается после подключения архива " +
+                    "и до горячих записей");
+        }
+        for (int i = 0; i < cold.positions().length; i++) {
+            appendChunk(cold.positions()[i], cold.counts()[i]);
+        }
+        int checkpoints = coldSize / CHECKPOINT_INTERVAL + 1;
+        if (coldSize % CHECKPOINT_INTERVAL != 0 || cold.checkpointSums().length != checkpoints * TYPES.length
+                || cold.checkpointCounts().length != checkpoints * TYPES.length) {
+            throw new IllegalArgumentException("Итоги истории не соответствуют блокам архива");
+        }
+        checkpointSums = Arrays.copyOf(cold.checkpointSums(), Math.max(checkpointSums.length, checkpoints * TYPES.length));
+        checkpointCounts = Arrays.copyOf(cold.checkpointCounts(), checkpointSums.length);
+        int last = (checkpoints - 1) * TYPES.length;
+        System.arraycopy(checkpointSums, last, runningSums, 0, TYPES.length);
+        System.arraycopy(checkpointCounts, last, runningCounts, 0, TYPES.length);
+        if (coldSize > 0) {
+            lastMillis = getEpochMillis(coldSize - 1);
+        }
+    }
+
+    private void appendChunk(long position, int count) {
+        if (chunkCount == chunkPositions.length) {
+            chunkPositions = Arrays.copyOf(chunkPositions, Math.max(4, chunkCount * 2));
+            chunkStarts = Arrays.copyOf(chunkStarts, chunkPositions.length);
+        }
+        chunkPositions[chunkCount] = position;
+        chunkStarts[chunkCount] = coldSize;
+        chunkCount++;
+        coldSize += count;
+    }
+
+    void add(Transaction transaction) {
+        add(toEpochMillis(transaction.getTimestamp()), transaction.getType(), transaction.getAmount(),
+                transaction.getDescription(), transaction.getRequestId());
+    }
+
+    void add(long epochMillis, TransactionType type, long amount, String description) {
+        add(epochMillis, type, amount, description, null);
+    }
+
+    void add(long epochMillis, TransactionType type, long amount, String description, String requestId) {
+        if (hotSize == timestamps.length) {
+            int capacity = hotSize * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            types = Arrays.copyOf(types, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+            descriptionIds = Arrays.copyOf(descriptionIds, capacity);
+            if (requestIds != null) {
+                requestIds = Arrays.copyOf(requestIds, capacity);
+            }
+            if (counterpartyHighs != null) {
+                counterpartyHighs = Arrays.copyOf(counterpartyHighs, capacity);
+                counterpartyLows = Arrays.copyOf(counterpartyLows, capacity);
+            }
+        }
+        if (requestId != null && requestIds == null) {
+            requestIds = new String[timestamps.length];
+        }
+        // При переводе системных часов назад берется время предыдущей записи
+        lastMillis = Math.max(epochMillis, lastMillis);
+        timestamps[hotSize] = lastMillis;
+        types[hotSize] = (byte) type.ordinal();
+        amounts[hotSize] = amount;
+        int counterparty = counterpartyOffset(type, description);
+        if (counterparty >= 0) {
+            if (counterpartyHighs == null) {
+                counterpartyHighs = new byte[timestamps.length];
+                counterpartyLows = new long[timestamps.length];
+                Arrays.fill(counterpartyHighs, 0, hotSize, NO_COUNTERPARTY);
+            }
+            counterpartyHighs[hotSize] = (byte) AccountValidator.parseDigits(description, counterparty, counterparty + 2);
+            counterpartyLows[hotSize] = AccountValidator.parseDigits(description, counterparty + 2,
+                    counterparty + AccountValidator.ACCOUNT_NUMBER_LENGTH);
+            descriptionIds[hotSize] = -1;
+        } else {
+            if (counterpartyHighs != null) {
+                counterpartyHighs[hotSize] = NO_COUNTERPARTY;
+            }
+            descriptionIds[hotSize] = intern(description);
+        }
+        if (requestIds != null) {
+            requestIds[hotSize] = requestId;
+        }
+        account(type.ordinal(), amount, size());
+        hotSize++;
+        spillIfFull();
+    }
+
+    /**
+     * Учет записи с позицией index в нарастающих итогах
+     */
+    private void account(int type, long amount, int index) {
+        runningSums[type] += amount;
+        runningCounts[type]++;
+        if ((index + 1) % CHECKPOINT_INTERVAL == 0) {
+            int offset = (index + 1) / CHECKPOINT_INTERVAL * TYPES.length;
+            if (offset + TYPES.length > checkpointSums.length) {
+                checkpointSums = Arrays.copyOf(checkpointSums, checkpointSums.length * 2);
+                checkpointCounts = Arrays.copyOf(checkpointCounts, checkpointSums.length);
+            }
+            System.arraycopy(runningSums, 0, checkpointSums, offset, TYPES.length);
+            System.arraycopy(runningCounts, 0, checkpointCounts, offset, TYPES.length);
+        }
+    }
+
+    private void spillIfFull() {
+        while (archive != null && hotSize >= HOT_LIMIT) {
+            long position;
+            try {
+                position = archive.reserve(SPILL_BATCH);
+                for (int i = 0; i < SPILL_BATCH; i++) {
+                    int descriptionId = descriptionIds[i];
+                    archive.write(position + i, timestamps[i], TYPES[types[i]], amounts[i],
+                            descriptionId < 0 ? null : descriptions[descriptionId],
+                            counterpartyHighs == null ? NO_COUNTERPARTY : counterpartyHighs[i],
+                            counterpartyHighs == null ? 0 : counterpartyLows[i]);
+                }
+            } catch (IOException e) {
+                // Операция по счету уже проведена, поэтому история остается в памяти
+                System.err.println("Ошибка записи архива истории, архив отключен: " + e.getMessage());
+                archive = null;
+                return;
+            }
+            int remaining = hotSize - SPILL_BATCH;
+            System.arraycopy(timestamps, SPILL_BATCH, timestamps, 0, remaining);
+            System.arraycopy(types, SPILL_BATCH, types, 0, remaining);
+            System.arraycopy(amounts, SPILL_BATCH, amounts, 0, remaining);
+            System.arraycopy(descriptionIds, SPILL_BATCH, descriptionIds, 0, remaining);
+            if (requestIds != null) {
+                System.arraycopy(requestIds, SPILL_BATCH, requestIds, 0, remaining);
+                Arrays.fill(requestIds, remaining, hotSize, null);
+            }
+            if (counterpartyHighs != null) {
+                System.arraycopy(counterpartyHighs, SPILL_BATCH, counterpartyHighs, 0, remaining);
+                System.arraycopy(counterpartyLows, SPILL_BATCH, counterpartyLows, 0, remaining);
+            }
+            hotSize = remaining;
+            appendChunk(position, SPILL_BATCH);
+        }
+    }
+
+    int size() {
+        return coldSize + hotSize;
+    }
+
+    /**
+     * Число записей в памяти (горячая часть, последние в истории)
+     */
+    int hotSize() {
+        return hotSize;
+    }
+
+    Transaction get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Транзакция " + index + " из " + size());
+        }
+        if (index < coldSize) {
+            long position = coldPosition(index);
+            return new Transaction(toLocalDateTime(archive.getEpochMillis(position)),
+                    TYPES[archive.getTypeOrdinal(position)], archive.getAmount(position),
+                    archive.getDescription(position));
+        }
+        int hot = index - coldSize;
+        TransactionType type = TYPES[types[hot]];
+        String description;
+        if (counterpartyHighs != null && counterpartyHighs[hot] != NO_COUNTERPARTY) {
+            description = describeTransfer(type, counterpartyHighs[hot], counterpartyLows[hot]);
+        } else {
+            int descriptionId = descriptionIds[hot];
+            description = descriptionId < 0 ? null : descriptions[descriptionId];
+        }
+        return new Transaction(toLocalDateTime(timestamps[hot]), type, amounts[hot], description,
+                requestIds == null ? null : requestIds[hot]);
+    }
+
+    int getTypeOrdinal(int index) {
+        return index < coldSize ? archive.getTypeOrdinal(coldPosition(index)) : types[index - coldSize];
+    }
+
+    long getAmount(int index) {
+        return index < coldSize ? archive.getAmount(coldPosition(index)) : amounts[index - coldSize];
+    }
+
+    long getEpochMillis(int index) {
+        return index < coldSize ? archive.getEpochMillis(coldPosition(index)) : timestamps[index - coldSize];
+    }
+
+    /**
+     * Номер записи архива для позиции холодной части
+     */
+    private long coldPosition(int index) {
+        int chunk = Arrays.binarySearch(chunkStarts, 0, chunkCount, index);
+        if (chunk < 0) {
+            chunk = -chunk - 2; // Блок, в котором лежит позиция
+        }
+        return chunkPositions[chunk] + (index - chunkStarts[chunk]);
+    }
+
+    /**
+     * Блоки архива (копия позиций и размеров) и итоги холодной части для снимка
+     */
+    ColdChunks coldChunks() {
+        int[] counts = new int[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            counts[i] = (i + 1 < chunkCount ? chunkStarts[i + 1] : coldSize) - chunkStarts[i];
+        }
+        int checkpointValues = (coldSize / CHECKPOINT_INTERVAL + 1) * TYPES.length;
+        return new ColdChunks(Arrays.copyOf(chunkPositions, chunkCount), counts,
+                Arrays.copyOf(checkpointSums, checkpointValues), Arrays.copyOf(checkpointCounts, checkpointValues));
+    }
+
+    /**
+     * Холодная часть истории: позиции и размеры блоков архива, итоги сумм и количеств по типам
+     * на границах интервалов 0..coldSize/CHECKPOINT_INTERVAL (TYPES.length значений на границу)
+     */
+    record ColdChunks(long[] positions, int[] counts, long[] checkpointSums, int[] checkpointCounts) {
+    }
+
+    /**
+     * Транзакции с позициями [from, to)
+     */
+    List<Transaction> range(int from, int to) {
+        List<Transaction> result = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            result.add(get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Не более limit транзакций типа type (null - любого) с позициями [from, to),
+     * пропустив первые offset подходящих. Интервалы без транзакций нужного типа
+     * (или целиком попадающие в пропуск) пропускаются по итогам без чтения записей
+     */
+    List<Transaction> select(TransactionType type, int from, int to, int offset, int limit) {
+        if (type == null) {
+            int start = (int) Math.min(to, (long) from + offset);
+            return range(start, (int) Math.min(to, (long) start + limit));
+        }
+        List<Transaction> result = new ArrayList<>(Math.min(limit, Math.max(0, to - from)));
+        int ordinal = type.ordinal();
+        int skip = offset;
+        int i = from;
+        while (i < to && result.size() < limit) {
+            if (i % CHECKPOINT_INTERVAL == 0 && i + CHECKPOINT_INTERVAL <= to) {
+                int checkpoint = i / CHECKPOINT_INTERVAL;
+                int matches = countAt(checkpoint + 1, ordinal) - countAt(checkpoint, ordinal);
+                if (matches <= skip) {
+                    skip -= matches;
+                    i += CHECKPOINT_INTERVAL;
+                    continue;
+                }
+            }
+            if (getTypeOrdinal(i) == ordinal) {
+                if (skip > 0) {
+                    skip--;
+                } else {
+                    result.add(get(i));
+                }
+            }
+            i++;
+        }
+        return result;
+    }
+
+    /**
+     * Сумма транзакций типа type с позициями [from, to)
+     */
+    long sum(TransactionType type, int from, int to) {
+        return sumBefore(type.ordinal(), to) - sumBefore(type.ordinal(), from);
+    }
+
+    /**
+     * Число транзакций типа type с позициями [from, to)
+     */
+    int count(TransactionType type, int from, int to) {
+        return countBefore(type.ordinal(), to) - countBefore(type.ordinal(), from);
+    }
+
+    /**
+     * Сумма транзакций типа с позициями [0, index): итог ближайшей границы интервала
+     * и досчет оставшихся записей
+     */
+    private long sumBefore(int type, int index) {
+        int checkpoint = index / CHECKPOINT_INTERVAL;
+        long sum = checkpointSums[checkpoint * TYPES.length + type];
+        for (int i = checkpoint * CHECKPOINT_INTERVAL; i < index; i++) {
+            if (getTypeOrdinal(i) == type) {
+                sum += getAmount(i);
+            }
+        }
+        return sum;
+    }
+
+    private int countBefore(int type, int index) {
+        int checkpoint = index / CHECKPOINT_INTERVAL;
+        int count = countAt(checkpoint, type);
+        for (int i = checkpoint * CHECKPOINT_INTERVAL; i < index; i++) {
+            if (getTypeOrdinal(i) == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int countAt(int checkpoint, int type) {
+        return checkpointCounts[checkpoint * TYPES.length + type];
+    }
+
+    /**
+     * Позиция первой транзакции не раньше epochMillis (size, если таких нет)
+     */
+    int lowerBound(long epochMillis) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getEpochMillis(middle) < epochMillis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Позиция номера контрагента в описании перевода ("Перевод на счет НОМЕР") или -1,
+     * если описание не такого вида
+     */
+    static int counterpartyOffset(TransactionType type, String description) {
+        String prefix = type == TransactionType.TRANSFER_OUT ? TRANSFER_OUT_PREFIX
+                : type == TransactionType.TRANSFER_IN ? TRANSFER_IN_PREFIX : null;
+        if (prefix == null || description == null
+                || description.length() != prefix.length() + AccountValidator.ACCOUNT_NUMBER_LENGTH
+                || !description.startsWith(prefix)) {
+            return -1;
+        }
+        for (int i = prefix.length(); i < description.length(); i++) {
+            char c = description.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+        }
+        return prefix.length();
+    }
+
+    /**
+     * Описание перевода по упакованному номеру контрагента
+     */
+    static String describeTransfer(TransactionType type, byte counterpartyHigh, long counterpartyLow) {
+        char[] number = new char[AccountValidator.ACCOUNT_NUMBER_LENGTH];
+        AccountValidator.writeDigits(number, 0, 2, counterpartyHigh);
+        AccountValidator.writeDigits(number, 2, AccountValidator.ACCOUNT_NUMBER_LENGTH - 2, counterpartyLow);
+        return BankAccount.transferDescription(type, new String(number));
+    }
+
+    private static int intern(String description) {
+        if (description == null) {
+            return -1;
+        }
+        Integer id = DESCRIPTION_IDS.get(description);
+        if (id != null) {
+            return id;
+        }
+        synchronized (DESCRIPTION_LOCK) {
+            id = DESCRIPTION_IDS.get(description);
+            if (id == null) {
+                String[] table = descriptions;
+                if (descriptionCount == table.length) {
+                    table = Arrays.copyOf(table, table.length * 2);
+                }
+                table[descriptionCount] = description;
+                descriptions = table; // Публикация строки до выдачи ее номера
+                id = descriptionCount++;
+                DESCRIPTION_IDS.put(description, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Время в миллисекундах; даты за пределами диапазона long (границы периода
+     * вроде LocalDateTime.MIN) приводятся к Long.MIN_VALUE или Long.MAX_VALUE
+     */
+    static long toEpochMillis(LocalDateTime timestamp) {
+        Instant instant = timestamp.atZone(ZONE).toInstant();
+        try {
+            return instant.toEpochMilli();
+        } catch (ArithmeticException e) {
+            return instant.getEpochSecond() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZONE);
+    }
+}
@@ -6,7 +6,9 @@ package banking;
 public enum TransactionType {
     DEPOSIT("Пополнение"),
     WITHDRAWAL("Снятие"),
-    OPEN_ACCOUNT("Открытие счета");
+    OPEN_ACCOUNT("Открытие счета"),
+    TRANSFER_OUT("Перевод (списание)"),
+    TRANSFER_IN("Перевод (зачисление)");
 
     private final String description;
 
@@ -0,0 +1,160 @@
+package banking.batch;
+
+import banking.Money;
+import banking.RequestDeduplicator;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Одна операция пакетного файла.
+ * Формат строки (разделитель ';', строки с '#' - комментарии, суммы в рублях вида 1500.50):
+ * <pre>
+ * OPEN;номер счета;начальный баланс;БИК;КПП;корр. счет;ИНН;владелец
+ * DEPOSIT;номер счета;сумма
+ * WITHDRAW;номер счета;сумма
+ * TRANSFER;счет списания;сумма;счет зачисления
+ * </pre>
+ * Последним полем можно добавить идентификатор запроса клиента: операция с уже проведенным
+ * идентификатором не проводится повторно (см. RequestDeduplicator)
+ */
+public class BatchOperation {
+
+    public enum Type {
+        OPEN, DEPOSIT, WITHDRAW, TRANSFER
+    }
+
+    private static final char SEPARATOR = ';';
+
+    private final long lineNumber;
+    private final Type type;
+    private final String accountNumber;
+    private final long amount;              // В копейках
+    private final String[] fields;      // Все поля строки (для OPEN и TRANSFER)
+    private final String requestId;         // null, если не задан
+    private final CountDownLatch barrier;   // Только у служебного маркера барьера
+
+    private BatchOperation(long lineNumber, Type type, String accountNumber, long amount,
+                           String[] fields, String requestId, CountDownLatch barrier) {
+        this.lineNumber = lineNumber;
+        this.type = type;
+        this.accountNumber = accountNumber;
+        this.amount = amount;
+        this.fields = fields;
+        this.requestId = requestId;
+        this.barrier = barrier;
+    }
+
+    /**
+     * Служебный маркер конца входного файла для очередей разделов
+     */
+    static BatchOperation endOfInput() {
+        return new BatchOperation(0, Type.DEPOSIT, "", 0, new String[0], null, null);
+    }
+
+    /**
+     * Служебный маркер барьера: раздел, дошедший до него, уменьшает счетчик reached
+     * (все операции, поставленные в очередь раньше, уже проведены)
+     */
+    static BatchOperation barrier(CountDownLatch reached) {
+        return new BatchOperation(0, Type.DEPOSIT, "", 0, new String[0], null, reached);
+    }
+
+    /**
+     * Разбор строки пакетного файла
+     *
+     * @throws IllegalArgumentException если строка не соответствует формату
+     */
+    public static BatchOperation parse(long lineNumber, String line) {
+        String[] fields = split(line);
+        Type type;
+        try {
+            type = Type.valueOf(fields[0].trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестная операция: " + fields[0]);
+        }
+
+        int expectedFields = switch (type) {
+            case OPEN -> 8;
+            case DEPOSIT, WITHDRAW -> 3;
+            case TRANSFER -> 4;
+        };
+        if (fields.length != expectedFields && fields.length != expectedFields + 1) {
+            throw new IllegalArgumentException("Операция " + type + " должна содержать " +
+                    expectedFields + " полей (или " + (expectedFields + 1) +
+                    " с идентификатором запроса), получено " + fields.length);
+        }
+        String requestId = null;
+        if (fields.length > expectedFields) {
+            requestId = fields[expectedFields].trim();
+            RequestDeduplicator.checkRequestId(requestId);
+        }
+
+        if (type == Type.TRANSFER && fields[3].isBlank()) {
+            throw new IllegalArgumentException("Не указан счет зачисления");
+        }
+
+        long amount = Money.parse(fields[2]); // NumberFormatException - тоже IllegalArgumentException
+        return new BatchOperation(lineNumber, type, fields[1].trim(), amount, fields, requestId, null);
+    }
+
+    private static String[] split(String line) {
+        int count = 1;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == SEPARATOR) {
+                count++;
+            }
+        }
+        String[] fields = new String[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = line.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                end = line.length();
+            }
+            fields[i] = line.substring(start, end);
+            start = end + 1;
+        }
+        return fields;
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+
+    /**
+     * Сумма операции (для OPEN - начальный баланс) в копейках
+     */
+    public long getAmount() {
+        return amount;
+    }
+
+    /**
+     * Идентификатор запроса клиента или null
+     */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Поле строки по номеру, пустые значения возвращаются как null
+     */
+    public String getField(int index) {
+        String value = fields[index].trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Счетчик барьера или null, если это не маркер барьера
+     */
+    CountDownLatch getBarrier() {
+        return barrier;
+    }
+}
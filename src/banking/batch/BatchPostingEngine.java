@@ -0,0 +1,337 @@
+package banking.batch;
+
+import banking.AccountRegistry;
+import banking.BankAccount;
+import banking.Money;
+import banking.RequestDeduplicator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Пакетное проведение операций из файла.
+ * Файл читается потоково, операции распределяются по разделам по хешу номера счета,
+ * поэтому операции одного счета выполняются по порядку, а разные разделы - параллельно.
+ * Очереди разделов и отчета ограничены, так что расход памяти не зависит от размера файла.
+ * <p>
+ * Перевод между счетами разных разделов проводится барьером: поток чтения ждет, пока оба раздела
+ * проведут все операции, стоящие в файле раньше, проводит перевод сам и только потом передает
+ * разделам следующие строки. Поэтому каждый счет видит операции строго в порядке файла (открытие
+ * счета до перевода на него, перевод до следующих операций получателя) и результат не зависит
+ * от числа разделов. Каждый такой перевод приостанавливает конвейер, поэтому файл, состоящий
+ * в основном из переводов между разными счетами, проводится почти последовательно.
+ * Операции с уже проведенным идентификатором запроса (в том числе из предыдущего файла
+ * в окне RequestDeduplicator) не проводятся повторно, в отчет пишется результат первого проведения
+ */
+public class BatchPostingEngine {
+    private static final int QUEUE_CAPACITY = 8_192;
+    private static final BatchOperation END_OF_INPUT = BatchOperation.endOfInput();
+    private static final ReportLine END_OF_REPORT = new ReportLine(false, "");
+
+    private final AccountRegistry registry;
+    private final RequestDeduplicator deduplicator;
+    private final int partitions;
+
+    private final LongAdder records = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+
+    public BatchPostingEngine(AccountRegistry registry, int partitions) {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("Число разделов должно быть положительным");
+        }
+        this.registry = registry;
+        this.deduplicator = registry.getRequestDeduplicator();
+        this.partitions = partitions;
+    }
+
+    /**
+     * Проведение всех операций файла
+     *
+     * @param input          входной CSV-файл операций
+     * @param resultsFile    отчет о проведенных операциях
+     * @param rejectionsFile отчет об отклоненных операциях
+     */
+    public BatchReport run(Path input, Path resultsFile, Path rejectionsFile)
+            throws IOException, InterruptedException {
+        long startNanos = System.nanoTime();
+        records.reset();
+        applied.reset();
+        rejected.reset();
+        duplicates.reset();
+
+        BlockingQueue<ReportLine> reportQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        ReportWriter reportWriter = new ReportWriter(reportQueue, resultsFile, rejectionsFile);
+        Thread reportThread = new Thread(reportWriter, "batch-report");
+        reportThread.start();
+
+        List<BlockingQueue<BatchOperation>> queues = new ArrayList<>(partitions);
+        List<Thread> workers = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            BlockingQueue<BatchOperation> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            Thread worker = new Thread(() -> drain(queue, reportQueue), "batch-partition-" + i);
+            queues.add(queue);
+            workers.add(worker);
+            worker.start();
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                records.increment();
+                try {
+                    BatchOperation operation = BatchOperation.parse(lineNumber, line);
+                    int partition = partitionOf(operation.getAccountNumber());
+                    if (operation.getType() == BatchOperation.Type.TRANSFER) {
+                        int targetPartition = partitionOf(operation.getField(3));
+                        if (targetPartition != partition) {
+                            awaitPartitions(queues.get(partition), queues.get(targetPartition));
+                            process(operation, reportQueue); // Оба раздела простаивают до следующей строки
+                            continue;
+                        }
+                    }
+                    queues.get(partition).put(operation);
+                } catch (IllegalArgumentException e) {
+                    reject(reportQueue, lineNumber, e.getMessage(), line);
+                }
+            }
+        } finally {
+            for (BlockingQueue<BatchOperation> queue : queues) {
+                queue.put(END_OF_INPUT);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            reportQueue.put(END_OF_REPORT);
+            reportThread.join();
+        }
+
+        if (reportWriter.failure != null) {
+            throw reportWriter.failure;
+        }
+        return new BatchReport(records.sum(), applied.sum(), rejected.sum(), duplicates.sum(),
+                System.nanoTime() - startNanos);
+    }
+
+    private int partitionOf(String accountNumber) {
+        int hash = accountNumber.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), partitions);
+    }
+
+    /**
+     * Ожидание, пока разделы проведут все уже поставленные в их очереди операции
+     */
+    private static void awaitPartitions(BlockingQueue<BatchOperation> first, BlockingQueue<BatchOperation> second)
+            throws InterruptedException {
+        CountDownLatch reached = new CountDownLatch(2);
+        BatchOperation barrier = BatchOperation.barrier(reached);
+        first.put(barrier);
+        second.put(barrier);
+        reached.await();
+    }
+
+    /**
+     * Цикл раздела: проведение операций своей очереди до маркера конца файла
+     */
+    private void drain(BlockingQueue<BatchOperation> queue, BlockingQueue<ReportLine> reportQueue) {
+        try {
+            while (true) {
+                BatchOperation operation = queue.take();
+                if (operation == END_OF_INPUT) {
+                    return;
+                }
+                if (operation.getBarrier() != null) {
+                    operation.getBarrier().countDown();
+                    continue;
+                }
+                process(operation, reportQueue);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Проведение одной операции с учетом идентификатора запроса и запись строки отчета
+     */
+    private void process(BatchOperation operation, BlockingQueue<ReportLine> reportQueue)
+            throws InterruptedException {
+        try {
+            boolean[] executed = new boolean[1];
+            RequestDeduplicator.Result result = deduplicator.execute(operation.getRequestId(), () -> {
+                executed[0] = true;
+                return apply(operation);
+            });
+            if (!executed[0]) {
+                duplicates.increment();
+            }
+            if (result.rejected()) {
+                reject(reportQueue, operation.getLineNumber(), result.text(),
+                        operation.getType() + ";" + operation.getAccountNumber());
+                return;
+            }
+            if (executed[0]) {
+                applied.increment();
+            }
+            // Операция, проведенная до перезапуска без сохраненного итога, - по текущему балансу
+            String line = result.isRecovered()
+                    ? reportLine(operation, findAccount(operation.getAccountNumber())) : result.text();
+            reportQueue.put(new ReportLine(false, operation.getLineNumber() + ";" + line));
+        } catch (RuntimeException e) {
+            // Ошибка одной операции не должна останавливать раздел
+            reject(reportQueue, operation.getLineNumber(), e.getMessage(),
+                    operation.getType() + ";" + operation.getAccountNumber());
+        }
+    }
+
+    /**
+     * Проведение операции, возвращает строку отчета или отказ (неверные данные, неизвестный счет,
+     * недостаточно средств): отказ - итог запроса, повтор с тем же идентификатором получит его же
+     */
+    private RequestDeduplicator.Result apply(BatchOperation operation) {
+        try {
+            BankAccount account = post(operation);
+            if (account == null) {
+                return RequestDeduplicator.Result.rejected("Недостаточно средств");
+            }
+            return RequestDeduplicator.Result.ok(reportLine(operation, account));
+        } catch (IllegalArgumentException e) {
+            return RequestDeduplicator.Result.rejected(e.getMessage());
+        }
+    }
+
+    /**
+     * Проведение операции, возвращает счет для строки отчета или null при недостатке средств
+     *
+     * @throws IllegalArgumentException если операция отклонена
+     */
+    private BankAccount post(BatchOperation operation) {
+        String accountNumber = operation.getAccountNumber();
+        long amount = operation.getAmount();
+        String requestId = operation.getRequestId();
+
+        if (operation.getType() == BatchOperation.Type.OPEN) {
+            BankAccount account = new BankAccount(accountNumber, operation.getField(3),
+                    operation.getField(4), operation.getField(5), operation.getField(6),
+                    operation.getField(7), amount);
+            registry.register(account);
+            return account;
+        }
+
+        BankAccount account = findAccount(accountNumber);
+        switch (operation.getType()) {
+            case DEPOSIT -> account.deposit(amount, requestId);
+            case WITHDRAW -> {
+                if (!account.withdraw(amount, requestId)) {
+                    return null;
+                }
+            }
+            case TRANSFER -> {
+                BankAccount target = findAccount(operation.getField(3));
+                if (!BankAccount.transfer(account, target, amount, requestId)) {
+                    return null;
+                }
+            }
+            default -> throw new IllegalStateException("Неожиданная операция: " + operation.getType());
+        }
+        return account;
+    }
+
+    private static String reportLine(BatchOperation operation, BankAccount account) {
+        StringBuilder line = new StringBuilder(64)
+                .append(operation.getType()).append(';')
+                .append(operation.getAccountNumber()).append(';');
+        Money.appendTo(line, operation.getAmount()).append(';');
+        return Money.appendTo(line, account.getBalance()).toString();
+    }
+
+    private BankAccount findAccount(String accountNumber) {
+        BankAccount account = registry.findByNumber(accountNumber);
+        if (account == null) {
+            throw new IllegalArgumentException("Счет с номером " + accountNumber + " не найден");
+        }
+        return account;
+    }
+
+    private void reject(BlockingQueue<ReportLine> reportQueue, long lineNumber, String reason,
+                        String details) throws InterruptedException {
+        rejected.increment();
+        reportQueue.put(new ReportLine(true, lineNumber + ";" + reason + ";" + details));
+    }
+
+    /**
+     * Строка отчета: проведенная или отклоненная операция
+     */
+    private record ReportLine(boolean rejection, String text) {
+    }
+
+    /**
+     * Поток записи отчетов (единственный писатель обоих файлов)
+     */
+    private static class ReportWriter implements Runnable {
+        private final BlockingQueue<ReportLine> queue;
+        private final Path resultsFile;
+        private final Path rejectionsFile;
+        private volatile IOException failure;
+
+        ReportWriter(BlockingQueue<ReportLine> queue, Path resultsFile, Path rejectionsFile) {
+            this.queue = queue;
+            this.resultsFile = resultsFile;
+            this.rejectionsFile = rejectionsFile;
+        }
+
+        @Override
+        public void run() {
+            try (BufferedWriter results = Files.newBufferedWriter(resultsFile, StandardCharsets.UTF_8);
+                 BufferedWriter rejections = Files.newBufferedWriter(rejectionsFile, StandardCharsets.UTF_8)) {
+                results.write("# строка;операция;счет;сумма;баланс после операции");
+                results.newLine();
+                rejections.write("# строка;причина;операция");
+                rejections.newLine();
+                while (true) {
+                    ReportLine line = queue.take();
+                    if (line == END_OF_REPORT) {
+                        return;
+                    }
+                    BufferedWriter target = line.rejection() ? rejections : results;
+                    target.write(line.text());
+                    target.newLine();
+                }
+            } catch (IOException e) {
+                failure = e;
+                drainQuietly();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * После ошибки записи продолжаем разбирать очередь, чтобы не остановить разделы
+         */
+        private void drainQuietly() {
+            try {
+                while (queue.take() != END_OF_REPORT) {
+                    // Отчет уже не может быть записан
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
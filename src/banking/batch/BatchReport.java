@@ -0,0 +1,54 @@
+package banking.batch;
+
+/**
+ * Итоги пакетной обработки
+ */
+public class BatchReport {
+    private final long records;
+    private final long applied;
+    private final long rejected;
+    private final long duplicates;
+    private final long elapsedNanos;
+
+    BatchReport(long records, long applied, long rejected, long duplicates, long elapsedNanos) {
+        this.records = records;
+        this.applied = applied;
+        this.rejected = rejected;
+        this.duplicates = duplicates;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getApplied() {
+        return applied;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Повторы уже проведенных запросов (не проведены, в отчете - результат первого проведения)
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getRecordsPerSecond() {
+        return elapsedNanos == 0 ? 0 : records * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Записей: %d | Проведено: %d | Отклонено: %d | Повторов: %d\n" +
+                        "Время: %.2f с | Скорость: %.0f записей/с",
+                records, applied, rejected, duplicates, elapsedNanos / 1e9, getRecordsPerSecond());
+    }
+}
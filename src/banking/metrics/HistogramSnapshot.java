@@ -0,0 +1,50 @@
+package banking.metrics;
+
+/**
+ * Неизменяемый снимок гистограммы задержек
+ */
+public class HistogramSnapshot {
+    private final long[] counts;
+    private final long totalCount;
+    private final int maxBucket;
+
+    HistogramSnapshot(long[] counts) {
+        this.counts = counts;
+        long total = 0;
+        int max = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += counts[i];
+            if (counts[i] > 0) {
+                max = i;
+            }
+        }
+        this.totalCount = total;
+        this.maxBucket = max;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Значение, не меньше которого percentile процентов записей (например, 99.9), в наносекундах
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return LatencyHistogram.highestValueOf(i);
+            }
+        }
+        return getMax();
+    }
+
+    public long getMax() {
+        return totalCount == 0 ? 0 : LatencyHistogram.highestValueOf(maxBucket);
+    }
+}
@@ -0,0 +1,77 @@
+package banking.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма задержек в наносекундах в духе HdrHistogram: значения до 128 хранятся точно,
+ * дальше каждый интервал [2^k, 2^(k+1)) делится на 64 корзины, поэтому относительная
+ * погрешность не превышает 1/64. Счетчики разбиты на полосы по потокам, запись -
+ * один getAndIncrement без общей точки конкуренции
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;          // 64
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;              // 128
+    private static final long MAX_VALUE = (1L << 42) - 1;                 // ~73 минуты
+    private static final int BUCKETS = bucketOf(MAX_VALUE) + 1;
+    private static final int STRIPES = stripeCount();
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+
+    public LatencyHistogram() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    public void record(long nanos) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        stripes[stripe].getAndIncrement(bucketOf(Math.max(0, Math.min(nanos, MAX_VALUE))));
+    }
+
+    /**
+     * Сумма полос на момент вызова (записи, идущие параллельно, могут не попасть)
+     */
+    public HistogramSnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.get(i);
+            }
+        }
+        return new HistogramSnapshot(counts);
+    }
+
+    public void reset() {
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                stripe.set(i, 0);
+            }
+        }
+    }
+
+    static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * Наибольшее значение, попадающее в корзину
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    private static int stripeCount() {
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        return Math.min(64, stripes);
+    }
+}
@@ -0,0 +1,35 @@
+package banking.metrics;
+
+import java.util.List;
+
+/**
+ * Отчет по метрикам операций: число выполнений и перцентили задержек
+ */
+public class MetricsReport {
+    private final List<OperationStats> operations;
+
+    MetricsReport(List<OperationStats> operations) {
+        this.operations = List.copyOf(operations);
+    }
+
+    public List<OperationStats> getOperations() {
+        return operations;
+    }
+
+    @Override
+    public String toString() {
+        if (operations.isEmpty()) {
+            return "Операций не было." + System.lineSeparator();
+        }
+        StringBuilder report = new StringBuilder(String.format("%-40s %12s %10s %10s %10s %10s%n",
+                "Операция", "Количество", "p50, мкс", "p99, мкс", "p999, мкс", "max, мкс"));
+        for (OperationStats stats : operations) {
+            HistogramSnapshot latency = stats.getLatency();
+            report.append(String.format("%-40s %12d %10.1f %10.1f %10.1f %10.1f%n",
+                    stats.getOperation().getDescription(), stats.getCount(),
+                    latency.getValueAtPercentile(50) / 1e3, latency.getValueAtPercentile(99) / 1e3,
+                    latency.getValueAtPercentile(99.9) / 1e3, latency.getMax() / 1e3));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,35 @@
+package banking.metrics;
+
+/**
+ * Операции, для которых собираются счетчики и гистограммы задержек
+ */
+public enum Operation {
+    OPEN("Открытие счета"),
+    DEPOSIT("Пополнение"),
+    WITHDRAW("Снятие"),
+    WITHDRAW_REJECTED("Снятие: недостаточно средств"),
+    POSTING_FAILED("Пополнение или снятие: ошибка (переполнение баланса)"),
+    TRANSFER("Перевод"),
+    TRANSFER_REJECTED("Перевод: недостаточно средств"),
+    SEARCH_BY_NUMBER("Поиск по номеру"),
+    SEARCH_BY_BIK("Поиск по БИК"),
+    SEARCH_BY_KPP("Поиск по КПП"),
+    SEARCH_BY_INN("Поиск по ИНН"),
+    SEARCH_BY_OWNER("Поиск по имени владельца"),
+    SEARCH_BY_BALANCE("Поиск по балансу"),
+    SEARCH_TOP("Поиск наибольших/наименьших балансов"),
+    SEARCH_ADVANCED("Комплексный поиск"),
+    SEARCH_SCAN("Поиск перебором"),
+    HISTORY_READ("Чтение истории"),
+    HISTORY_TOTALS("Итоги истории за период");
+
+    private final String description;
+
+    Operation(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,31 @@
+package banking.metrics;
+
+/**
+ * Число выполнений и задержки одной операции
+ */
+public class OperationStats {
+    private final Operation operation;
+    private final long count;
+    private final HistogramSnapshot latency;
+
+    OperationStats(Operation operation, long count, HistogramSnapshot latency) {
+        this.operation = operation;
+        this.count = count;
+        this.latency = latency;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Гистограмма задержек в наносекундах
+     */
+    public HistogramSnapshot getLatency() {
+        return latency;
+    }
+}
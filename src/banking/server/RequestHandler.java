@@ -0,0 +1,267 @@
+package banking.server;
+
+import banking.AccountRegistry;
+import banking.BankAccount;
+import banking.BankAccountSearch;
+import banking.Money;
+import banking.RequestDeduplicator;
+import banking.ShardedPostingEngine;
+import banking.Transaction;
+import banking.batch.BatchOperation;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Разбор и выполнение одного запроса протокола сервера.
+ * Запрос - строка с полями через ';'. Операции изменения записываются так же,
+ * как в пакетном файле (суммы в рублях вида 1500.50):
+ * <pre>
+ * OPEN;номер счета;начальный баланс;БИК;КПП;корр. счет;ИНН;владелец  -> OK;баланс
+ * DEPOSIT;номер счета;сумма                                           -> OK;баланс
+ * WITHDRAW;номер счета;сумма                                          -> OK;баланс
+ * TRANSFER;счет списания;сумма;счет зачисления                        -> OK;баланс счета списания
+ * BALANCE;номер счета                                                 -> OK;баланс
+ * HISTORY;номер счета;смещение;количество                             -> OK;N и N строк
+ *     время;тип;сумма;описание
+ * SEARCH;NUMBER|BIK|KPP|INN|OWNER;значение                            -> OK;N и N строк
+ *     номер счета;владелец;баланс
+ * </pre>
+ * Операции изменения принимают последним полем идентификатор запроса: повтор с тем же
+ * идентификатором (например, после тайм-аута, в том числе после перезапуска сервера с журналом)
+ * не проводится, а получает ответ первого выполнения, включая отказ (см. RequestDeduplicator).
+ * История счета из хранилища на диске (--store) содержит только операции с момента его загрузки в память.
+ * Ошибка или отказ: ERROR;описание
+ * <p>
+ * С журналом (--data) ответ на операцию изменения отправляется только после fsync журнала,
+ * поэтому подтвержденная операция переживает сбой. Ответы пакета запросов ждут одну общую
+ * группу fsync (group commit), задержка ответа - до --fsync-ms. Если журнал не сохранил
+ * операции, сервер закрывает соединение без ответов на пакет.
+ * <p>
+ * Пополнения и снятия проводятся через ShardedPostingEngine: поток соединения публикует операцию
+ * и ждет ее результата, блокировку счета берет только исполнитель раздела
+ */
+final class RequestHandler {
+    static final int MAX_PAGE_SIZE = 1_000;    // Предел строк в ответе HISTORY и SEARCH
+
+    private static final char SEPARATOR = ';';
+
+    private final AccountRegistry registry;
+    private final ShardedPostingEngine postingEngine;
+
+    RequestHandler(AccountRegistry registry, ShardedPostingEngine postingEngine) {
+        this.registry = registry;
+        this.postingEngine = postingEngine;
+    }
+
+    /**
+     * Выполнение запроса, ответ (одна или несколько строк с '\n') дописывается в response
+     *
+     * @return true для операции изменения: ответ на нее можно отправить только после fsync журнала
+     */
+    boolean handle(String request, StringBuilder response) {
+        int commandEnd = request.indexOf(SEPARATOR);
+        String command = (commandEnd < 0 ? request : request.substring(0, commandEnd)).trim();
+        boolean change = false;
+        try {
+            switch (command.toUpperCase()) {
+                case "OPEN", "DEPOSIT", "WITHDRAW", "TRANSFER" -> {
+                    change = true;
+                    BatchOperation operation = BatchOperation.parse(0, request);
+                    RequestDeduplicator.Result result = registry.getRequestDeduplicator()
+                            .execute(operation.getRequestId(), () -> apply(operation));
+                    if (result.isRecovered()) {
+                        // Проведена до перезапуска, ответ не сохранился - текущий баланс
+                        balance(response, findAccount(operation.getAccountNumber()));
+                    } else if (result.rejected()) {
+                        response.append("ERROR;").append(result.text()).append('\n');
+                    } else {
+                        response.append(result.text());
+                    }
+                }
+                case "BALANCE" -> {
+                    String[] fields = split(request, 2);
+                    balance(response, findAccount(fields[1]));
+                }
+                case "HISTORY" -> history(split(request, 4), response);
+                case "SEARCH" -> search(split(request, 3), response);
+                default -> throw new IllegalArgumentException("Неизвестная операция: " + command);
+            }
+        } catch (RuntimeException e) {
+            // Ответ мог быть начат до ошибки
+            response.setLength(0);
+            response.append("ERROR;").append(e.getMessage()).append('\n');
+        }
+        return change;
+    }
+
+    /**
+     * Проведение операции, возвращает ответ или отказ. Отказ (неверные данные, неизвестный
+     * счет, недостаточно средств) - итог запроса, который получит и повтор; прочие исключения
+     * (например, отказ журнала) означают, что операция не проведена
+     */
+    private RequestDeduplicator.Result apply(BatchOperation operation) {
+        try {
+            BankAccount account = post(operation);
+            if (account == null) {
+                return RequestDeduplicator.Result.rejected("Недостаточно средств");
+            }
+            return RequestDeduplicator.Result.ok(balance(new StringBuilder(32), account).toString());
+        } catch (IllegalArgumentException e) {
+            return RequestDeduplicator.Result.rejected(e.getMessage());
+        }
+    }
+
+    /**
+     * Проведение операции, возвращает счет для ответа или null при недостатке средств
+     */
+    private BankAccount post(BatchOperation operation) {
+        long amount = operation.getAmount();
+        String requestId = operation.getRequestId();
+        BankAccount account;
+        switch (operation.getType()) {
+            case OPEN -> {
+                account = new BankAccount(operation.getAccountNumber(), operation.getField(3),
+                        operation.getField(4), operation.getField(5), operation.getField(6),
+                        operation.getField(7), amount);
+                registry.register(account);
+            }
+            case DEPOSIT -> {
+                account = findAccount(operation.getAccountNumber());
+                post(account, true, amount, requestId);
+            }
+            case WITHDRAW -> {
+                account = findAccount(operation.getAccountNumber());
+                if (!post(account, false, amount, requestId)) {
+                    return null;
+                }
+            }
+            case TRANSFER -> {
+                account = findAccount(operation.getAccountNumber());
+                BankAccount target = findAccount(operation.getField(3));
+                if (!BankAccount.transfer(account, target, amount, requestId)) {
+                    return null;
+                }
+            }
+            default -> throw new IllegalStateException("Неожиданная операция: " + operation.getType());
+        }
+        return account;
+    }
+
+    private static StringBuilder balance(StringBuilder response, BankAccount account) {
+        ok(response).append(';');
+        return Money.appendTo(response, account.getBalance()).append('\n');
+    }
+
+    /**
+     * Проведение пополнения или снятия через исполнитель и ожидание результата
+     *
+     * @return false, если для снятия недостаточно средств
+     */
+    private boolean post(BankAccount account, boolean deposit, long amount, String requestId) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        ShardedPostingEngine.Callback callback = (applied, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(applied);
+            }
+        };
+        if (deposit) {
+            postingEngine.deposit(account, amount, requestId, callback);
+        } else {
+            postingEngine.withdraw(account, amount, requestId, callback);
+        }
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    private void history(String[] fields, StringBuilder response) {
+        BankAccount account = findAccount(fields[1]);
+        int offset = parseInt(fields[2], "Смещение");
+        int limit = Math.min(parseInt(fields[3], "Количество"), MAX_PAGE_SIZE);
+        List<Transaction> page = account.getTransactions(offset, limit);
+        ok(response).append(';').append(page.size()).append('\n');
+        for (Transaction transaction : page) {
+            response.append(transaction.getTimestamp()).append(';')
+                    .append(transaction.getType()).append(';');
+            Money.appendTo(response, transaction.getAmount()).append(';');
+            if (transaction.getDescription() != null) {
+                response.append(transaction.getDescription());
+            }
+            response.append('\n');
+        }
+    }
+
+    private void search(String[] fields, StringBuilder response) {
+        String value = fields[2].trim();
+        List<BankAccount> found = switch (fields[1].trim().toUpperCase()) {
+            case "NUMBER" -> BankAccountSearch.searchByAccountNumber(registry, value);
+            case "BIK" -> BankAccountSearch.searchByBik(registry, value);
+            case "KPP" -> BankAccountSearch.searchByKpp(registry, value);
+            case "INN" -> BankAccountSearch.searchByInn(registry, value);
+            case "OWNER" -> BankAccountSearch.searchByOwnerName(registry, value);
+            default -> throw new IllegalArgumentException("Неизвестный атрибут поиска: " + fields[1]);
+        };
+        int count = Math.min(found.size(), MAX_PAGE_SIZE);
+        ok(response).append(';').append(count).append('\n');
+        for (int i = 0; i < count; i++) {
+            BankAccount account = found.get(i);
+            response.append(account.getAccountNumber()).append(';')
+                    .append(account.getOwnerName()).append(';');
+            Money.appendTo(response, account.getBalance()).append('\n');
+        }
+    }
+
+    private static StringBuilder ok(StringBuilder response) {
+        return response.append("OK");
+    }
+
+    private BankAccount findAccount(String accountNumber) {
+        BankAccount account = registry.findByNumber(accountNumber.trim());
+        if (account == null) {
+            throw new IllegalArgumentException("Счет с номером " + accountNumber.trim() + " не найден");
+        }
+        return account;
+    }
+
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " должно быть целым числом: " + value);
+        }
+    }
+
+    /**
+     * Разбиение запроса ровно на count полей
+     */
+    private static String[] split(String request, int count) {
+        String[] fields = new String[count];
+        int start = 0;
+        for (int i = 0; i < count - 1; i++) {
+            int end = request.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                throw fieldCountMismatch(request, count);
+            }
+            fields[i] = request.substring(start, end);
+            start = end + 1;
+        }
+        if (request.indexOf(SEPARATOR, start) >= 0) {
+            throw fieldCountMismatch(request, count);
+        }
+        fields[count - 1] = request.substring(start);
+        return fields;
+    }
+
+    private static IllegalArgumentException fieldCountMismatch(String request, int count) {
+        return new IllegalArgumentException("Запрос должен содержать " + count + " полей: " + request);
+    }
+}
@@ -0,0 +1,172 @@
+package banking.server;
+
+import banking.AccountRegistry;
+import banking.Journal;
+import banking.ShardedPostingEngine;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Сервер запросов на локальном TCP-порту: каждое соединение обслуживается отдельным
+ * потоком, который читает запросы построчно (протокол - в RequestHandler) и вызывает
+ * те же методы счетов и реестра, что консольное меню и пакетный режим.
+ * <p>
+ * На Java 21+ соединения обслуживаются виртуальными потоками, на более старых версиях -
+ * платформенными потоками из кэширующего пула. Блокировки счетов - ReentrantLock,
+ * поэтому виртуальный поток не закрепляется за несущим при ожидании блокировки.
+ * Клиент может отправлять запросы, не дожидаясь ответов: ответы копятся в буфере
+ * и отправляются, когда прочитаны все пришедшие запросы.
+ * Перед отправкой ответов на операции изменения поток соединения ждет fsync журнала
+ * (см. RequestHandler). Пополнения и снятия проводит ShardedPostingEngine с разделом на каждые два ядра
+ */
+public class RequestServer implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 14;
+    private static final int RING_CAPACITY = 1 << 14;
+
+    private final ShardedPostingEngine postingEngine;
+    private final RequestHandler handler;
+    private final Journal journal;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = connectionExecutor();
+    private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    /**
+     * Сервер на порту локального интерфейса (0 - любой свободный порт)
+     *
+     * @param journal журнал реестра или null, если состояние не сохраняется
+     */
+    public RequestServer(AccountRegistry registry, int port, Journal journal) throws IOException {
+        this.journal = journal;
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        // Половина ядер остается потокам соединений
+        this.postingEngine = new ShardedPostingEngine(
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2), RING_CAPACITY);
+        this.handler = new RequestHandler(registry, postingEngine);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Прием соединений в текущем потоке до вызова close()
+     */
+    public void serve() throws IOException {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                if (closed) {
+                    return;
+                }
+                throw e;
+            }
+            openSockets.add(socket);
+            connections.execute(() -> handle(socket));
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                     StandardCharsets.UTF_8), BUFFER_SIZE);
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                     StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            socket.setTcpNoDelay(true);
+            StringBuilder response = new StringBuilder(256);
+            String request;
+            boolean changed = false;    // В пакете есть операции изменения
+            while ((request = in.readLine()) != null) {
+                if (request.isBlank()) {
+                    continue;
+                }
+                response.setLength(0);
+                changed |= handler.handle(request, response);
+                out.append(response);
+                if (!in.ready()) {
+                    // Очередной пакет запросов обработан: подтверждения - только после fsync
+                    if (changed && journal != null) {
+                        syncJournal(socket);
+                    }
+                    changed = false;
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // Клиент разорвал соединение или журнал отказал - обслуживать больше некого
+        } finally {
+            openSockets.remove(socket);
+        }
+    }
+
+    /**
+     * Ожидание fsync журнала; при отказе журнала соединение закрывается сразу, чтобы закрытие
+     * буфера ответов не отправило клиенту несохраненные подтверждения
+     */
+    private void syncJournal(Socket socket) throws IOException {
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Остановка приема и закрытие открытых соединений
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (Socket socket : openSockets) {
+            socket.close();
+        }
+        connections.shutdown();
+        try {
+            connections.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        postingEngine.close(); // Операции, уже отправленные соединениями, проводятся
+    }
+
+    /**
+     * Исполнитель "поток на соединение": виртуальные потоки, если они есть в JDK
+     */
+    private static ExecutorService connectionExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "bank-connection-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
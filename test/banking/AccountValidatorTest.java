@@ -0,0 +1,133 @@
+package banking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка реквизитов: формат полей, контрольные разряды ИНН и ключ номера счета,
+ * а также совпадение проверки формата с прежней проверкой регулярными выражениями
+ */
+class AccountValidatorTest {
+    private static final String BIK = "044525225";
+    private static final String KPP = "773601001";
+    private static final String CORR_ACCOUNT = "30101810400000000225";
+    private static final String ACCOUNT = "40817810400000000123";
+    private static final String LEGAL_INN = "7707083893";
+    private static final String PERSONAL_INN = "500100732259";
+
+    @Test
+    void acceptsValidRequisites() {
+        assertNull(AccountValidator.check(ACCOUNT, BIK, KPP, CORR_ACCOUNT, LEGAL_INN));
+        assertNull(AccountValidator.check(ACCOUNT, BIK, KPP, CORR_ACCOUNT, PERSONAL_INN));
+        assertNull(AccountValidator.check(ACCOUNT, BIK, KPP, null, null));
+    }
+
+    @Test
+    void reportsFirstFormatError() {
+        assertEquals("Номер счета не может быть null", AccountValidator.check(null, BIK, KPP, null, null));
+        assertEquals("Номер счета должен содержать 20 цифр",
+                AccountValidator.check("4081781040000000012", BIK, KPP, null, null));
+        assertEquals("БИК должен содержать 9 цифр", AccountValidator.check(ACCOUNT, "04452522a", KPP, null, null));
+        assertEquals("КПП должен содержать 9 цифр", AccountValidator.check(ACCOUNT, BIK, "77360100", null, null));
+        assertEquals("Корреспондентский счет должен содержать 20 цифр",
+                AccountValidator.check(ACCOUNT, BIK, KPP, "3010181040000000022", null));
+        assertEquals("ИНН должен содержать 10 или 12 цифр",
+                AccountValidator.check(ACCOUNT, BIK, KPP, null, "77070838931"));
+    }
+
+    @Test
+    void checksInnControlDigits() {
+        assertTrue(AccountValidator.isValidInn(LEGAL_INN));
+        assertTrue(AccountValidator.isValidInn(PERSONAL_INN));
+        assertFalse(AccountValidator.isValidInn("7707083894"));
+        assertFalse(AccountValidator.isValidInn("500100732258"));
+        assertFalse(AccountValidator.isValidInn(null));
+        assertEquals("Неверные контрольные разряды ИНН",
+                AccountValidator.check(ACCOUNT, BIK, KPP, null, "7707083894"));
+    }
+
+    @Test
+    void checksAccountKeyAgainstBik() {
+        assertTrue(AccountValidator.isValidAccountKey(ACCOUNT, BIK));
+        assertFalse(AccountValidator.isValidAccountKey("40817810500000000123", BIK));
+        assertEquals("Номер счета не соответствует БИК (неверный контрольный ключ)",
+                AccountValidator.check("40817810500000000123", BIK, KPP, null, null));
+    }
+
+    @Test
+    void withAccountKeyProducesValidNumbers() {
+        Random random = new Random(42);
+        String[] biks = {"044525225", "044525593", "040349001", "046577964"};
+        for (int i = 0; i < 10_000; i++) {
+            String bik = biks[random.nextInt(biks.length)];
+            String number = AccountValidator.withAccountKey(randomDigits(random, 20), bik);
+            assertTrue(AccountValidator.isValidAccountKey(number, bik), number + " / " + bik);
+        }
+    }
+
+    @Test
+    void formatCheckMatchesRegex() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            String accountNumber = randomField(random, 20);
+            String bik = randomField(random, 9);
+            String kpp = randomField(random, 9);
+            String correspondentAccount = randomField(random, 20);
+            String inn = randomField(random, random.nextBoolean() ? 10 : 12);
+            boolean regexValid = accountNumber.matches("\\d{20}") && bik.matches("\\d{9}")
+                    && kpp.matches("\\d{9}") && correspondentAccount.matches("\\d{20}")
+                    && inn.matches("\\d{10}|\\d{12}");
+            boolean formatValid;
+            try {
+                AccountValidator.validateFormat(accountNumber, bik, kpp, correspondentAccount, inn);
+                formatValid = true;
+            } catch (IllegalArgumentException e) {
+                formatValid = false;
+            }
+            assertEquals(regexValid, formatValid, accountNumber + ";" + bik + ";" + kpp + ";"
+                    + correspondentAccount + ";" + inn);
+        }
+    }
+
+    @Test
+    void rejectsOwnerNameLongerThanJournalLimit() {
+        AccountValidator.validateOwnerName(null);
+        AccountValidator.validateOwnerName("а".repeat(AccountValidator.MAX_OWNER_NAME_BYTES / 2));
+        assertThrows(IllegalArgumentException.class, () -> AccountValidator.validateOwnerName(
+                "а".repeat(AccountValidator.MAX_OWNER_NAME_BYTES / 2 + 1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new BankAccount(ACCOUNT, BIK, KPP, null, null, "x".repeat(40_000), 0));
+    }
+
+    private static String randomDigits(Random random, int length) {
+        char[] digits = new char[length];
+        for (int i = 0; i < length; i++) {
+            digits[i] = (char) ('0' + random.nextInt(10));
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Поле нужной длины из цифр, иногда с другой длиной или посторонним символом
+     */
+    private static String randomField(Random random, int length) {
+        int variant = random.nextInt(10);
+        if (variant == 0) {
+            return randomDigits(random, length + (random.nextBoolean() ? 1 : -1));
+        }
+        String digits = randomDigits(random, length);
+        if (variant == 1) {
+            char[] chars = digits.toCharArray();
+            chars[random.nextInt(length)] = random.nextBoolean() ? 'x' : ' ';
+            return new String(chars);
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,124 @@
+package banking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Потокобезопасность счетов: множество потоков пополняют и списывают общие счета
+ * и переводят между ними, после чего проверяется отсутствие потерянных обновлений
+ */
+class ConcurrentPostingTest {
+    private static final int THREADS = 32;             // Не меньше 32 потоков на 16 общих счетов
+    private static final int OPERATIONS_PER_THREAD = 20_000;
+    private static final int ACCOUNTS = 16;
+    private static final String BIK = "044525225";
+
+    @Test
+    void depositsAndWithdrawalsAreNotLost() throws InterruptedException {
+        List<BankAccount> accounts = openAccounts(0);
+        AtomicLong deposited = new AtomicLong();
+        AtomicLong withdrawn = new AtomicLong();
+        AtomicLong successful = new AtomicLong();
+
+        runWorkers(random -> {
+            BankAccount account = accounts.get(random.nextInt(ACCOUNTS));
+            long amount = 1 + random.nextInt(10_000);
+            if (random.nextBoolean()) {
+                account.deposit(amount);
+                deposited.addAndGet(amount);
+                successful.incrementAndGet();
+            } else if (account.withdraw(amount)) {
+                withdrawn.addAndGet(amount);
+                successful.incrementAndGet();
+            }
+        });
+
+        long totalBalance = 0;
+        long historyEntries = 0;
+        for (BankAccount account : accounts) {
+            assertTrue(account.getBalance() >= 0, "Отрицательный баланс " + account.getAccountNumber());
+            totalBalance += account.getBalance();
+            historyEntries += account.getTransactionCount() - 1; // Без транзакции открытия
+        }
+        assertEquals(deposited.get() - withdrawn.get(), totalBalance);
+        assertEquals(successful.get(), historyEntries);
+    }
+
+    @Test
+    void transfersKeepTotalBalance() throws InterruptedException {
+        long initialBalance = 1_000_000;
+        List<BankAccount> accounts = openAccounts(initialBalance);
+
+        // Встречные переводы между одними и теми же счетами не должны взаимно блокироваться
+        runWorkers(random -> {
+            BankAccount from = accounts.get(random.nextInt(ACCOUNTS));
+            BankAccount to = accounts.get(random.nextInt(ACCOUNTS));
+            if (from != to) {
+                BankAccount.transfer(from, to, 1 + random.nextInt(10_000));
+            }
+        });
+
+        long totalBalance = 0;
+        for (BankAccount account : accounts) {
+            assertTrue(account.getBalance() >= 0, "Отрицательный баланс " + account.getAccountNumber());
+            totalBalance += account.getBalance();
+        }
+        assertEquals(initialBalance * ACCOUNTS, totalBalance);
+    }
+
+    private static List<BankAccount> openAccounts(long initialBalance) {
+        AccountRegistry registry = AccountRegistry.concurrent();
+        List<BankAccount> accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            String number = AccountValidator.withAccountKey(String.format("%020d", i), BIK);
+            BankAccount account = new BankAccount(number, BIK, "770101001", null, null,
+                    "Счет " + i, initialBalance);
+            registry.register(account);
+            accounts.add(account);
+        }
+        return accounts;
+    }
+
+    private interface Operation {
+        void run(ThreadLocalRandom random);
+    }
+
+    /**
+     * Одновременный старт THREADS потоков, каждый выполняет OPERATIONS_PER_THREAD операций
+     */
+    private static void runWorkers(Operation operation) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                        operation.run(random);
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }, "posting-worker-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertTrue(failures.isEmpty(), () -> "Ошибки в потоках: " + failures);
+    }
+}
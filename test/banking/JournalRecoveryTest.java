@@ -0,0 +1,182 @@
+package banking;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Восстановление из журнала после сбоя (журнал не закрыт): балансы, история и LSN счетов
+ * совпадают с состоянием до сбоя, а оборванная или испорченная последняя запись отбрасывается
+ */
+class JournalRecoveryTest {
+    private static final String BIK = "044525225";
+    private static final String KPP = "773601001";
+    private static final long FSYNC_MILLIS = 10;
+    private static final int FSYNC_RECORDS = 1_000;
+
+    @Test
+    void replaysJournalAfterCrash() throws IOException {
+        Path directory = Files.createTempDirectory("journal");
+        AccountRegistry registry = new AccountRegistry();
+        Journal journal = Journal.open(directory, registry, FSYNC_MILLIS, FSYNC_RECORDS);
+        List<BankAccount> accounts = writeOperations(registry);
+        journal.sync();                                  // Сбой без close
+
+        AccountRegistry recovered = new AccountRegistry();
+        Journal reopened = Journal.open(directory, recovered, FSYNC_MILLIS, FSYNC_RECORDS);
+        try {
+            assertSameState(accounts, recovered);
+            assertEquals(journal.getAppendedLsn(), reopened.getReplayReport().getLastLsn());
+            assertEquals(journal.getAppendedLsn(), reopened.getReplayReport().getRecords());
+
+            // Новые записи продолжают нумерацию LSN
+            BankAccount account = recovered.findByNumber(accounts.get(0).getAccountNumber());
+            account.deposit(1);
+            assertEquals(journal.getAppendedLsn() + 1, account.getLastLsn());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void dropsTornTailRecord() throws IOException {
+        Path directory = Files.createTempDirectory("journal");
+        AccountRegistry registry = new AccountRegistry();
+        Journal journal = Journal.open(directory, registry, FSYNC_MILLIS, FSYNC_RECORDS);
+        List<BankAccount> accounts = writeOperations(registry);
+        journal.sync();
+        Path segment = lastSegment(directory);
+        long validBytes = Files.size(segment);
+
+        // Заголовок следующей записи дописан, данные - только частично
+        ByteBuffer torn = ByteBuffer.allocate(20);
+        torn.putInt(64).putInt(0x12345678).putLong(journal.getAppendedLsn() + 1).put((byte) 2);
+        torn.flip();
+        append(segment, torn);
+
+        AccountRegistry recovered = new AccountRegistry();
+        Journal reopened = Journal.open(directory, recovered, FSYNC_MILLIS, FSYNC_RECORDS);
+        try {
+            assertSameState(accounts, recovered);
+            assertEquals(journal.getAppendedLsn(), reopened.getReplayReport().getLastLsn());
+            assertEquals(validBytes, Files.size(segment));   // Обрывок отрезан при открытии
+
+            BankAccount account = recovered.findByNumber(accounts.get(1).getAccountNumber());
+            account.deposit(1);
+            reopened.sync();
+            assertEquals(journal.getAppendedLsn() + 1, account.getLastLsn());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void dropsTailRecordWithBadChecksum() throws IOException {
+        Path directory = Files.createTempDirectory("journal");
+        AccountRegistry registry = new AccountRegistry();
+        Journal journal = Journal.open(directory, registry, FSYNC_MILLIS, FSYNC_RECORDS);
+        List<BankAccount> accounts = writeOperations(registry);
+        journal.sync();
+        long lastGoodLsn = journal.getAppendedLsn();
+        BankAccount account = accounts.get(0);
+        long balanceBefore = account.getBalance();
+        int transactionsBefore = account.getTransactionCount();
+
+        account.deposit(777);
+        journal.sync();
+        Path segment = lastSegment(directory);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // Последний байт файла - данные последней записи, ее CRC32 больше не совпадет
+            ByteBuffer lastByte = ByteBuffer.allocate(1);
+            channel.read(lastByte, channel.size() - 1);
+            lastByte.put(0, (byte) (lastByte.get(0) ^ 0xFF));
+            lastByte.rewind();
+            channel.write(lastByte, channel.size() - 1);
+        }
+
+        AccountRegistry recovered = new AccountRegistry();
+        Journal reopened = Journal.open(directory, recovered, FSYNC_MILLIS, FSYNC_RECORDS);
+        try {
+            BankAccount restored = recovered.findByNumber(account.getAccountNumber());
+            assertEquals(balanceBefore, restored.getBalance());
+            assertEquals(transactionsBefore, restored.getTransactionCount());
+            assertEquals(lastGoodLsn, reopened.getReplayReport().getLastLsn());
+            assertEquals(accounts.get(1).getBalance(),
+                    recovered.findByNumber(accounts.get(1).getAccountNumber()).getBalance());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    /**
+     * Открытие счетов, пополнения, снятия (в том числе отклоненное) и перевод
+     */
+    private static List<BankAccount> writeOperations(AccountRegistry registry) {
+        List<BankAccount> accounts = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            String number = AccountValidator.withAccountKey(String.format("408178100000000000%02d", i), BIK);
+            BankAccount account = new BankAccount(number, BIK, KPP, null, null, "Владелец " + i, 10_000 * i);
+            registry.register(account);
+            accounts.add(account);
+        }
+        for (int round = 0; round < 50; round++) {
+            BankAccount account = accounts.get(round % accounts.size());
+            account.deposit(100 + round);
+            account.withdraw(50);
+            BankAccount.transfer(account, accounts.get((round + 1) % accounts.size()), 25 + round);
+        }
+        accounts.get(2).withdraw(1_000_000_000);      // Отклонено: в журнал не попадает
+        return accounts;
+    }
+
+    private static void assertSameState(List<BankAccount> expected, AccountRegistry recovered) {
+        assertEquals(expected.size(), recovered.size());
+        for (BankAccount account : expected) {
+            BankAccount restored = recovered.findByNumber(account.getAccountNumber());
+            assertNotNull(restored, account.getAccountNumber());
+            assertEquals(account.getBalance(), restored.getBalance());
+            assertEquals(account.getLastLsn(), restored.getLastLsn());
+            assertEquals(describe(account.getTransactions()), describe(restored.getTransactions()));
+        }
+    }
+
+    /**
+     * История в сравнимом виде (время в журнале хранится с точностью до миллисекунды)
+     */
+    private static List<String> describe(List<Transaction> transactions) {
+        List<String> lines = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            lines.add(transaction.getTimestamp().truncatedTo(ChronoUnit.MILLIS) + ";" + transaction.getType()
+                    + ";" + transaction.getAmount() + ";" + transaction.getDescription());
+        }
+        return lines;
+    }
+
+    private static Path lastSegment(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("journal-"))
+                    .max(Path::compareTo)
+                    .orElseThrow();
+        }
+    }
+
+    private static void append(Path segment, ByteBuffer bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            channel.write(bytes);
+        }
+    }
+}
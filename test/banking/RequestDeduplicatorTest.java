@@ -0,0 +1,215 @@
+package banking;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Окно идентификаторов запросов: повтор получает итог первого выполнения (в том числе отказ),
+ * одновременный повтор ждет первое выполнение, поколения сменяются по времени и по числу
+ * записей, а память ограничена двумя поколениями
+ */
+class RequestDeduplicatorTest {
+    private static final long LONG_WINDOW_MILLIS = 60_000;
+
+    @Test
+    void duplicateReturnsFirstResult() {
+        RequestDeduplicator requests = new RequestDeduplicator(LONG_WINDOW_MILLIS, 100);
+        AtomicInteger executions = new AtomicInteger();
+
+        RequestDeduplicator.Result first = requests.execute("r-1", () -> {
+            executions.incrementAndGet();
+            return RequestDeduplicator.Result.ok("OK;100.00");
+        });
+        RequestDeduplicator.Result retry = requests.execute("r-1", () -> {
+            executions.incrementAndGet();
+            return RequestDeduplicator.Result.ok("OK;200.00");
+        });
+
+        assertEquals("OK;100.00", first.text());
+        assertEquals(first, retry);
+        assertEquals(1, executions.get());
+        assertEquals(1, requests.getDuplicates());
+    }
+
+    @Test
+    void rejectionIsCachedAsResult() {
+        RequestDeduplicator requests = new RequestDeduplicator(LONG_WINDOW_MILLIS, 100);
+        requests.execute("r-1", () -> RequestDeduplicator.Result.rejected("Недостаточно средств"));
+
+        // Средств уже хватает, но повтор получает прежний отказ, а не проводит снятие
+        RequestDeduplicator.Result retry = requests.execute("r-1",
+                () -> RequestDeduplicator.Result.ok("OK;0.00"));
+
+        assertTrue(retry.rejected());
+        assertEquals("Недостаточно средств", retry.text());
+    }
+
+    @Test
+    void failedExecutionIsRetried() {
+        RequestDeduplicator requests = new RequestDeduplicator(LONG_WINDOW_MILLIS, 100);
+        assertThrows(IllegalStateException.class, () -> requests.execute("r-1", () -> {
+            throw new IllegalStateException("Журнал закрыт");
+        }));
+
+        RequestDeduplicator.Result retry = requests.execute("r-1",
+                () -> RequestDeduplicator.Result.ok("OK;1.00"));
+
+        assertEquals("OK;1.00", retry.text());
+        assertEquals(0, requests.getDuplicates());
+    }
+
+    @Test
+    void concurrentDuplicateWaitsForInFlightExecution() throws InterruptedException {
+        RequestDeduplicator requests = new RequestDeduplicator(LONG_WINDOW_MILLIS, 100);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+
+        Thread original = new Thread(() -> requests.execute("r-1", () -> {
+            executions.incrementAndGet();
+            started.countDown();
+            awaitUninterruptibly(release);
+            return RequestDeduplicator.Result.ok("OK;first");
+        }));
+        original.start();
+        started.await();
+
+        AtomicReference<RequestDeduplicator.Result> retryResult = new AtomicReference<>();
+        Thread retry = new Thread(() -> retryResult.set(requests.execute("r-1", () -> {
+            executions.incrementAndGet();
+            return RequestDeduplicator.Result.ok("OK;second");
+        })));
+        retry.start();
+        retry.join(200);
+        assertTrue(retry.isAlive(), "Повтор должен ждать первое выполнение");
+
+        release.countDown();
+        retry.join();
+        original.join();
+        assertEquals("OK;first", retryResult.get().text());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void rotatesGenerationsByCount() {
+        RequestDeduplicator requests = new RequestDeduplicator(LONG_WINDOW_MILLIS, 2);
+        for (int i = 1; i <= 5; i++) {
+            execute(requests, "r-" + i);
+        }
+
+        // Поколения {r-3, r-4} и {r-5} помнятся, {r-1, r-2} отброшено второй сменой
+        assertTrue(isDuplicate(requests, "r-5"));
+        assertTrue(isDuplicate(requests, "r-4"));
+        assertFalse(isDuplicate(requests, "r-1"));
+    }
+
+    @Test
+    void rotatesGenerationsByTime() throws InterruptedException {
+        RequestDeduplicator requests = new RequestDeduplicator(50, 1_000);
+        execute(requests, "r-1");
+
+        Thread.sleep(80);
+        execute(requests, "r-2");          // Смена поколения: r-1 в предыдущем
+        assertTrue(isDuplicate(requests, "r-1"));
+
+        Thread.sleep(80);
+        execute(requests, "r-3");          // Вторая смена: r-1 отброшен
+        assertFalse(isDuplicate(requests, "r-1"));
+        assertTrue(isDuplicate(requests, "r-2"));
+    }
+
+    @Test
+    void memoryIsBoundedByTwoGenerations() {
+        int maxPerWindow = 100;
+        RequestDeduplicator requests = new RequestDeduplicator(LONG_WINDOW_MILLIS, maxPerWindow);
+        for (int i = 0; i < 10_000; i++) {
+            execute(requests, "r-" + i);
+            assertTrue(requests.size() <= 2 * maxPerWindow, "В окне " + requests.size() + " записей");
+        }
+    }
+
+    @Test
+    void restoredResultIsNotReplacedByRecoveredMarker() {
+        RequestDeduplicator requests = new RequestDeduplicator(LONG_WINDOW_MILLIS, 100);
+        long now = System.currentTimeMillis();
+        requests.restore("r-1", RequestDeduplicator.Result.ok("OK;5.00"), now);
+        requests.restore("r-1", RequestDeduplicator.Result.RECOVERED, now);
+        requests.restore("r-2", RequestDeduplicator.Result.ok("OK;7.00"), now - 3 * LONG_WINDOW_MILLIS);
+
+        assertEquals("OK;5.00", requests.execute("r-1", () -> RequestDeduplicator.Result.ok("x")).text());
+        assertEquals("x", requests.execute("r-2", () -> RequestDeduplicator.Result.ok("x")).text());
+    }
+
+    @Test
+    void retryAfterRestartIsNotReapplied() throws IOException {
+        Path directory = Files.createTempDirectory("dedup");
+        String bik = "044525225";
+        String number = AccountValidator.withAccountKey("40817810000000000001", bik);
+
+        AccountRegistry registry = new AccountRegistry();
+        Journal journal = Journal.open(directory, registry, 10, 1_000);
+        BankAccount account = new BankAccount(number, bik, "773601001", null, null, "Иванов", 100);
+        registry.register(account);
+        RequestDeduplicator.Result deposit = registry.getRequestDeduplicator().execute("dep-1", () -> {
+            account.deposit(50, "dep-1");
+            return RequestDeduplicator.Result.ok("OK;" + account.getBalance());
+        });
+        RequestDeduplicator.Result withdrawal = registry.getRequestDeduplicator().execute("wd-1",
+                () -> account.withdraw(1_000, "wd-1") ? RequestDeduplicator.Result.ok("OK")
+                        : RequestDeduplicator.Result.rejected("Недостаточно средств"));
+        new SnapshotManager(directory, registry, journal).takeSnapshot();
+        account.deposit(25, "dep-2");          // Итог этого запроса не записан: проведен в обход окна
+        journal.sync();                          // Сбой без close
+
+        AccountRegistry restarted = new AccountRegistry();
+        Journal reopened = Journal.open(directory, restarted, 10, 1_000);
+        try {
+            RequestDeduplicator requests = restarted.getRequestDeduplicator();
+            BankAccount restored = restarted.findByNumber(number);
+            assertEquals(deposit, requests.execute("dep-1", () -> {
+                restored.deposit(50, "dep-1");
+                return RequestDeduplicator.Result.ok("повтор");
+            }));
+            assertEquals(withdrawal, requests.execute("wd-1", () -> RequestDeduplicator.Result.ok("повтор")));
+            assertTrue(requests.execute("dep-2", () -> RequestDeduplicator.Result.ok("повтор")).isRecovered());
+            assertEquals(175, restored.getBalance());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static void execute(RequestDeduplicator requests, String requestId) {
+        requests.execute(requestId, () -> RequestDeduplicator.Result.ok(requestId));
+    }
+
+    private static boolean isDuplicate(RequestDeduplicator requests, String requestId) {
+        boolean[] executed = new boolean[1];
+        requests.execute(requestId, () -> {
+            executed[0] = true;
+            return RequestDeduplicator.Result.ok(requestId);
+        });
+        return !executed[0];
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException e) {
+                // Первое выполнение ждет разрешения теста
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package banking;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Снимок, снятый во время записи из нескольких потоков, плюс хвост журнала после него
+ * восстанавливают то же состояние, что было до сбоя, а сегменты журнала, целиком
+ * покрытые снимком, удаляются
+ */
+class SnapshotTest {
+    private static final String BIK = "044525225";
+    private static final String KPP = "773601001";
+    private static final int ACCOUNTS = 8;
+    private static final int WRITERS = 4;
+    private static final int OPERATIONS_PER_WRITER = 3_000;
+    private static final long SEGMENT_BYTES = 16 * 1024;   // Частая смена сегментов
+
+    @Test
+    void restoresSnapshotTakenUnderConcurrentWritesPlusLogTail() throws Exception {
+        Path directory = Files.createTempDirectory("snapshot");
+        AccountRegistry registry = AccountRegistry.concurrent();
+        registry.setArchive(TransactionArchive.open(directory.resolve("archive")));
+        Journal journal = Journal.open(directory, registry, 5, 1_000, SEGMENT_BYTES);
+        List<BankAccount> accounts = openAccounts(registry);
+
+        AtomicInteger done = new AtomicInteger();
+        List<Thread> writers = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            Thread writer = new Thread(() -> {
+                try {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < OPERATIONS_PER_WRITER; i++) {
+                        writeRandomOperation(accounts, random);
+                        done.incrementAndGet();
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }, "snapshot-writer-" + w);
+            writers.add(writer);
+            writer.start();
+        }
+        while (done.get() < WRITERS * OPERATIONS_PER_WRITER / 3) {
+            Thread.onSpinWait();
+        }
+        int doneAtSnapshot = done.get();
+        SnapshotReport snapshot = new SnapshotManager(directory, registry, journal).takeSnapshot();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertTrue(failures.isEmpty(), () -> "Ошибки в потоках: " + failures);
+        assertTrue(doneAtSnapshot < WRITERS * OPERATIONS_PER_WRITER, "Снимок снят после окончания записи");
+
+        // Сегменты до снимка удалены, первый оставшийся нужен для воспроизведения
+        List<Long> segments = segmentFirstLsns(directory);
+        assertTrue(segments.get(0) > 1, "Сегменты, покрытые снимком, не удалены");
+        assertTrue(segments.get(0) <= snapshot.getLsn() + 1, "Удален сегмент с записями новее снимка");
+        assertTrue(segments.size() < 2 || segments.get(1) > snapshot.getLsn() + 1,
+                "Остался сегмент, целиком покрытый снимком");
+
+        // Хвост журнала после снимка, затем сбой без close
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 500; i++) {
+            writeRandomOperation(accounts, random);
+        }
+        journal.sync();
+        // Состояние до сбоя - до открытия: восстановление перезаписывает архив после снимка
+        List<List<String>> histories = new ArrayList<>();
+        for (BankAccount account : accounts) {
+            histories.add(describe(account.getTransactions()));
+        }
+
+        AccountRegistry recovered = AccountRegistry.concurrent();
+        recovered.setArchive(TransactionArchive.open(directory.resolve("archive")));
+        Journal reopened = Journal.open(directory, recovered, 5, 1_000, SEGMENT_BYTES);
+        try {
+            assertEquals(snapshot.getLsn(), reopened.getReplayReport().getSnapshotLsn());
+            assertEquals(ACCOUNTS, reopened.getReplayReport().getSnapshotAccounts());
+            assertTrue(reopened.getReplayReport().getRecords() > 0);
+            assertEquals(journal.getAppendedLsn(), reopened.getReplayReport().getLastLsn());
+            for (int i = 0; i < ACCOUNTS; i++) {
+                BankAccount account = accounts.get(i);
+                BankAccount restored = recovered.findByNumber(account.getAccountNumber());
+                assertNotNull(restored);
+                assertEquals(account.getBalance(), restored.getBalance());
+                assertEquals(account.getLastLsn(), restored.getLastLsn());
+                assertEquals(histories.get(i), describe(restored.getTransactions()));
+            }
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static List<BankAccount> openAccounts(AccountRegistry registry) {
+        List<BankAccount> accounts = new ArrayList<>();
+        for (int i = 1; i <= ACCOUNTS; i++) {
+            String number = AccountValidator.withAccountKey(String.format("408178100000000000%02d", i), BIK);
+            BankAccount account = new BankAccount(number, BIK, KPP, null, null, "Владелец " + i, 1_000_000);
+            registry.register(account);
+            accounts.add(account);
+        }
+        return accounts;
+    }
+
+    private static void writeRandomOperation(List<BankAccount> accounts, ThreadLocalRandom random) {
+        BankAccount account = accounts.get(random.nextInt(ACCOUNTS));
+        long amount = 1 + random.nextInt(1_000);
+        switch (random.nextInt(3)) {
+            case 0 -> account.deposit(amount);
+            case 1 -> account.withdraw(amount);
+            default -> {
+                BankAccount target = accounts.get(random.nextInt(ACCOUNTS));
+                if (target != account) {
+                    BankAccount.transfer(account, target, amount);
+                }
+            }
+        }
+    }
+
+    /**
+     * История в сравнимом виде (время в журнале и архиве хранится с точностью до миллисекунды)
+     */
+    private static List<String> describe(List<Transaction> transactions) {
+        List<String> lines = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            lines.add(transaction.getTimestamp().truncatedTo(ChronoUnit.MILLIS) + ";" + transaction.getType()
+                    + ";" + transaction.getAmount() + ";" + transaction.getDescription());
+        }
+        return lines;
+    }
+
+    private static List<Long> segmentFirstLsns(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith("journal-") && name.endsWith(".log"))
+                    .map(name -> Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+}